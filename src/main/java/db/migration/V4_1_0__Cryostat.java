@@ -38,6 +38,7 @@ public class V4_1_0__Cryostat extends BaseJavaMigration {
 
         exec(context, "create index on DiscoveryNode (nodeType);");
         exec(context, "create index on DiscoveryNode (nodeType, name);");
+        exec(context, "create index on DiscoveryNode (parentNode);");
 
         exec(context, "create index on Rule (name);");
         exec(context, "alter table Rule add column metadata jsonb default '{\"labels\":{}}';");
@@ -46,6 +47,97 @@ public class V4_1_0__Cryostat extends BaseJavaMigration {
                 context,
                 "alter table ActiveRecording add column archiveOnStop boolean default false;");
 
+        exec(context, "create sequence RuleArchive_SEQ start with 1 increment by 50;");
+        exec(
+                context,
+                """
+                create table RuleArchive (
+                    id bigint not null,
+                    recordingName text not null check (char_length(recordingName) < 255),
+                    jvmId text not null check (char_length(jvmId) < 255),
+                    filename text not null check (char_length(filename) < 255),
+                    archivedTime bigint not null,
+                    primary key (id)
+                );
+                """);
+        exec(context, "create index on RuleArchive (recordingName, jvmId);");
+        exec(context, "create index on RuleArchive (jvmId, filename);");
+
+        exec(context, "create sequence AgentArchive_SEQ start with 1 increment by 50;");
+        exec(
+                context,
+                """
+                create table AgentArchive (
+                    id bigint not null,
+                    jvmId text not null check (char_length(jvmId) < 255),
+                    filename text not null check (char_length(filename) < 255),
+                    archivedTime bigint not null,
+                    primary key (id)
+                );
+                """);
+        exec(context, "create index on AgentArchive (jvmId, archivedTime);");
+        exec(context, "create unique index on AgentArchive (jvmId, filename);");
+
+        exec(context, "create sequence ArchiveBlob_SEQ start with 1 increment by 50;");
+        exec(
+                context,
+                """
+                create table ArchiveBlob (
+                    id bigint not null,
+                    hash text not null unique check (char_length(hash) < 255),
+                    storageKey text not null check (char_length(storageKey) < 255),
+                    size bigint not null,
+                    refs integer not null,
+                    primary key (id)
+                );
+                """);
+        exec(context, "create sequence ArchiveBlobRef_SEQ start with 1 increment by 50;");
+        exec(
+                context,
+                """
+                create table ArchiveBlobRef (
+                    id bigint not null,
+                    jvmId text not null check (char_length(jvmId) < 255),
+                    filename text not null check (char_length(filename) < 255),
+                    blob_id bigint not null references ArchiveBlob,
+                    primary key (id)
+                );
+                """);
+        exec(context, "create unique index on ArchiveBlobRef (jvmId, filename);");
+        exec(context, "create index on ArchiveBlobRef (blob_id);");
+
+        exec(context, "create sequence StoredThreadDump_SEQ start with 1 increment by 50;");
+        exec(
+                context,
+                """
+                create table StoredThreadDump (
+                    id bigint not null,
+                    jvmId text not null check (char_length(jvmId) < 255),
+                    threadDumpId text not null check (char_length(threadDumpId) < 255),
+                    size bigint not null,
+                    summary jsonb not null,
+                    metadata jsonb,
+                    primary key (id)
+                );
+                """);
+        exec(context, "create unique index on StoredThreadDump (jvmId, threadDumpId);");
+
+        exec(
+                context,
+                "create sequence StoredRecordingStatistics_SEQ start with 1 increment by 50;");
+        exec(
+                context,
+                """
+                create table StoredRecordingStatistics (
+                    id bigint not null,
+                    jvmId text not null check (char_length(jvmId) < 255),
+                    filename text not null check (char_length(filename) < 255),
+                    statistics jsonb not null,
+                    primary key (id)
+                );
+                """);
+        exec(context, "create unique index on StoredRecordingStatistics (jvmId, filename);");
+
         decodeTargetAliases(context);
     }
 
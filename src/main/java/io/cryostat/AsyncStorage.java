@@ -0,0 +1,123 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import io.quarkus.runtime.BlockingOperationControl;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+/**
+ * Non-blocking access to S3 object storage. If the asynchronous client is enabled then requests
+ * are issued through the {@link S3AsyncClient} and complete on its I/O threads, so callers do not
+ * hold a worker thread while waiting on storage. Otherwise requests are issued through the blocking
+ * {@link S3Client}, directly if the subscribing thread may block and on a worker thread if not.
+ * Either way the operations have the same semantics as their {@link S3Client} equivalents,
+ * including failing with the same {@link software.amazon.awssdk.services.s3.model.S3Exception}
+ * subtypes. Only the operations needed by callers which would otherwise block a thread on storage
+ * I/O are offered.
+ *
+ * <p>The asynchronous client uses the transport selected by {@code quarkus.s3.async-client.type}.
+ * Only the Netty transport is bundled.
+ */
+@ApplicationScoped
+public class AsyncStorage {
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ASYNC_CLIENT_ENABLED)
+    boolean asyncClient;
+
+    @Inject S3Client storage;
+    @Inject S3AsyncClient asyncStorage;
+
+    public Uni<HeadObjectResponse> headObject(HeadObjectRequest request) {
+        return call(() -> asyncStorage.headObject(request), () -> storage.headObject(request));
+    }
+
+    public Uni<ResponseBytes<GetObjectResponse>> getObjectAsBytes(GetObjectRequest request) {
+        return call(
+                () -> asyncStorage.getObject(request, AsyncResponseTransformer.toBytes()),
+                () -> storage.getObject(request, ResponseTransformer.toBytes()));
+    }
+
+    /**
+     * Open an object's content as a stream. The item is emitted once the response headers have
+     * arrived, and the content is then read from the stream as it is received.
+     */
+    public Uni<ResponseInputStream<GetObjectResponse>> getObject(GetObjectRequest request) {
+        return call(
+                () ->
+                        asyncStorage.getObject(
+                                request, AsyncResponseTransformer.toBlockingInputStream()),
+                () -> storage.getObject(request));
+    }
+
+    public Uni<ListObjectsV2Response> listObjectsV2(ListObjectsV2Request request) {
+        return call(
+                () -> asyncStorage.listObjectsV2(request), () -> storage.listObjectsV2(request));
+    }
+
+    public Uni<PutObjectResponse> putObject(PutObjectRequest request, byte[] body) {
+        return call(
+                () -> asyncStorage.putObject(request, AsyncRequestBody.fromBytes(body)),
+                () -> storage.putObject(request, RequestBody.fromBytes(body)));
+    }
+
+    public Uni<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+        return call(() -> asyncStorage.deleteObject(request), () -> storage.deleteObject(request));
+    }
+
+    private <T> Uni<T> call(Supplier<CompletableFuture<T>> async, Supplier<T> sync) {
+        if (asyncClient) {
+            return Uni.createFrom()
+                    .completionStage(async)
+                    .onFailure(CompletionException.class)
+                    .transform(t -> t.getCause() != null ? t.getCause() : t);
+        }
+        return Uni.createFrom()
+                .deferred(
+                        () -> {
+                            Uni<T> uni = Uni.createFrom().item(sync);
+                            if (BlockingOperationControl.isBlockingAllowed()) {
+                                return uni;
+                            }
+                            return uni.runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+                        });
+    }
+}
@@ -25,15 +25,34 @@ public class ConfigProperties {
     public static final String STORAGE_METADATA_STORAGE_MODE = "storage.metadata.storage-mode";
     public static final String STORAGE_METADATA_ARCHIVES_STORAGE_MODE =
             "storage.metadata.archives.storage-mode";
+    public static final String STORAGE_METADATA_ARCHIVES_INDEX_COMPACTION_THRESHOLD =
+            "storage.metadata.archives.index.compaction-threshold";
     public static final String STORAGE_METADATA_EVENT_TEMPLATES_STORAGE_MODE =
             "storage.metadata.event-templates.storage-mode";
+    public static final String STORAGE_ASYNC_CLIENT_ENABLED = "storage.async-client.enabled";
+    public static final String STORAGE_ARCHIVES_CODEC = "storage.archives.codec";
+    public static final String STORAGE_ARCHIVES_DEDUPLICATE = "storage.archives.deduplicate";
+    public static final String STORAGE_ARCHIVES_CACHE_ENABLED = "storage.archives.cache.enabled";
+    public static final String STORAGE_ARCHIVES_CACHE_DIR = "storage.archives.cache.dir";
+    public static final String STORAGE_ARCHIVES_CACHE_MAX_SIZE_MIB =
+            "storage.archives.cache.max-size-mib";
+    public static final String STORAGE_ARCHIVES_CACHE_WAIT_TIMEOUT =
+            "storage.archives.cache.wait-timeout";
+    public static final String STORAGE_ARCHIVES_STATISTICS_ENABLED =
+            "storage.archives.statistics.enabled";
     public static final String AWS_BUCKET_NAME_ARCHIVES = "storage.buckets.archives.name";
+    public static final String AWS_BUCKET_NAME_ARCHIVE_BLOBS = "storage.buckets.archive-blobs.name";
     public static final String AWS_BUCKET_NAME_METADATA = "storage.buckets.metadata.name";
     public static final String AWS_BUCKET_NAME_EVENT_TEMPLATES =
             "storage.buckets.event-templates.name";
     public static final String AWS_BUCKET_NAME_PROBE_TEMPLATES =
             "storage.buckets.probe-templates.name";
     public static final String AWS_BUCKET_NAME_HEAP_DUMPS = "storage.buckets.heap-dumps.name";
+    public static final String HEAP_DUMPS_UPLOAD_PART_SIZE_MIB =
+            "storage.heap-dumps.upload.part-size-mib";
+    public static final String HEAP_DUMPS_UPLOAD_CONCURRENCY =
+            "storage.heap-dumps.upload.concurrency";
+    public static final String HEAP_DUMPS_ANALYSIS_ENABLED = "storage.heap-dumps.analysis.enabled";
     public static final String AWS_BUCKET_NAME_THREAD_DUMPS = "storage.buckets.thread-dumps.name";
     public static final String AWS_METADATA_PREFIX_THREAD_DUMPS =
             "storage.metadata.prefix.thread-dumps";
@@ -64,6 +83,8 @@ public class ConfigProperties {
             "cryostat.services.reports.memory-cache.enabled";
     public static final String REPORTS_STORAGE_CACHE_ENABLED =
             "cryostat.services.reports.storage-cache.enabled";
+    public static final String REPORTS_ANALYZE_ON_ARCHIVE =
+            "cryostat.services.reports.analyze-on-archive";
     public static final String ARCHIVED_REPORTS_STORAGE_CACHE_NAME =
             "cryostat.services.reports.storage-cache.name";
     public static final String ARCHIVED_REPORTS_EXPIRY_DURATION =
@@ -94,6 +115,11 @@ public class ConfigProperties {
     public static final String RULES_DIR = "rules-dir";
     public static final String CREDENTIALS_DIR = "credentials-dir";
 
+    public static final String RULES_ACTIVATION_CONCURRENCY =
+            "cryostat.rules.activation-concurrency";
+
+    public static final String GRAPHQL_BULK_CONCURRENCY = "cryostat.graphql.bulk-concurrency";
+
     public static final String URI_RANGE = "cryostat.target.uri-range";
 
     public static final String AGENT_TLS_REQUIRED = "cryostat.agent.tls.required";
@@ -16,6 +16,11 @@
 package io.cryostat;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
@@ -34,9 +39,16 @@ import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
 /**
  * Utility for interacting with S3 object storage buckets. Use to ensure that the S3 object storage
@@ -45,6 +57,9 @@ import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 @ApplicationScoped
 public class StorageBuckets {
 
+    /** Maximum number of keys accepted by a single S3 DeleteObjects request. */
+    public static final int DELETE_OBJECTS_LIMIT = 1_000;
+
     @Inject S3Client storage;
     @Inject Logger logger;
 
@@ -69,6 +84,75 @@ public class StorageBuckets {
         return cf;
     }
 
+    /**
+     * Delete many objects from a bucket, grouping the keys into as few DeleteObjects requests as
+     * possible. Failures to delete individual keys, or whole batches, are logged and the remaining
+     * batches are still attempted. S3 reports keys which did not exist as deleted, so callers which
+     * must distinguish those should first filter the keys with {@link #existingKeys(String,
+     * Collection)}.
+     *
+     * @return the keys which were successfully deleted
+     */
+    public List<String> deleteObjects(String bucket, Collection<String> keys) {
+        List<String> all = new ArrayList<>(keys);
+        List<String> deleted = new ArrayList<>(all.size());
+        for (int i = 0; i < all.size(); i += DELETE_OBJECTS_LIMIT) {
+            List<ObjectIdentifier> batch =
+                    all.subList(i, Math.min(all.size(), i + DELETE_OBJECTS_LIMIT)).stream()
+                            .map(k -> ObjectIdentifier.builder().key(k).build())
+                            .toList();
+            try {
+                var resp =
+                        storage.deleteObjects(
+                                DeleteObjectsRequest.builder()
+                                        .bucket(bucket)
+                                        .delete(
+                                                Delete.builder()
+                                                        .quiet(false)
+                                                        .objects(batch)
+                                                        .build())
+                                        .build());
+                resp.errors()
+                        .forEach(
+                                e ->
+                                        logger.errorv(
+                                                "Failed to delete \"{0}\" from bucket \"{1}\":"
+                                                        + " {2} {3}",
+                                                e.key(), bucket, e.code(), e.message()));
+                resp.deleted().stream().map(DeletedObject::key).forEach(deleted::add);
+            } catch (SdkException e) {
+                logger.errorv(
+                        e,
+                        "Failed to delete {0} objects from bucket \"{1}\"",
+                        batch.size(),
+                        bucket);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Find which of the given keys currently exist in the bucket. Each distinct parent prefix of
+     * the keys is listed once, rather than making a HEAD request per key.
+     *
+     * @return the subset of the keys which exist
+     */
+    public Set<String> existingKeys(String bucket, Collection<String> keys) {
+        Set<String> wanted = new HashSet<>(keys);
+        Set<String> prefixes = new HashSet<>();
+        wanted.forEach(k -> prefixes.add(k.substring(0, k.lastIndexOf('/') + 1)));
+        Set<String> existing = new HashSet<>();
+        for (String prefix : prefixes) {
+            var req = ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build();
+            for (S3Object object : storage.listObjectsV2Paginator(req).contents()) {
+                if (wanted.contains(object.key())) {
+                    existing.add(object.key());
+                }
+            }
+        }
+        return existing;
+    }
+
     private void tryCreate(String bucket) {
         var cf = locks.get(bucket);
         if (cf == null) {
@@ -31,6 +31,7 @@ import io.cryostat.recordings.ActiveRecordings.Metadata;
 import io.cryostat.recordings.LongRunningRequestGenerator;
 import io.cryostat.recordings.LongRunningRequestGenerator.HeapDumpRequest;
 import io.cryostat.recordings.LongRunningRequestGenerator.ThreadDumpRequest;
+import io.cryostat.recordings.StorageCodec;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.TargetConnectionManager;
 import io.cryostat.util.HttpMimeType;
@@ -40,6 +41,7 @@ import io.smallrye.common.annotation.Identifier;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.mutiny.core.eventbus.EventBus;
+import jakarta.annotation.Nullable;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -136,6 +138,43 @@ public class Diagnostics {
         helper.deleteThreadDump(Target.getTargetById(targetId), threadDumpId);
     }
 
+    @Path("threaddump/bulk-delete")
+    @RolesAllowed("write")
+    @Blocking
+    @POST
+    @Operation(
+            summary = "Delete many thread dumps",
+            description =
+                    """
+                    Delete the specified thread dumps, grouping the storage requests into batches. Keys which do not
+                    exist are ignored. Returns the keys which were deleted.
+                    """)
+    public List<DumpKey> deleteThreadDumps(List<DumpKey> keys) {
+        log.tracev("Deleting {0} thread dumps", keys.size());
+        return DumpKey.from(helper.deleteThreadDumps(DumpKey.toPairs(keys)));
+    }
+
+    @Path("threaddump/diff/{jvmId}")
+    @RolesAllowed("read")
+    @Blocking
+    @GET
+    @Operation(
+            summary = "Compare stored thread dumps",
+            description =
+                    """
+                    Compare two or more stored thread dumps of the same target JVM, given in chronological order.
+                    Reports threads which kept the same state and stack across every dump, monitors which had
+                    blocked waiters in every dump, and threads which appeared or disappeared between the first and
+                    last dumps.
+                    """)
+    public ThreadDumpDiff diffThreadDumps(@RestPath String jvmId, @RestQuery List<String> id) {
+        if (id == null || id.size() < 2) {
+            throw new BadRequestException("At least two thread dump IDs are required");
+        }
+        log.tracev("Comparing thread dumps {0} for {1}", id, jvmId);
+        return helper.diffThreadDumps(jvmId, id);
+    }
+
     @Path("/threaddump/download/{encodedKey}")
     @RolesAllowed("read")
     @Blocking
@@ -146,10 +185,14 @@ public class Diagnostics {
         log.tracev("Handling download Request for key: {0}", decodedKey);
         log.tracev("Handling download Request for query: {0}", filename);
         String key = helper.storageKey(decodedKey);
-        storage.headObject(HeadObjectRequest.builder().bucket(threadDumpsBucket).key(key).build())
-                .sdkHttpResponse();
+        var head =
+                storage.headObject(
+                        HeadObjectRequest.builder().bucket(threadDumpsBucket).key(key).build());
 
-        if (!presignedDownloadsEnabled) {
+        // compressed dumps are decoded here rather than relying on the client to honour the
+        // presigned response's Content-Encoding
+        if (!presignedDownloadsEnabled
+                || StorageCodec.fromContentEncoding(head.contentEncoding()) != StorageCodec.NONE) {
             return ResponseBuilder.ok()
                     .header(
                             HttpHeaders.CONTENT_DISPOSITION,
@@ -297,6 +340,42 @@ public class Diagnostics {
         helper.deleteHeapDump(heapDumpId, Target.getTargetById(targetId));
     }
 
+    @Path("targets/{targetId}/heapdump/{heapDumpId}/summary")
+    @RolesAllowed("read")
+    @Blocking
+    @GET
+    @Operation(
+            summary = "Get the class histogram summary of a heap dump",
+            description =
+                    """
+                    Retrieve the class histogram and largest objects computed from the heap dump after it was
+                    uploaded. Analysis runs in the background after the upload completes, and a HeapDumpAnalyzed
+                    notification is sent once the summary is available. Returns 404 if the dump has not been
+                    analyzed.
+                    """)
+    public HeapDumpSummary getHeapDumpSummary(
+            @RestPath long targetId, @RestPath String heapDumpId) {
+        Target target = Target.getTargetById(targetId);
+        return helper.getHeapDumpSummary(target.jvmId, heapDumpId)
+                .orElseThrow(NotFoundException::new);
+    }
+
+    @Path("heapdump/bulk-delete")
+    @RolesAllowed("write")
+    @Blocking
+    @POST
+    @Operation(
+            summary = "Delete many heap dumps",
+            description =
+                    """
+                    Delete the specified heap dumps, grouping the storage requests into batches. Keys which do not
+                    exist are ignored. Returns the keys which were deleted.
+                    """)
+    public List<DumpKey> deleteHeapDumps(List<DumpKey> keys) {
+        log.tracev("Deleting {0} heap dumps", keys.size());
+        return DumpKey.from(helper.deleteHeapDumps(DumpKey.toPairs(keys)));
+    }
+
     @Path("/heapdump/download/{encodedKey}")
     @RolesAllowed("read")
     @Blocking
@@ -384,13 +463,41 @@ public class Diagnostics {
         }
     }
 
+    /**
+     * Overview of a heap dump's contents computed after it is uploaded, so that triage can begin
+     * without downloading the dump. Sizes are estimates of each object's shallow size, and do not
+     * include the objects it references.
+     *
+     * @param objectCount the total number of objects in the dump
+     * @param shallowSize the total estimated size of the objects in the dump
+     * @param classCount the number of distinct class names with instances in the dump
+     * @param histogram the classes whose instances occupy the most space, largest first
+     * @param largestObjects the individual objects occupying the most space, largest first
+     */
+    public record HeapDumpSummary(
+            long objectCount,
+            long shallowSize,
+            int classCount,
+            List<ClassHistogramEntry> histogram,
+            List<LargeObject> largestObjects) {
+        public HeapDumpSummary {
+            Objects.requireNonNull(histogram);
+            Objects.requireNonNull(largestObjects);
+        }
+
+        public record ClassHistogramEntry(String className, long instances, long shallowSize) {}
+
+        public record LargeObject(String objectId, String className, long shallowSize) {}
+    }
+
     public record ThreadDump(
             String jvmId,
             String downloadUrl,
             String threadDumpId,
             long lastModified,
             long size,
-            Metadata metadata) {
+            Metadata metadata,
+            @Nullable ThreadDumpSummary summary) {
         public ThreadDump {
             Objects.requireNonNull(jvmId);
             Objects.requireNonNull(downloadUrl);
@@ -398,4 +505,85 @@ public class Diagnostics {
             Objects.requireNonNull(metadata);
         }
     }
+
+    /**
+     * Overview of a thread dump computed when it is stored, so that listings do not need to fetch
+     * and parse the dump itself.
+     *
+     * @param threadCount the total number of threads in the dump
+     * @param uniqueStacks the number of distinct (state, stack) combinations among the threads
+     * @param threadStates the number of threads in each {@link java.lang.Thread.State}, or UNKNOWN
+     *     for VM-internal threads
+     * @param blockedMonitors the monitors with the most threads blocked waiting to lock them
+     * @param stackDigest SHA-256 over the threads' states and stacks, independent of thread names
+     *     and ordering
+     */
+    public record ThreadDumpSummary(
+            int threadCount,
+            int uniqueStacks,
+            List<ThreadStateCount> threadStates,
+            List<BlockedMonitor> blockedMonitors,
+            String stackDigest) {
+        public ThreadDumpSummary {
+            Objects.requireNonNull(threadStates);
+            Objects.requireNonNull(blockedMonitors);
+            Objects.requireNonNull(stackDigest);
+        }
+
+        public record ThreadStateCount(String state, int count) {}
+
+        public record BlockedMonitor(
+                String monitor, String className, @Nullable String owner, int waiters) {}
+    }
+
+    /**
+     * Comparison of two or more thread dumps of the same target JVM, in the order they were given.
+     *
+     * @param unchangedThreads threads present in every dump with the same state and stack
+     * @param persistentContention monitors with threads blocked waiting to lock them in every dump
+     * @param newThreads threads present in the last dump but not the first
+     * @param disappearedThreads threads present in the first dump but not the last
+     */
+    public record ThreadDumpDiff(
+            String jvmId,
+            List<String> threadDumpIds,
+            List<ThreadStack> unchangedThreads,
+            List<PersistentContention> persistentContention,
+            List<String> newThreads,
+            List<String> disappearedThreads) {
+        public ThreadDumpDiff {
+            Objects.requireNonNull(jvmId);
+            Objects.requireNonNull(threadDumpIds);
+            Objects.requireNonNull(unchangedThreads);
+            Objects.requireNonNull(persistentContention);
+            Objects.requireNonNull(newThreads);
+            Objects.requireNonNull(disappearedThreads);
+        }
+
+        public record ThreadStack(String name, String state, List<String> frames) {}
+
+        /**
+         * @param monitor the address of the monitor in the last dump. Monitors are matched across
+         *     dumps by class and owner rather than by address, which changes if the GC moves them
+         * @param owner the thread holding the monitor in the last dump, if any
+         * @param waiters the number of threads blocked on the monitor in each dump
+         */
+        public record PersistentContention(
+                String monitor, String className, @Nullable String owner, List<Integer> waiters) {}
+    }
+
+    public record DumpKey(String jvmId, String id) {
+        public DumpKey {
+            Objects.requireNonNull(jvmId);
+            Objects.requireNonNull(id);
+        }
+
+        static List<Pair<String, String>> toPairs(List<DumpKey> keys) {
+            return keys.stream().map(k -> Pair.of(k.jvmId(), k.id())).toList();
+        }
+
+        static List<DumpKey> from(List<Pair<String, String>> pairs) {
+            return pairs.stream().map(p -> new DumpKey(p.getKey(), p.getValue())).toList();
+        }
+    }
 }
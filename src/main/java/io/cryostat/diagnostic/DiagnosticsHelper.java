@@ -15,31 +15,52 @@
  */
 package io.cryostat.diagnostic;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.Producers;
 import io.cryostat.StorageBuckets;
 import io.cryostat.diagnostic.Diagnostics.HeapDump;
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary;
 import io.cryostat.diagnostic.Diagnostics.ThreadDump;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary;
 import io.cryostat.diagnostic.DiagnosticsMetadataService.StorageMode;
 import io.cryostat.libcryostat.sys.Clock;
 import io.cryostat.recordings.ActiveRecordings.Metadata;
+import io.cryostat.recordings.StorageCodec;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.TargetConnectionManager;
 import io.cryostat.ws.MessagingServer;
 import io.cryostat.ws.Notification;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import io.smallrye.common.annotation.Identifier;
 import io.vertx.ext.web.handler.HttpException;
@@ -59,6 +80,11 @@ import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
@@ -71,6 +97,7 @@ import software.amazon.awssdk.services.s3.model.PutObjectTaggingRequest;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.model.Tag;
 import software.amazon.awssdk.services.s3.model.Tagging;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 @ApplicationScoped
 public class DiagnosticsHelper {
@@ -87,9 +114,15 @@ public class DiagnosticsHelper {
     static final String HEAP_DUMP_SUCCESS = "HeapDumpSuccess";
     static final String HEAP_DUMP_UPLOADED_NAME = "HeapDumpUploaded";
     static final String HEAP_DUMP_METADATA = "HeapDumpMetadataUpdated";
+    static final String HEAP_DUMP_UPLOAD_PROGRESS = "HeapDumpUploadProgress";
+    static final String HEAP_DUMP_ANALYZED_NAME = "HeapDumpAnalyzed";
     private static final String DIAGNOSTIC_BEAN_NAME = "com.sun.management:type=DiagnosticCommand";
     private static final String HOTSPOT_DIAGNOSTIC_BEAN_NAME =
             "com.sun.management:type=HotSpotDiagnostic";
+    private static final int S3_API_PART_LIMIT = 10_000;
+    private static final int MIB = 1024 * 1024;
+    private static final int PART_UPLOAD_ATTEMPTS = 3;
+    static final String HEAP_DUMP_SUMMARY_SUFFIX = ".summary.json";
 
     @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_THREAD_DUMPS)
     String bucket;
@@ -100,6 +133,15 @@ public class DiagnosticsHelper {
     @ConfigProperty(name = ConfigProperties.STORAGE_METADATA_ARCHIVES_STORAGE_MODE)
     String metadataStorageMode;
 
+    @ConfigProperty(name = ConfigProperties.HEAP_DUMPS_UPLOAD_PART_SIZE_MIB)
+    int uploadPartSizeMib;
+
+    @ConfigProperty(name = ConfigProperties.HEAP_DUMPS_UPLOAD_CONCURRENCY)
+    int uploadConcurrency;
+
+    @ConfigProperty(name = ConfigProperties.HEAP_DUMPS_ANALYSIS_ENABLED)
+    boolean heapDumpAnalysisEnabled;
+
     @Inject
     @Identifier(Producers.BASE64_URL)
     Base64 base64Url;
@@ -107,6 +149,7 @@ public class DiagnosticsHelper {
     @Inject Instance<DiagnosticsMetadataService> metadataService;
 
     @Inject S3Client storage;
+    @Inject ObjectMapper mapper;
     @Inject Logger log;
     @Inject Clock clock;
 
@@ -114,6 +157,10 @@ public class DiagnosticsHelper {
     @Inject TargetConnectionManager targetConnectionManager;
     @Inject StorageBuckets buckets;
 
+    // heap dump analysis makes full passes over potentially very large files, so dumps are
+    // analyzed one at a time off the upload request
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+
     void onStart(@Observes StartupEvent evt) {
         log.tracev("Creating heap dump bucket: {0}", heapDumpBucket);
         buckets.createIfNecessary(heapDumpBucket);
@@ -121,6 +168,10 @@ public class DiagnosticsHelper {
         buckets.createIfNecessary(bucket);
     }
 
+    void onStop(@Observes ShutdownEvent evt) {
+        analysisExecutor.shutdownNow();
+    }
+
     public void dumpHeap(Target target, String requestId) {
         log.tracev(
                 "Heap Dump request received for Target: {0} with jobId {1}", target.id, requestId);
@@ -154,6 +205,11 @@ public class DiagnosticsHelper {
         String key = storageKey(jvmId, heapDumpId);
         storage.headObject(HeadObjectRequest.builder().bucket(heapDumpBucket).key(key).build());
         storage.deleteObject(DeleteObjectRequest.builder().bucket(heapDumpBucket).key(key).build());
+        storage.deleteObject(
+                DeleteObjectRequest.builder()
+                        .bucket(heapDumpBucket)
+                        .key(heapDumpSummaryKey(jvmId, heapDumpId))
+                        .build());
         var event =
                 new HeapDumpEvent(
                         EventCategory.HEAP_DUMP_DELETED,
@@ -171,6 +227,43 @@ public class DiagnosticsHelper {
                 new Notification(event.category().category(), event.payload()));
     }
 
+    /**
+     * Delete many heap dumps using batched DeleteObjects requests. Existence is checked with one
+     * listing per jvmId rather than a HEAD request per object.
+     *
+     * @param keys pairs of (jvmId, heapDumpId) to delete
+     * @return the keys which were successfully deleted
+     */
+    public List<Pair<String, String>> deleteHeapDumps(Collection<Pair<String, String>> keys) {
+        List<Pair<String, String>> deleted = deleteObjects(heapDumpBucket, keys);
+        buckets.deleteObjects(
+                heapDumpBucket,
+                deleted.stream().map(k -> heapDumpSummaryKey(k.getKey(), k.getValue())).toList());
+        Map<String, Optional<Target>> targets = resolveTargets(deleted);
+        for (Pair<String, String> key : deleted) {
+            String jvmId = key.getKey();
+            String heapDumpId = key.getValue();
+            HeapDump dump =
+                    new HeapDump(
+                            jvmId,
+                            heapDumpDownloadUrl(jvmId, heapDumpId),
+                            heapDumpId,
+                            0,
+                            0,
+                            new Metadata(Map.of()));
+            var event =
+                    new HeapDumpEvent(
+                            EventCategory.HEAP_DUMP_DELETED,
+                            targets.get(jvmId)
+                                    .map(t -> HeapDumpEvent.Payload.of(t, dump))
+                                    .orElseGet(() -> new HeapDumpEvent.Payload(jvmId, dump)));
+            bus.publish(
+                    MessagingServer.class.getName(),
+                    new Notification(event.category().category(), event.payload()));
+        }
+        return deleted;
+    }
+
     public List<HeapDump> getHeapDumps(String jvmId) {
         return getHeapDumps(Target.getTargetByJvmId(jvmId).get());
     }
@@ -219,6 +312,8 @@ public class DiagnosticsHelper {
             String key = storageKey(target.jvmId, threadDumpId);
             storage.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
             storage.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+            QuarkusTransaction.joiningExisting()
+                    .run(() -> StoredThreadDump.deleteByKey(target.jvmId, threadDumpId));
             var event =
                     new ThreadDumpEvent(
                             EventCategory.DELETED,
@@ -230,7 +325,8 @@ public class DiagnosticsHelper {
                                             threadDumpId,
                                             0,
                                             0,
-                                            new Metadata(Map.of())),
+                                            new Metadata(Map.of()),
+                                            null),
                                     ""));
             bus.publish(
                     MessagingServer.class.getName(),
@@ -238,16 +334,90 @@ public class DiagnosticsHelper {
         }
     }
 
+    /**
+     * Delete many thread dumps using batched DeleteObjects requests. Existence is checked with one
+     * listing per jvmId rather than a HEAD request per object.
+     *
+     * @param keys pairs of (jvmId, threadDumpId) to delete
+     * @return the keys which were successfully deleted
+     */
+    public List<Pair<String, String>> deleteThreadDumps(Collection<Pair<String, String>> keys) {
+        List<Pair<String, String>> deleted = deleteObjects(bucket, keys);
+        QuarkusTransaction.joiningExisting()
+                .run(
+                        () ->
+                                deleted.forEach(
+                                        k ->
+                                                StoredThreadDump.deleteByKey(
+                                                        k.getKey(), k.getValue())));
+        Map<String, Optional<Target>> targets = resolveTargets(deleted);
+        for (Pair<String, String> key : deleted) {
+            String jvmId = key.getKey();
+            String threadDumpId = key.getValue();
+            ThreadDump dump =
+                    new ThreadDump(
+                            jvmId,
+                            downloadUrl(jvmId, threadDumpId),
+                            threadDumpId,
+                            0,
+                            0,
+                            new Metadata(Map.of()),
+                            null);
+            var event =
+                    new ThreadDumpEvent(
+                            EventCategory.DELETED,
+                            targets.get(jvmId)
+                                    .map(t -> ThreadDumpEvent.Payload.of(t, dump, ""))
+                                    .orElseGet(() -> new ThreadDumpEvent.Payload(jvmId, dump, "")));
+            bus.publish(
+                    MessagingServer.class.getName(),
+                    new Notification(event.category().category(), event.payload()));
+        }
+        return deleted;
+    }
+
+    private List<Pair<String, String>> deleteObjects(
+            String storageBucket, Collection<Pair<String, String>> keys) {
+        Map<String, Pair<String, String>> byKey = new HashMap<>();
+        keys.forEach(k -> byKey.put(storageKey(k), k));
+        // S3 reports missing keys as deleted, so only delete, and notify for, keys which exist
+        List<String> deletedKeys =
+                buckets.deleteObjects(
+                        storageBucket, buckets.existingKeys(storageBucket, byKey.keySet()));
+        if (storageMode() == StorageMode.BUCKET && metadataService.isResolvable()) {
+            try {
+                metadataService.get().deleteAll(deletedKeys);
+            } catch (IOException e) {
+                log.warn(e);
+            }
+        }
+        return deletedKeys.stream().map(byKey::get).filter(Objects::nonNull).toList();
+    }
+
+    private Map<String, Optional<Target>> resolveTargets(Collection<Pair<String, String>> keys) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () -> {
+                            Map<String, Optional<Target>> targets = new HashMap<>();
+                            keys.forEach(
+                                    k ->
+                                            targets.computeIfAbsent(
+                                                    k.getKey(), Target::getTargetByJvmId));
+                            return targets;
+                        });
+    }
+
     public List<ThreadDump> getThreadDumps(String jvmId) {
         return getThreadDumps(Target.getTargetByJvmId(jvmId).get());
     }
 
     public List<ThreadDump> getThreadDumps(Target target) {
+        Map<String, StoredThreadDump> stored = getStoredThreadDumps(target.jvmId);
         return listThreadDumps(target).stream()
                 .map(
                         item -> {
                             try {
-                                return convertObject(item);
+                                return convertObject(item, stored);
                             } catch (Exception e) {
                                 log.error(e);
                                 return null;
@@ -270,37 +440,87 @@ public class DiagnosticsHelper {
                 metadata.orElse(new Metadata(Map.of())));
     }
 
-    private ThreadDump convertObject(S3Object object) throws Exception {
+    private ThreadDump convertObject(S3Object object, Map<String, StoredThreadDump> stored)
+            throws Exception {
         String jvmId = object.key().split("/")[0];
         String uuid = object.key().split("/")[1];
-        Optional<Metadata> metadata = getObjectMetadata(storageKey(jvmId, uuid), bucket);
+        StoredThreadDump dump = stored.get(uuid);
+        Metadata metadata;
+        if (dump != null && dump.metadata != null) {
+            metadata = dump.metadata;
+        } else {
+            // dumps captured before labels were recorded in the database
+            metadata =
+                    getObjectMetadata(storageKey(jvmId, uuid), bucket)
+                            .orElse(new Metadata(Map.of()));
+        }
         return new ThreadDump(
                 jvmId,
                 downloadUrl(jvmId, uuid),
                 uuid,
                 object.lastModified().toEpochMilli(),
-                object.size(),
-                metadata.orElse(new Metadata(Map.of())));
+                // dumps stored before compression was introduced are held uncompressed
+                dump == null ? object.size() : dump.size,
+                metadata,
+                dump == null ? null : dump.summary);
+    }
+
+    /**
+     * @return the stored summaries and labels of the given target JVM's thread dumps, by thread
+     *     dump ID
+     */
+    private Map<String, StoredThreadDump> getStoredThreadDumps(String jvmId) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () -> {
+                            Map<String, StoredThreadDump> dumps = new HashMap<>();
+                            StoredThreadDump.listByJvmId(jvmId)
+                                    .forEach(d -> dumps.put(d.threadDumpId, d));
+                            return dumps;
+                        });
     }
 
+    /**
+     * Store a thread dump compressed, along with a summary of its contents and its uncompressed
+     * size. These are kept in the database so that listings can present them without fetching the
+     * dump.
+     */
     public ThreadDump addThreadDump(Target target, String content) {
         String uuid = UUID.randomUUID().toString();
         log.tracev(
                 "Putting Thread dump into storage with key: {0}", storageKey(target.jvmId, uuid));
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded;
+        try (var stream = StorageCodec.GZIP.encode(new ByteArrayInputStream(raw))) {
+            encoded = stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         var req =
                 PutObjectRequest.builder()
                         .bucket(bucket)
                         .key(storageKey(target.jvmId, uuid))
                         .contentType(MediaType.TEXT_PLAIN)
+                        .contentEncoding(StorageCodec.GZIP.contentEncoding())
                         .build();
-        storage.putObject(req, RequestBody.fromString(content));
+        storage.putObject(req, RequestBody.fromBytes(encoded));
+
+        ThreadDumpSummary summary = ThreadDumpParser.summarize(content);
+        Metadata metadata = new Metadata(Map.of());
+        QuarkusTransaction.joiningExisting()
+                .run(
+                        () ->
+                                StoredThreadDump.of(
+                                                target.jvmId, uuid, raw.length, summary, metadata)
+                                        .persist());
         return new ThreadDump(
                 target.jvmId,
                 downloadUrl(target.jvmId, uuid),
                 uuid,
                 clock.now().getEpochSecond(),
-                content.length(),
-                new Metadata(Map.of()));
+                raw.length,
+                metadata,
+                summary);
     }
 
     public HeapDump addHeapDump(Target target, FileUpload heapDump, String requestId) {
@@ -315,20 +535,16 @@ public class DiagnosticsHelper {
         }
         log.tracev(
                 "Putting Heap dump into storage with key: {0}", storageKey(target.jvmId, filename));
-        var reqBuilder =
-                PutObjectRequest.builder()
-                        .bucket(heapDumpBucket)
-                        .key(storageKey(target.jvmId, filename))
-                        .contentType(MediaType.TEXT_PLAIN);
-
-        storage.putObject(reqBuilder.build(), RequestBody.fromFile(heapDump.filePath()));
+        long size = heapDump.filePath().toFile().length();
+        uploadHeapDump(
+                storageKey(target.jvmId, filename), heapDump.filePath(), size, target, requestId);
         var dump =
                 new HeapDump(
                         target.jvmId,
                         heapDumpDownloadUrl(target.jvmId, filename),
                         filename,
                         clock.now().getEpochSecond(),
-                        heapDump.filePath().toFile().length(),
+                        size,
                         new Metadata(Map.of()));
         var event =
                 new HeapDumpEvent(
@@ -336,9 +552,264 @@ public class DiagnosticsHelper {
         bus.publish(
                 MessagingServer.class.getName(),
                 new Notification(event.category().category(), event.payload()));
+        if (heapDumpAnalysisEnabled) {
+            scheduleHeapDumpAnalysis(target, dump, heapDump.filePath());
+        }
         return dump;
     }
 
+    /**
+     * Queue the uploaded heap dump for analysis after the upload request completes. The upload's
+     * temporary file is removed when the request ends, so it is first linked, or copied if it
+     * cannot be linked, to a file owned by the analysis task.
+     */
+    private void scheduleHeapDumpAnalysis(Target target, HeapDump dump, Path upload) {
+        Path file;
+        try {
+            file = Files.createTempFile(upload.getParent(), "heapdump-", ".hprof");
+            Files.delete(file);
+            try {
+                Files.createLink(file, upload);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(upload, file);
+            }
+        } catch (IOException e) {
+            log.warnv(e, "Failed to retain heap dump {0} for analysis", dump.heapDumpId());
+            return;
+        }
+        var payload = HeapDumpEvent.Payload.of(target, dump);
+        analysisExecutor.execute(
+                () -> {
+                    try {
+                        if (analyzeHeapDump(dump.jvmId(), dump.heapDumpId(), file)) {
+                            var event =
+                                    new HeapDumpEvent(EventCategory.HEAP_DUMP_ANALYZED, payload);
+                            bus.publish(
+                                    MessagingServer.class.getName(),
+                                    new Notification(
+                                            event.category().category(), event.payload()));
+                        }
+                    } finally {
+                        try {
+                            Files.deleteIfExists(file);
+                        } catch (IOException e) {
+                            log.warn(e);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Compute a {@link HeapDumpSummary} from the heap dump file and store it alongside the dump.
+     * Failure to analyze the dump is logged but does not affect the stored dump.
+     *
+     * @return true if the summary was stored
+     */
+    private boolean analyzeHeapDump(String jvmId, String heapDumpId, Path file) {
+        String key = heapDumpSummaryKey(jvmId, heapDumpId);
+        try {
+            long start = System.nanoTime();
+            HeapDumpSummary summary = HeapDumpParser.summarize(file);
+            storage.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(heapDumpBucket)
+                            .key(key)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .build(),
+                    RequestBody.fromBytes(mapper.writeValueAsBytes(summary)));
+            log.tracev(
+                    "Analyzed heap dump {0} in {1}ms",
+                    storageKey(jvmId, heapDumpId),
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warnv(e, "Failed to analyze heap dump {0}", storageKey(jvmId, heapDumpId));
+            return false;
+        }
+    }
+
+    /**
+     * @return the summary computed when the heap dump was uploaded, or empty if the dump was not
+     *     analyzed
+     */
+    public Optional<HeapDumpSummary> getHeapDumpSummary(String jvmId, String heapDumpId) {
+        GetObjectRequest req =
+                GetObjectRequest.builder()
+                        .bucket(heapDumpBucket)
+                        .key(heapDumpSummaryKey(jvmId, heapDumpId))
+                        .build();
+        try (var stream = storage.getObject(req)) {
+            return Optional.of(mapper.readValue(stream, HeapDumpSummary.class));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String heapDumpSummaryKey(String jvmId, String heapDumpId) {
+        return storageKey(jvmId, heapDumpId) + HEAP_DUMP_SUMMARY_SUFFIX;
+    }
+
+    /**
+     * Upload a heap dump file. Files larger than a single part are sent as a multipart upload with
+     * up to {@code uploadConcurrency} parts in flight at once, each retried independently, and a
+     * progress notification is emitted as each part completes.
+     */
+    private void uploadHeapDump(String key, Path file, long size, Target target, String requestId) {
+        long partSize = Math.max((long) uploadPartSizeMib * MIB, ceilDiv(size, S3_API_PART_LIMIT));
+        if (size <= partSize) {
+            storage.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(heapDumpBucket)
+                            .key(key)
+                            .contentType(MediaType.TEXT_PLAIN)
+                            .build(),
+                    RequestBody.fromFile(file));
+            notifyUploadProgress(target, requestId, size, size);
+            return;
+        }
+
+        String uploadId =
+                storage.createMultipartUpload(
+                                CreateMultipartUploadRequest.builder()
+                                        .bucket(heapDumpBucket)
+                                        .key(key)
+                                        .contentType(MediaType.TEXT_PLAIN)
+                                        .build())
+                        .uploadId();
+        int partCount = (int) ceilDiv(size, partSize);
+        AtomicLong uploaded = new AtomicLong();
+        try (ExecutorService workers =
+                Executors.newFixedThreadPool(
+                        Math.max(1, uploadConcurrency), Thread.ofVirtual().factory())) {
+            List<Future<CompletedPart>> futures = new ArrayList<>(partCount);
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                int length = (int) Math.min(partSize, size - offset);
+                futures.add(
+                        workers.submit(
+                                () -> {
+                                    CompletedPart part =
+                                            uploadPart(
+                                                    key,
+                                                    uploadId,
+                                                    file,
+                                                    partNumber,
+                                                    offset,
+                                                    length);
+                                    notifyUploadProgress(
+                                            target,
+                                            requestId,
+                                            uploaded.addAndGet(length),
+                                            size);
+                                    return part;
+                                }));
+            }
+            List<CompletedPart> parts = new ArrayList<>(partCount);
+            try {
+                for (Future<CompletedPart> f : futures) {
+                    parts.add(f.get());
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                // don't keep uploading the remaining parts of an upload that will be aborted
+                futures.forEach(f -> f.cancel(true));
+                throw e;
+            }
+            storage.completeMultipartUpload(
+                    CompleteMultipartUploadRequest.builder()
+                            .bucket(heapDumpBucket)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .multipartUpload(
+                                    CompletedMultipartUpload.builder().parts(parts).build())
+                            .build());
+        } catch (Exception e) {
+            log.error("Could not upload heap dump to S3 storage", e);
+            try {
+                storage.abortMultipartUpload(
+                        AbortMultipartUploadRequest.builder()
+                                .bucket(heapDumpBucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .build());
+            } catch (Exception e2) {
+                log.error("Could not abort S3 multipart upload", e2);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private CompletedPart uploadPart(
+            String key, String uploadId, Path file, int partNumber, long offset, int length)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offset + buf.position()) < 0) {
+                    throw new IOException(
+                            String.format(
+                                    "Unexpected end of heap dump file at part %d", partNumber));
+                }
+            }
+        }
+        buf.flip();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                String eTag =
+                        storage.uploadPart(
+                                        UploadPartRequest.builder()
+                                                .bucket(heapDumpBucket)
+                                                .key(key)
+                                                .uploadId(uploadId)
+                                                .partNumber(partNumber)
+                                                .contentLength(Long.valueOf(length))
+                                                .build(),
+                                        RequestBody.fromByteBuffer(buf.duplicate()))
+                                .eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } catch (RuntimeException e) {
+                if (attempt >= PART_UPLOAD_ATTEMPTS) {
+                    throw e;
+                }
+                log.warnv(
+                        e,
+                        "Heap dump {0} part {1} upload attempt {2} failed, retrying",
+                        key,
+                        partNumber,
+                        attempt);
+            }
+        }
+    }
+
+    private void notifyUploadProgress(Target target, String requestId, long uploaded, long total) {
+        bus.publish(
+                MessagingServer.class.getName(),
+                new Notification(
+                        HEAP_DUMP_UPLOAD_PROGRESS,
+                        Map.of(
+                                "jobId",
+                                Objects.requireNonNullElse(requestId, ""),
+                                "jvmId",
+                                target.jvmId,
+                                "uploaded",
+                                uploaded,
+                                "total",
+                                total)));
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return (x + y - 1) / y;
+    }
+
     public String downloadUrl(String jvmId, String filename) {
         return String.format(
                 "/api/beta/diagnostics/threaddump/download/%s", encodedKey(jvmId, filename));
@@ -363,6 +834,25 @@ public class DiagnosticsHelper {
         return storageKey(pair.getKey(), pair.getValue());
     }
 
+    /**
+     * Fetch and parse each of the given thread dumps and compare them in the given order.
+     *
+     * @throws NoSuchKeyException if any of the dumps does not exist
+     */
+    public ThreadDumpDiff diffThreadDumps(String jvmId, List<String> threadDumpIds) {
+        List<List<ThreadDumpParser.ThreadEntry>> dumps = new ArrayList<>(threadDumpIds.size());
+        for (String id : threadDumpIds) {
+            try (var stream = getThreadDumpStream(jvmId, id)) {
+                dumps.add(
+                        ThreadDumpParser.parse(
+                                new String(stream.readAllBytes(), StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return ThreadDumpDiffer.diff(jvmId, threadDumpIds, dumps);
+    }
+
     public InputStream getThreadDumpStream(String jvmId, String threadDumpID) {
         return getThreadDumpStream(encodedKey(jvmId, threadDumpID));
     }
@@ -371,7 +861,17 @@ public class DiagnosticsHelper {
         Pair<String, String> decodedKey = decodedKey(encodedKey);
         var key = storageKey(decodedKey);
         GetObjectRequest getRequest = GetObjectRequest.builder().bucket(bucket).key(key).build();
-        return storage.getObject(getRequest);
+        var resp = storage.getObject(getRequest);
+        try {
+            return StorageCodec.fromContentEncoding(resp.response().contentEncoding()).decode(resp);
+        } catch (IOException e) {
+            try {
+                resp.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw new UncheckedIOException(e);
+        }
     }
 
     public InputStream getHeapDumpStream(String jvmId, String threadDumpID) {
@@ -402,7 +902,7 @@ public class DiagnosticsHelper {
             throw new IllegalArgumentException();
         }
         var req = ListObjectsV2Request.builder().bucket(bucket).prefix(jvmId).build();
-        return storage.listObjectsV2(req).contents();
+        return storage.listObjectsV2Paginator(req).contents().stream().toList();
     }
 
     public List<S3Object> listHeapDumps(Target target) {
@@ -414,7 +914,10 @@ public class DiagnosticsHelper {
         if (StringUtils.isNotBlank(jvmId)) {
             builder = builder.prefix(jvmId);
         }
-        return storage.listObjectsV2(builder.build()).contents();
+        // summaries are stored next to the dumps they describe
+        return storage.listObjectsV2(builder.build()).contents().stream()
+                .filter(o -> !o.key().endsWith(HEAP_DUMP_SUMMARY_SUFFIX))
+                .toList();
     }
 
     // Labels Handling
@@ -568,8 +1071,17 @@ public class DiagnosticsHelper {
             String jvmId, String threadDumpId, Map<String, String> metadata) throws IOException {
         var response = assertObjectExists(jvmId, threadDumpId, bucket);
         Metadata updatedMetadata = updateMetadata(jvmId, threadDumpId, metadata, bucket);
-
-        long size = response.contentLength();
+        Optional<StoredThreadDump> stored =
+                QuarkusTransaction.joiningExisting()
+                        .call(
+                                () -> {
+                                    var dump = StoredThreadDump.findByKey(jvmId, threadDumpId);
+                                    dump.ifPresent(d -> d.metadata = updatedMetadata);
+                                    return dump;
+                                });
+        ThreadDumpSummary summary = stored.map(d -> d.summary).orElse(null);
+
+        long size = stored.map(d -> d.size).orElse(response.contentLength());
         long lastModified = response.lastModified().toEpochMilli();
 
         ThreadDump updatedDump =
@@ -579,7 +1091,8 @@ public class DiagnosticsHelper {
                         threadDumpId,
                         lastModified,
                         size,
-                        updatedMetadata);
+                        updatedMetadata,
+                        summary);
 
         var event =
                 new ThreadDumpEvent(
@@ -627,6 +1140,7 @@ public class DiagnosticsHelper {
         CREATED(THREAD_DUMP_SUCCESS),
         HEAP_DUMP_DELETED(HEAP_DUMP_DELETED_NAME),
         HEAP_DUMP_UPLOADED(HEAP_DUMP_UPLOADED_NAME),
+        HEAP_DUMP_ANALYZED(HEAP_DUMP_ANALYZED_NAME),
         THREAD_DUMP_METADATA_UPDATED(THREAD_DUMP_METADATA),
         HEAP_DUMP_METADATA_UPDATED(HEAP_DUMP_METADATA);
 
@@ -16,6 +16,7 @@
 package io.cryostat.diagnostic;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Optional;
 
 import io.cryostat.recordings.ActiveRecordings.Metadata;
@@ -46,6 +47,12 @@ public interface DiagnosticsMetadataService extends CRUDService<String, Metadata
         delete(DiagnosticsHelper.storageKey(jvmId, filename));
     }
 
+    default void deleteAll(Collection<String> storageKeys) throws IOException {
+        for (String storageKey : storageKeys) {
+            delete(storageKey);
+        }
+    }
+
     static enum StorageMode {
         TAGGING(METADATA_STORAGE_MODE_TAGGING),
         METADATA(METADATA_STORAGE_MODE_OBJECTMETA),
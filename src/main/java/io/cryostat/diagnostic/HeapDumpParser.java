@@ -0,0 +1,490 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary;
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary.ClassHistogramEntry;
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary.LargeObject;
+
+/**
+ * Stream-parses an HPROF heap dump file into a {@link HeapDumpSummary}. Memory use is bounded by
+ * the number of loaded classes rather than the number of objects: the file is read twice, first
+ * to learn which strings are class names and then to keep only those strings while counting the
+ * objects of each class.
+ *
+ * <p>Object sizes are estimated from the field or element data recorded in the dump plus a header
+ * of two identifiers (and a 4-byte length for arrays), rounded up to 8 bytes. They approximate but
+ * will not exactly match the JVM's object layout.
+ */
+final class HeapDumpParser {
+
+    static final int TOP_CLASSES = 50;
+    static final int LARGEST_OBJECTS = 20;
+
+    private static final String MAGIC = "JAVA PROFILE ";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // top-level record tags
+    private static final int TAG_UTF8 = 0x01;
+    private static final int TAG_LOAD_CLASS = 0x02;
+    private static final int TAG_HEAP_DUMP = 0x0C;
+    private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+
+    // heap dump sub-record tags
+    private static final int ROOT_UNKNOWN = 0xFF;
+    private static final int ROOT_JNI_GLOBAL = 0x01;
+    private static final int ROOT_JNI_LOCAL = 0x02;
+    private static final int ROOT_JAVA_FRAME = 0x03;
+    private static final int ROOT_NATIVE_STACK = 0x04;
+    private static final int ROOT_STICKY_CLASS = 0x05;
+    private static final int ROOT_THREAD_BLOCK = 0x06;
+    private static final int ROOT_MONITOR_USED = 0x07;
+    private static final int ROOT_THREAD_OBJECT = 0x08;
+    private static final int CLASS_DUMP = 0x20;
+    private static final int INSTANCE_DUMP = 0x21;
+    private static final int OBJ_ARRAY_DUMP = 0x22;
+    private static final int PRIM_ARRAY_DUMP = 0x23;
+
+    // basic type codes, indexing the element sizes and names below
+    private static final int TYPE_OBJECT = 2;
+    private static final int[] TYPE_SIZES = {0, 0, 0, 0, 1, 2, 4, 8, 1, 2, 4, 8};
+    private static final String[] TYPE_NAMES = {
+        null, null, null, null, "boolean", "char", "float", "double", "byte", "short", "int", "long"
+    };
+
+    private HeapDumpParser() {}
+
+    static HeapDumpSummary summarize(Path file) throws IOException {
+        Set<Long> nameIds = new HashSet<>();
+        try (Reader reader = new Reader(file)) {
+            int tag;
+            while ((tag = reader.nextRecord()) >= 0) {
+                if (tag == TAG_LOAD_CLASS) {
+                    reader.skip(8 + reader.idSize);
+                    nameIds.add(reader.readId());
+                } else {
+                    reader.skip(reader.length);
+                }
+            }
+        }
+
+        Histogram histogram = new Histogram();
+        try (Reader reader = new Reader(file)) {
+            int tag;
+            while ((tag = reader.nextRecord()) >= 0) {
+                switch (tag) {
+                    case TAG_UTF8:
+                        long id = reader.readId();
+                        int len = Math.toIntExact(reader.length - reader.idSize);
+                        if (nameIds.contains(id)) {
+                            histogram.names.put(id, reader.readUtf8(len));
+                        } else {
+                            reader.skip(len);
+                        }
+                        break;
+                    case TAG_LOAD_CLASS:
+                        reader.skip(4);
+                        long classId = reader.readId();
+                        reader.skip(4);
+                        histogram.classNameIds.put(classId, reader.readId());
+                        break;
+                    case TAG_HEAP_DUMP:
+                    case TAG_HEAP_DUMP_SEGMENT:
+                        readHeapDump(reader, reader.position() + reader.length, histogram);
+                        break;
+                    default:
+                        reader.skip(reader.length);
+                        break;
+                }
+            }
+        }
+        return histogram.summarize();
+    }
+
+    private static void readHeapDump(Reader reader, long end, Histogram histogram)
+            throws IOException {
+        int idSize = reader.idSize;
+        while (reader.position() < end) {
+            int tag = reader.readUnsignedByte();
+            switch (tag) {
+                case ROOT_UNKNOWN:
+                case ROOT_STICKY_CLASS:
+                case ROOT_MONITOR_USED:
+                    reader.skip(idSize);
+                    break;
+                case ROOT_JNI_GLOBAL:
+                    reader.skip(2 * idSize);
+                    break;
+                case ROOT_NATIVE_STACK:
+                case ROOT_THREAD_BLOCK:
+                    reader.skip(idSize + 4);
+                    break;
+                case ROOT_JNI_LOCAL:
+                case ROOT_JAVA_FRAME:
+                case ROOT_THREAD_OBJECT:
+                    reader.skip(idSize + 8);
+                    break;
+                case CLASS_DUMP:
+                    skipClassDump(reader);
+                    break;
+                case INSTANCE_DUMP:
+                    {
+                        long id = reader.readId();
+                        reader.skip(4);
+                        long classId = reader.readId();
+                        long n = reader.readUnsignedInt();
+                        reader.skip(n);
+                        histogram.addInstance(id, classId, align(2L * idSize + n));
+                        break;
+                    }
+                case OBJ_ARRAY_DUMP:
+                    {
+                        long id = reader.readId();
+                        reader.skip(4);
+                        long n = reader.readUnsignedInt();
+                        long classId = reader.readId();
+                        reader.skip(n * idSize);
+                        histogram.addInstance(id, classId, align(2L * idSize + 4 + n * idSize));
+                        break;
+                    }
+                case PRIM_ARRAY_DUMP:
+                    {
+                        long id = reader.readId();
+                        reader.skip(4);
+                        long n = reader.readUnsignedInt();
+                        int type = reader.readUnsignedByte();
+                        if (type == TYPE_OBJECT) {
+                            throw new IOException("Primitive array dump of object type");
+                        }
+                        long data = n * typeSize(type, idSize);
+                        reader.skip(data);
+                        histogram.addPrimitiveArray(id, type, align(2L * idSize + 4 + data));
+                        break;
+                    }
+                default:
+                    throw new IOException(
+                            String.format("Unrecognized heap dump sub-record tag 0x%02x", tag));
+            }
+        }
+    }
+
+    private static void skipClassDump(Reader reader) throws IOException {
+        int idSize = reader.idSize;
+        // class ID, stack trace serial, super, loader, signers, protection domain, 2 reserved,
+        // instance size
+        reader.skip(idSize + 4 + 6 * idSize + 4);
+        int constants = reader.readUnsignedShort();
+        for (int i = 0; i < constants; i++) {
+            reader.skip(2);
+            reader.skip(typeSize(reader.readUnsignedByte(), idSize));
+        }
+        int statics = reader.readUnsignedShort();
+        for (int i = 0; i < statics; i++) {
+            reader.skip(idSize);
+            reader.skip(typeSize(reader.readUnsignedByte(), idSize));
+        }
+        int fields = reader.readUnsignedShort();
+        reader.skip(fields * (idSize + 1L));
+    }
+
+    private static int typeSize(int type, int idSize) throws IOException {
+        if (type == TYPE_OBJECT) {
+            return idSize;
+        }
+        if (type < 0 || type >= TYPE_SIZES.length || TYPE_SIZES[type] == 0) {
+            throw new IOException(String.format("Unrecognized basic type 0x%02x", type));
+        }
+        return TYPE_SIZES[type];
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * @param name a class name as recorded in the dump, ex. {@code java/lang/String} or {@code
+     *     [Ljava/lang/String;}
+     * @return the class name as it would appear in Java source, ex. {@code java.lang.String[]}
+     */
+    static String className(String name) {
+        int dims = 0;
+        while (dims < name.length() && name.charAt(dims) == '[') {
+            dims++;
+        }
+        if (dims == 0) {
+            return name.replace('/', '.');
+        }
+        String element = name.substring(dims);
+        String base;
+        if (element.startsWith("L") && element.endsWith(";")) {
+            base = element.substring(1, element.length() - 1).replace('/', '.');
+        } else {
+            base =
+                    switch (element) {
+                        case "Z" -> "boolean";
+                        case "C" -> "char";
+                        case "F" -> "float";
+                        case "D" -> "double";
+                        case "B" -> "byte";
+                        case "S" -> "short";
+                        case "I" -> "int";
+                        case "J" -> "long";
+                        default -> element.replace('/', '.');
+                    };
+        }
+        return base + "[]".repeat(dims);
+    }
+
+    private static final class Histogram {
+        // class name string ID -> class name
+        final Map<Long, String> names = new HashMap<>();
+        // class object ID -> class name string ID
+        final Map<Long, Long> classNameIds = new HashMap<>();
+        // class object ID -> [instances, bytes]
+        final Map<Long, long[]> classes = new HashMap<>();
+        // basic type -> [instances, bytes]
+        final long[][] primitiveArrays = new long[TYPE_SIZES.length][2];
+        // smallest of the largest objects seen so far at the head
+        final PriorityQueue<Candidate> largest =
+                new PriorityQueue<>(Comparator.comparingLong(Candidate::size));
+
+        void addInstance(long id, long classId, long size) {
+            long[] counts = classes.computeIfAbsent(classId, k -> new long[2]);
+            counts[0]++;
+            counts[1] += size;
+            offer(new Candidate(id, classId, -1, size));
+        }
+
+        void addPrimitiveArray(long id, int type, long size) {
+            primitiveArrays[type][0]++;
+            primitiveArrays[type][1] += size;
+            offer(new Candidate(id, 0, type, size));
+        }
+
+        void offer(Candidate candidate) {
+            if (largest.size() < LARGEST_OBJECTS) {
+                largest.add(candidate);
+            } else if (largest.peek().size() < candidate.size()) {
+                largest.poll();
+                largest.add(candidate);
+            }
+        }
+
+        String resolve(Candidate candidate) {
+            return candidate.type() < 0
+                    ? resolve(candidate.classId())
+                    : TYPE_NAMES[candidate.type()] + "[]";
+        }
+
+        String resolve(long classId) {
+            Long nameId = classNameIds.get(classId);
+            String name = nameId == null ? null : names.get(nameId);
+            return name == null ? String.format("0x%x", classId) : className(name);
+        }
+
+        HeapDumpSummary summarize() {
+            // classes with the same name from different class loaders are counted together
+            Map<String, long[]> byName = new HashMap<>();
+            classes.forEach(
+                    (classId, counts) -> {
+                        long[] total = byName.computeIfAbsent(resolve(classId), k -> new long[2]);
+                        total[0] += counts[0];
+                        total[1] += counts[1];
+                    });
+            for (int type = 0; type < primitiveArrays.length; type++) {
+                if (primitiveArrays[type][0] > 0) {
+                    byName.put(TYPE_NAMES[type] + "[]", primitiveArrays[type]);
+                }
+            }
+
+            long objects = 0;
+            long bytes = 0;
+            List<ClassHistogramEntry> entries = new ArrayList<>(byName.size());
+            for (var e : byName.entrySet()) {
+                objects += e.getValue()[0];
+                bytes += e.getValue()[1];
+                entries.add(
+                        new ClassHistogramEntry(e.getKey(), e.getValue()[0], e.getValue()[1]));
+            }
+            entries.sort(
+                    Comparator.comparingLong(ClassHistogramEntry::shallowSize)
+                            .reversed()
+                            .thenComparing(ClassHistogramEntry::className));
+
+            List<LargeObject> objectsBySize =
+                    largest.stream()
+                            .sorted(
+                                    Comparator.comparingLong(Candidate::size)
+                                            .reversed()
+                                            .thenComparingLong(Candidate::id))
+                            .map(
+                                    c ->
+                                            new LargeObject(
+                                                    String.format("0x%x", c.id()),
+                                                    resolve(c),
+                                                    c.size()))
+                            .toList();
+
+            return new HeapDumpSummary(
+                    objects,
+                    bytes,
+                    byName.size(),
+                    List.copyOf(entries.subList(0, Math.min(TOP_CLASSES, entries.size()))),
+                    objectsBySize);
+        }
+    }
+
+    /**
+     * @param type the basic type for primitive arrays, or -1 for objects identified by classId
+     */
+    private record Candidate(long id, long classId, int type, long size) {}
+
+    private static final class Reader implements Closeable {
+        private final CountingInputStream counter;
+        private final DataInputStream in;
+        final int idSize;
+        long length;
+
+        Reader(Path file) throws IOException {
+            this.counter =
+                    new CountingInputStream(
+                            new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            this.in = new DataInputStream(counter);
+            String magic = readNullTerminated();
+            if (!magic.startsWith(MAGIC)) {
+                throw new IOException("Not an HPROF file");
+            }
+            this.idSize = in.readInt();
+            if (idSize != 4 && idSize != 8) {
+                throw new IOException("Unsupported identifier size " + idSize);
+            }
+            // dump timestamp
+            in.skipNBytes(8);
+        }
+
+        /**
+         * @return the next top-level record's tag, or -1 at the end of the file. The record's body
+         *     length is then available as {@link #length}.
+         */
+        int nextRecord() throws IOException {
+            int tag = in.read();
+            if (tag < 0) {
+                return -1;
+            }
+            // microseconds since the dump timestamp
+            in.skipNBytes(4);
+            length = Integer.toUnsignedLong(in.readInt());
+            return tag;
+        }
+
+        long position() {
+            return counter.count;
+        }
+
+        long readId() throws IOException {
+            return idSize == 4 ? Integer.toUnsignedLong(in.readInt()) : in.readLong();
+        }
+
+        long readUnsignedInt() throws IOException {
+            return Integer.toUnsignedLong(in.readInt());
+        }
+
+        int readUnsignedShort() throws IOException {
+            return in.readUnsignedShort();
+        }
+
+        int readUnsignedByte() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        String readUtf8(int len) throws IOException {
+            return new String(in.readNBytes(len), StandardCharsets.UTF_8);
+        }
+
+        void skip(long n) throws IOException {
+            in.skipNBytes(n);
+        }
+
+        private String readNullTerminated() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) > 0 && out.size() < MAGIC.length() + 16) {
+                out.write(b);
+            }
+            if (b != 0) {
+                throw new IOException("Not an HPROF file");
+            }
+            return out.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.util.List;
+import java.util.Optional;
+
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary;
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * Summary and labels of a thread dump held in storage, recorded when the dump is captured so that
+ * listings can describe dumps without fetching their bodies or metadata.
+ */
+@Entity
+@Table(indexes = {@Index(columnList = "jvmId, threadDumpId", unique = true)})
+public class StoredThreadDump extends PanacheEntity {
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String jvmId;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String threadDumpId;
+
+    /** Length of the uncompressed dump text, as the dump is held compressed in storage. */
+    @Column(nullable = false, updatable = false)
+    public long size;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @NotNull
+    public ThreadDumpSummary summary;
+
+    /**
+     * Labels of the dump, mirroring those held by the storage metadata service. Null for rows
+     * recorded before labels were kept here.
+     */
+    @JdbcTypeCode(SqlTypes.JSON)
+    public Metadata metadata;
+
+    public static StoredThreadDump of(
+            String jvmId,
+            String threadDumpId,
+            long size,
+            ThreadDumpSummary summary,
+            Metadata metadata) {
+        StoredThreadDump dump = new StoredThreadDump();
+        dump.jvmId = jvmId;
+        dump.threadDumpId = threadDumpId;
+        dump.size = size;
+        dump.summary = summary;
+        dump.metadata = metadata;
+        return dump;
+    }
+
+    public static Optional<StoredThreadDump> findByKey(String jvmId, String threadDumpId) {
+        return find("jvmId = ?1 and threadDumpId = ?2", jvmId, threadDumpId)
+                .singleResultOptional();
+    }
+
+    public static List<StoredThreadDump> listByJvmId(String jvmId) {
+        return list("jvmId", jvmId);
+    }
+
+    public static long deleteByKey(String jvmId, String threadDumpId) {
+        return delete("jvmId = ?1 and threadDumpId = ?2", jvmId, threadDumpId);
+    }
+}
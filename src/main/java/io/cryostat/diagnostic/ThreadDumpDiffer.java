@@ -0,0 +1,187 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff.PersistentContention;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff.ThreadStack;
+import io.cryostat.diagnostic.ThreadDumpParser.Monitor;
+import io.cryostat.diagnostic.ThreadDumpParser.ThreadEntry;
+
+/**
+ * Compares a series of parsed thread dumps of the same JVM, taken in chronological order. Threads
+ * are matched across dumps by name and Java thread ID, so that a thread pool reusing a name for a
+ * new thread is not mistaken for a thread that made no progress.
+ */
+final class ThreadDumpDiffer {
+
+    private ThreadDumpDiffer() {}
+
+    static ThreadDumpDiff diff(String jvmId, List<String> ids, List<List<ThreadEntry>> dumps) {
+        if (dumps.size() < 2 || dumps.size() != ids.size()) {
+            throw new IllegalArgumentException();
+        }
+        List<Map<String, ThreadEntry>> indexed =
+                dumps.stream().map(ThreadDumpDiffer::index).toList();
+        Map<String, ThreadEntry> first = indexed.get(0);
+        Map<String, ThreadEntry> last = indexed.get(indexed.size() - 1);
+
+        // threads with no Java frames (VM-internal, idle pool threads) trivially never change
+        List<ThreadStack> unchanged = new ArrayList<>();
+        for (var e : first.entrySet()) {
+            ThreadEntry thread = e.getValue();
+            if (thread.frames().isEmpty()) {
+                continue;
+            }
+            boolean same =
+                    indexed.stream()
+                            .allMatch(
+                                    d -> {
+                                        ThreadEntry other = d.get(e.getKey());
+                                        return other != null
+                                                && other.stackKey().equals(thread.stackKey());
+                                    });
+            if (same) {
+                unchanged.add(new ThreadStack(thread.name(), thread.state(), thread.frames()));
+            }
+        }
+        unchanged.sort(Comparator.comparing(ThreadStack::name));
+
+        List<String> newThreads =
+                last.entrySet().stream()
+                        .filter(e -> !first.containsKey(e.getKey()))
+                        .map(e -> e.getValue().name())
+                        .sorted()
+                        .toList();
+        List<String> disappearedThreads =
+                first.entrySet().stream()
+                        .filter(e -> !last.containsKey(e.getKey()))
+                        .map(e -> e.getValue().name())
+                        .sorted()
+                        .toList();
+
+        return new ThreadDumpDiff(
+                jvmId,
+                List.copyOf(ids),
+                unchanged,
+                persistentContention(dumps),
+                newThreads,
+                disappearedThreads);
+    }
+
+    private static Map<String, ThreadEntry> index(List<ThreadEntry> threads) {
+        Map<String, ThreadEntry> index = new LinkedHashMap<>();
+        for (ThreadEntry thread : threads) {
+            index.putIfAbsent(thread.identity(), thread);
+        }
+        return index;
+    }
+
+    /**
+     * @return the monitors which had threads blocked waiting to lock them in every dump, most
+     *     contended first
+     */
+    private static List<PersistentContention> persistentContention(
+            List<List<ThreadEntry>> dumps) {
+        List<Map<String, Contention>> contended =
+                dumps.stream().map(ThreadDumpDiffer::contention).toList();
+        List<PersistentContention> result = new ArrayList<>();
+        for (String key : contended.get(0).keySet()) {
+            if (!contended.stream().allMatch(c -> c.containsKey(key))) {
+                continue;
+            }
+            Contention latest = contended.get(contended.size() - 1).get(key);
+            result.add(
+                    new PersistentContention(
+                            latest.monitor().address(),
+                            latest.monitor().className(),
+                            latest.owner(),
+                            contended.stream().map(c -> c.get(key).waiters()).toList()));
+        }
+        result.sort(
+                Comparator.comparingInt(
+                                (PersistentContention c) ->
+                                        c.waiters().stream().mapToInt(Integer::intValue).sum())
+                        .reversed()
+                        .thenComparing(PersistentContention::monitor));
+        return result;
+    }
+
+    private record Contention(Monitor monitor, String owner, int waiters) {}
+
+    /**
+     * Monitor addresses are not stable across dumps, since the GC may move the monitor object in
+     * between, so contended monitors are keyed by their class and owning thread, or by where their
+     * waiters are blocked if they have no owner. The address only distinguishes monitors which are
+     * otherwise indistinguishable within a dump.
+     *
+     * @return the contended monitors in a single dump
+     */
+    private static Map<String, Contention> contention(List<ThreadEntry> dump) {
+        Map<String, ThreadEntry> owners = new HashMap<>();
+        for (ThreadEntry thread : dump) {
+            for (Monitor held : thread.held()) {
+                owners.put(held.address(), thread);
+            }
+        }
+        Map<String, Monitor> monitors = new HashMap<>();
+        Map<String, Integer> waiters = new HashMap<>();
+        Map<String, String> topFrames = new HashMap<>();
+        for (ThreadEntry thread : dump) {
+            Monitor monitor = thread.blockedOn();
+            if (monitor == null) {
+                continue;
+            }
+            monitors.put(monitor.address(), monitor);
+            waiters.merge(monitor.address(), 1, Integer::sum);
+            String top = thread.frames().isEmpty() ? "" : thread.frames().get(0);
+            topFrames.merge(monitor.address(), top, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+        }
+
+        Map<String, List<String>> addresses = new HashMap<>();
+        for (Monitor monitor : monitors.values()) {
+            ThreadEntry owner = owners.get(monitor.address());
+            String key =
+                    monitor.className()
+                            + "\n"
+                            + (owner != null
+                                    ? "owner " + owner.identity()
+                                    : "at " + topFrames.get(monitor.address()));
+            addresses.computeIfAbsent(key, k -> new ArrayList<>()).add(monitor.address());
+        }
+        Map<String, Contention> result = new HashMap<>();
+        for (var e : addresses.entrySet()) {
+            for (String address : e.getValue()) {
+                ThreadEntry owner = owners.get(address);
+                String key = e.getValue().size() == 1 ? e.getKey() : e.getKey() + "\n" + address;
+                result.put(
+                        key,
+                        new Contention(
+                                monitors.get(address),
+                                owner == null ? null : owner.name(),
+                                waiters.get(address)));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary.BlockedMonitor;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary.ThreadStateCount;
+
+/**
+ * Parses the text output of the {@code Thread.print} diagnostic command into per-thread entries,
+ * and condenses those into a {@link ThreadDumpSummary}.
+ */
+final class ThreadDumpParser {
+
+    static final String UNKNOWN_STATE = "UNKNOWN";
+    static final int TOP_BLOCKED_MONITORS = 5;
+
+    private static final Pattern HEADER = Pattern.compile("^\"(.*)\"(?: #(\\d+))?.*$");
+    private static final String STATE_PREFIX = "java.lang.Thread.State:";
+    private static final Pattern LOCK =
+            Pattern.compile(
+                    "^- (locked|waiting to lock|waiting on|parking to wait for)"
+                            + "\\s+<(\\w+)>(?: \\(a (.+)\\))?.*$");
+
+    private ThreadDumpParser() {}
+
+    static List<ThreadEntry> parse(String content) {
+        List<ThreadEntry> threads = new ArrayList<>();
+        Builder current = null;
+        for (String raw : content.split("\\R")) {
+            if (raw.startsWith("\"")) {
+                if (current != null) {
+                    threads.add(current.build());
+                }
+                Matcher m = HEADER.matcher(raw);
+                if (m.matches()) {
+                    current = new Builder(m.group(1), m.group(2));
+                } else {
+                    current = new Builder(raw, null);
+                }
+                continue;
+            }
+            if (current == null) {
+                continue;
+            }
+            String line = raw.strip();
+            if (line.isEmpty()) {
+                threads.add(current.build());
+                current = null;
+            } else if (line.startsWith(STATE_PREFIX)) {
+                String state = line.substring(STATE_PREFIX.length()).strip();
+                // ex. "TIMED_WAITING (sleeping)"
+                int space = state.indexOf(' ');
+                current.state = space < 0 ? state : state.substring(0, space);
+            } else if (line.startsWith("at ")) {
+                current.frames.add(line.substring(3));
+            } else {
+                Matcher m = LOCK.matcher(line);
+                if (!m.matches()) {
+                    continue;
+                }
+                Monitor monitor = new Monitor(m.group(2), m.group(3));
+                switch (m.group(1)) {
+                    case "locked":
+                        current.held.add(monitor);
+                        break;
+                    case "waiting to lock":
+                        current.blockedOn = monitor;
+                        break;
+                    default:
+                        current.waitingOn = monitor;
+                        break;
+                }
+            }
+        }
+        if (current != null) {
+            threads.add(current.build());
+        }
+        return threads;
+    }
+
+    static ThreadDumpSummary summarize(List<ThreadEntry> threads) {
+        Map<String, Integer> states = new TreeMap<>();
+        Map<String, Integer> waiters = new HashMap<>();
+        Map<String, Monitor> monitors = new HashMap<>();
+        Map<String, String> owners = new HashMap<>();
+        List<String> stacks = new ArrayList<>(threads.size());
+        for (ThreadEntry thread : threads) {
+            states.merge(thread.state(), 1, Integer::sum);
+            if (thread.blockedOn() != null) {
+                waiters.merge(thread.blockedOn().address(), 1, Integer::sum);
+                monitors.putIfAbsent(thread.blockedOn().address(), thread.blockedOn());
+            }
+            for (Monitor held : thread.held()) {
+                owners.put(held.address(), thread.name());
+            }
+            stacks.add(thread.stackKey());
+        }
+
+        List<BlockedMonitor> blocked =
+                waiters.entrySet().stream()
+                        .sorted(
+                                Map.Entry.<String, Integer>comparingByValue(
+                                                Comparator.reverseOrder())
+                                        .thenComparing(Map.Entry.comparingByKey()))
+                        .limit(TOP_BLOCKED_MONITORS)
+                        .map(
+                                e ->
+                                        new BlockedMonitor(
+                                                e.getKey(),
+                                                monitors.get(e.getKey()).className(),
+                                                owners.get(e.getKey()),
+                                                e.getValue()))
+                        .toList();
+
+        // thread names and ordering are not part of the digest, so that two dumps of threads doing
+        // the same work compare equal
+        stacks.sort(Comparator.naturalOrder());
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String stack : stacks) {
+            digest.update(stack.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return new ThreadDumpSummary(
+                threads.size(),
+                (int) stacks.stream().distinct().count(),
+                states.entrySet().stream()
+                        .map(e -> new ThreadStateCount(e.getKey(), e.getValue()))
+                        .toList(),
+                blocked,
+                HexFormat.of().formatHex(digest.digest()));
+    }
+
+    static ThreadDumpSummary summarize(String content) {
+        return summarize(parse(content));
+    }
+
+    record Monitor(String address, String className) {}
+
+    /**
+     * @param id the Java thread ID, or null for VM-internal threads
+     */
+    record ThreadEntry(
+            String name,
+            String id,
+            String state,
+            List<String> frames,
+            Monitor blockedOn,
+            Monitor waitingOn,
+            List<Monitor> held) {
+
+        /**
+         * @return the thread's state and frames, identifying what the thread is doing regardless
+         *     of its name
+         */
+        String stackKey() {
+            return state + "\n" + String.join("\n", frames);
+        }
+
+        /**
+         * @return a key identifying the same thread across dumps of the same JVM
+         */
+        String identity() {
+            return id == null ? name : name + " #" + id;
+        }
+    }
+
+    private static class Builder {
+        final String name;
+        final String id;
+        String state = UNKNOWN_STATE;
+        final List<String> frames = new ArrayList<>();
+        Monitor blockedOn;
+        Monitor waitingOn;
+        final List<Monitor> held = new ArrayList<>();
+
+        Builder(String name, String id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        ThreadEntry build() {
+            return new ThreadEntry(
+                    name,
+                    id,
+                    state,
+                    List.copyOf(frames),
+                    blockedOn,
+                    waitingOn,
+                    List.copyOf(held));
+        }
+    }
+}
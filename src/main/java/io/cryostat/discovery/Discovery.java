@@ -24,15 +24,19 @@ import java.net.UnknownHostException;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.discovery.DiscoveryPlugin.PluginCallback;
@@ -74,18 +78,17 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestPath;
 import org.jboss.resteasy.reactive.RestQuery;
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
-import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.SimpleScheduleBuilder;
 import org.quartz.TriggerBuilder;
-import org.quartz.impl.matchers.GroupMatcher;
 
 @Path("")
 public class Discovery {
@@ -93,13 +96,15 @@ public class Discovery {
     static final String X_FORWARDED_FOR = "X-Forwarded-For";
 
     private static final String JOB_PERIODIC = "periodic";
-    private static final String JOB_STARTUP = "startup";
-    private static final String PLUGIN_ID_MAP_KEY = "pluginId";
+    private static final String JOB_REFRESH = "refresh-plugins";
     private static final String REFRESH_MAP_KEY = "refresh";
 
     @ConfigProperty(name = "cryostat.discovery.plugins.ping-period")
     Duration discoveryPingPeriod;
 
+    @ConfigProperty(name = "cryostat.discovery.plugins.ping-timeout")
+    Duration discoveryPingTimeout;
+
     @ConfigProperty(name = ConfigProperties.AGENT_TLS_REQUIRED)
     boolean agentTlsRequired;
 
@@ -112,43 +117,28 @@ public class Discovery {
     @Inject Scheduler scheduler;
     @Inject URIUtil uriUtil;
 
-    void onStart(@Observes StartupEvent evt) {
-        QuarkusTransaction.requiringNew()
-                .run(
-                        () -> {
-                            DiscoveryPlugin.<DiscoveryPlugin>findAll().list().stream()
-                                    .filter(p -> !p.builtin)
-                                    .forEach(
-                                            plugin -> {
-                                                var dataMap = new JobDataMap();
-                                                dataMap.put(PLUGIN_ID_MAP_KEY, plugin.id);
-                                                dataMap.put(REFRESH_MAP_KEY, true);
-                                                JobDetail jobDetail =
-                                                        JobBuilder.newJob(RefreshPluginJob.class)
-                                                                .withIdentity(
-                                                                        plugin.id.toString(),
-                                                                        JOB_STARTUP)
-                                                                .usingJobData(dataMap)
-                                                                .build();
-                                                var trigger =
-                                                        TriggerBuilder.newTrigger()
-                                                                .usingJobData(
-                                                                        jobDetail.getJobDataMap())
-                                                                .startNow()
-                                                                .withSchedule(
-                                                                        SimpleScheduleBuilder
-                                                                                .simpleSchedule()
-                                                                                .withRepeatCount(0))
-                                                                .build();
-                                                try {
-                                                    scheduler.scheduleJob(jobDetail, trigger);
-                                                } catch (SchedulerException e) {
-                                                    logger.warn(
-                                                            "Failed to schedule plugin prune job",
-                                                            e);
-                                                }
-                                            });
-                        });
+    void onStart(@Observes StartupEvent evt) throws SchedulerException {
+        // a single job refreshes every registered plugin concurrently, rather than one job per
+        // plugin. The first firing happens immediately so that plugins left over from a previous
+        // run are refreshed or pruned at startup.
+        var dataMap = new JobDataMap();
+        dataMap.put(REFRESH_MAP_KEY, true);
+        JobDetail jobDetail =
+                JobBuilder.newJob(RefreshPluginJob.class)
+                        .withIdentity(JOB_REFRESH, JOB_PERIODIC)
+                        .usingJobData(dataMap)
+                        .build();
+        var trigger =
+                TriggerBuilder.newTrigger()
+                        .usingJobData(jobDetail.getJobDataMap())
+                        .startNow()
+                        .withSchedule(
+                                SimpleScheduleBuilder.simpleSchedule()
+                                        .repeatForever()
+                                        .withIntervalInSeconds(
+                                                (int) discoveryPingPeriod.toSeconds()))
+                        .build();
+        scheduler.scheduleJob(jobDetail, trigger);
     }
 
     void onStop(@Observes ShutdownEvent evt) throws SchedulerException {
@@ -214,8 +204,7 @@ public class Discovery {
                     additionally require the id and token fields, which are supplied in the response to the original
                     registration.
                     """)
-    public PluginRegistration register(@Context RoutingContext ctx, JsonObject body)
-            throws SchedulerException {
+    public PluginRegistration register(@Context RoutingContext ctx, JsonObject body) {
         String pluginId = body.getString("id");
         String priorToken = body.getString("token");
         String realmName = body.getString("realm");
@@ -307,7 +296,7 @@ public class Discovery {
                     .ifPresent(
                             p -> {
                                 try {
-                                    var cb = PluginCallback.create(p);
+                                    var cb = PluginCallback.create(p, discoveryPingTimeout);
                                     cb.ping();
                                     throw new IllegalArgumentException(
                                             String.format(
@@ -339,26 +328,6 @@ public class Discovery {
             } catch (URISyntaxException e) {
                 throw new BadRequestException(e);
             }
-
-            var dataMap = new JobDataMap();
-            dataMap.put(PLUGIN_ID_MAP_KEY, plugin.id);
-            dataMap.put(REFRESH_MAP_KEY, true);
-            JobDetail jobDetail =
-                    JobBuilder.newJob(RefreshPluginJob.class)
-                            .withIdentity(plugin.id.toString(), JOB_PERIODIC)
-                            .usingJobData(dataMap)
-                            .build();
-            var trigger =
-                    TriggerBuilder.newTrigger()
-                            .usingJobData(jobDetail.getJobDataMap())
-                            .startAt(Date.from(Instant.now().plus(discoveryPingPeriod)))
-                            .withSchedule(
-                                    SimpleScheduleBuilder.simpleSchedule()
-                                            .repeatForever()
-                                            .withIntervalInSeconds(
-                                                    (int) discoveryPingPeriod.toSeconds()))
-                            .build();
-            scheduler.scheduleJob(jobDetail, trigger);
         }
 
         String token;
@@ -464,8 +433,8 @@ public class Discovery {
                     Delete the plugin's registration along with its discovery Realm node and all of its children. This
                     is used when a discovery plugin is shutting down.
                     """)
-    public void deregister(@Context RoutingContext ctx, @RestPath UUID id, @RestQuery String token)
-            throws SchedulerException {
+    public void deregister(
+            @Context RoutingContext ctx, @RestPath UUID id, @RestQuery String token) {
         DiscoveryPlugin plugin = DiscoveryPlugin.find("id", id).singleResult();
         try {
             jwtValidator.validateJwt(ctx, plugin, token, false);
@@ -480,13 +449,6 @@ public class Discovery {
         if (plugin.builtin) {
             throw new ForbiddenException();
         }
-
-        Set<JobKey> jobKeys = new HashSet<>();
-        jobKeys.addAll(scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_PERIODIC)));
-        jobKeys.addAll(scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_STARTUP)));
-        for (var key : jobKeys) {
-            scheduler.deleteJob(key);
-        }
         plugin.delete();
     }
 
@@ -502,10 +464,10 @@ public class Discovery {
                     Retrieve a list of currently registered discovery plugins only, not including their subtrees.
                     """)
     public List<DiscoveryPlugin> getPlugins(@RestQuery String realm) {
-        // TODO filter for the matching realm name within the DB query
-        return DiscoveryPlugin.findAll().<DiscoveryPlugin>list().stream()
-                .filter(p -> StringUtils.isBlank(realm) || p.realm.name.equals(realm))
-                .toList();
+        if (StringUtils.isBlank(realm)) {
+            return DiscoveryPlugin.listAll();
+        }
+        return DiscoveryPlugin.list("realm.name", realm);
     }
 
     @GET
@@ -527,23 +489,100 @@ public class Discovery {
      * Check that discovery plugins are still alive/reachable and prompt them to regenerate expiring
      * tokens. Plugins are issued short-lived tokens at registration time. Cryostat periodically
      * pings plugins to ensure they are still alive/reachable and to prompt them to request a fresh
-     * token if their token will be expiring soon.
+     * token if their token will be expiring soon. All plugins are pinged concurrently on virtual
+     * threads, each with a small random start delay to avoid a burst of simultaneous requests and
+     * a deadline of twice the ping timeout, covering the connect and read timeouts, which starts
+     * after that delay. A full cycle therefore takes at most the jitter plus two ping timeouts
+     * regardless of the number of registered plugins. Plugins which fail to respond are pruned
+     * together in a single transaction.
      */
-    @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_OF_NULL_VALUE")
+    @DisallowConcurrentExecution
     static class RefreshPluginJob implements Job {
+        private static final String PLUGINS_QUERY =
+                "from DiscoveryPlugin p left join fetch p.realm left join fetch p.credential"
+                        + " where p.builtin = false";
+
         @Inject Logger logger;
 
+        @ConfigProperty(name = "cryostat.discovery.plugins.ping-timeout")
+        Duration pingTimeout;
+
+        @ConfigProperty(name = "cryostat.discovery.plugins.ping-jitter")
+        Duration pingJitter;
+
         @Override
-        @Transactional
         public void execute(JobExecutionContext context) throws JobExecutionException {
-            DiscoveryPlugin plugin = null;
+            boolean refresh = context.getMergedJobDataMap().getBoolean(REFRESH_MAP_KEY);
+            List<DiscoveryPlugin> plugins;
             try {
-                boolean refresh = context.getMergedJobDataMap().getBoolean(REFRESH_MAP_KEY);
-                plugin =
-                        DiscoveryPlugin.find(
-                                        "id", context.getMergedJobDataMap().get(PLUGIN_ID_MAP_KEY))
-                                .singleResult();
-                var cb = PluginCallback.create(plugin);
+                plugins =
+                        QuarkusTransaction.requiringNew()
+                                .call(
+                                        () ->
+                                                DiscoveryPlugin.<DiscoveryPlugin>find(
+                                                                PLUGINS_QUERY)
+                                                        .list());
+            } catch (Exception e) {
+                throw new JobExecutionException(e);
+            }
+            if (plugins.isEmpty()) {
+                return;
+            }
+
+            Map<UUID, CompletableFuture<Void>> pings = new HashMap<>();
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            try {
+                // the deadline starts once the jitter delay has elapsed, and covers both the
+                // connect and read timeouts of the callback request
+                long deadline = pingTimeout.multipliedBy(2).toMillis();
+                for (var plugin : plugins) {
+                    long delay = jitter();
+                    pings.put(
+                            plugin.id,
+                            CompletableFuture.runAsync(
+                                            () -> {},
+                                            CompletableFuture.delayedExecutor(
+                                                    delay, TimeUnit.MILLISECONDS, executor))
+                                    .thenCompose(
+                                            v ->
+                                                    CompletableFuture.runAsync(
+                                                                    () -> ping(plugin, refresh),
+                                                                    executor)
+                                                            .orTimeout(
+                                                                    deadline,
+                                                                    TimeUnit.MILLISECONDS)));
+                }
+                CompletableFuture.allOf(pings.values().toArray(new CompletableFuture[0]))
+                        .exceptionally(t -> null)
+                        .join();
+            } finally {
+                // interrupt any stragglers which have already exceeded their deadline
+                executor.shutdownNow();
+            }
+
+            List<UUID> failed = new ArrayList<>();
+            for (var plugin : plugins) {
+                try {
+                    pings.get(plugin.id).join();
+                } catch (CompletionException | CancellationException e) {
+                    logger.debugv(
+                            e, "Pruned discovery plugin: {0} @ {1}", plugin.realm, plugin.callback);
+                    failed.add(plugin.id);
+                }
+            }
+            if (failed.isEmpty()) {
+                return;
+            }
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () ->
+                                    DiscoveryPlugin.<DiscoveryPlugin>list("id in ?1", failed)
+                                            .forEach(DiscoveryPlugin::delete));
+        }
+
+        private void ping(DiscoveryPlugin plugin, boolean refresh) {
+            try {
+                var cb = PluginCallback.create(plugin, pingTimeout);
                 if (refresh) {
                     cb.refresh();
                     logger.debugv(
@@ -553,17 +592,19 @@ public class Discovery {
                     logger.debugv(
                             "Retained discovery plugin: {0} @ {1}", plugin.realm, plugin.callback);
                 }
-            } catch (Exception e) {
-                if (plugin != null) {
-                    logger.debugv(
-                            e, "Pruned discovery plugin: {0} @ {1}", plugin.realm, plugin.callback);
-                    plugin.delete();
-                } else {
-                    var ex = new JobExecutionException(e);
-                    ex.setUnscheduleFiringTrigger(true);
-                    throw ex;
-                }
+            } catch (URISyntaxException e) {
+                throw new CompletionException(e);
+            }
+        }
+
+        /**
+         * @return a random delay of up to the configured ping jitter, in milliseconds
+         */
+        private long jitter() {
+            if (!pingJitter.isPositive()) {
+                return 0;
             }
+            return ThreadLocalRandom.current().nextLong(pingJitter.toMillis() + 1);
         }
     }
 
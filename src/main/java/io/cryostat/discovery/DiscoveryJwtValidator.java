@@ -23,8 +23,16 @@ import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.proc.BadJWTException;
@@ -32,8 +40,10 @@ import io.quarkus.security.UnauthorizedException;
 import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.web.RoutingContext;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -53,9 +63,42 @@ public class DiscoveryJwtValidator {
     @ConfigProperty(name = "cryostat.http.proxy.path")
     String httpPath;
 
+    @ConfigProperty(name = "cryostat.discovery.plugins.jwt.validation-cache.maximum-size")
+    long validationCacheSize;
+
+    @ConfigProperty(name = "cryostat.discovery.plugins.jwt.validation-cache.max-ttl")
+    Duration validationCacheTtl;
+
+    @ConfigProperty(name = "cryostat.discovery.plugins.address-cache.maximum-size")
+    long addressCacheSize;
+
+    @ConfigProperty(name = "cryostat.discovery.plugins.address-cache.ttl")
+    Duration addressCacheTtl;
+
     @Inject DiscoveryJwtFactory jwtFactory;
     @Inject Logger logger;
 
+    // successfully validated tokens, keyed by token digest and the request properties which the
+    // token claims are verified against. Entries expire no later than the token itself.
+    private Cache<ValidationKey, JWT> validations;
+    // resolved remote addresses. Discovery plugins send frequent publish and ping requests from the
+    // same few hosts, so avoid a DNS lookup on every request.
+    private Cache<String, InetAddress> addresses;
+
+    @PostConstruct
+    void init() {
+        this.validations =
+                Caffeine.newBuilder()
+                        .maximumSize(validationCacheSize)
+                        .expireAfter(new TokenExpiry(validationCacheTtl))
+                        .build();
+        this.addresses =
+                Caffeine.newBuilder()
+                        .maximumSize(addressCacheSize)
+                        .expireAfterWrite(addressCacheTtl)
+                        .build();
+    }
+
     public JWT validateJwt(
             RoutingContext ctx, DiscoveryPlugin plugin, String token, boolean validateTimeClaims)
             throws ParseException,
@@ -87,13 +130,7 @@ public class DiscoveryJwtValidator {
 
         JWT parsed;
         try {
-            parsed =
-                    jwtFactory.parseDiscoveryPluginJwt(
-                            plugin,
-                            token,
-                            jwtFactory.getPluginLocation(plugin),
-                            addr,
-                            validateTimeClaims);
+            parsed = parseJwt(plugin, token, addr, validateTimeClaims);
         } catch (BadJWTException e) {
             throw new UnauthorizedException("Provided JWT was invalid", e);
         } catch (NoSuchAlgorithmException e) {
@@ -131,15 +168,101 @@ public class DiscoveryJwtValidator {
         return parsed;
     }
 
+    private JWT parseJwt(
+            DiscoveryPlugin plugin, String token, InetAddress addr, boolean validateTimeClaims)
+            throws NoSuchAlgorithmException,
+                    ParseException,
+                    JOSEException,
+                    BadJWTException,
+                    SocketException,
+                    UnknownHostException,
+                    URISyntaxException {
+        var key =
+                new ValidationKey(
+                        DigestUtils.sha256Hex(token),
+                        plugin.id,
+                        plugin.realm.name,
+                        addr == null ? null : addr.getHostAddress(),
+                        validateTimeClaims);
+        JWT cached = validations.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        JWT parsed =
+                jwtFactory.parseDiscoveryPluginJwt(
+                        plugin,
+                        token,
+                        jwtFactory.getPluginLocation(plugin),
+                        addr,
+                        validateTimeClaims);
+        validations.put(key, parsed);
+        return parsed;
+    }
+
     public InetAddress tryResolveAddress(InetAddress addr, String host) {
         if (StringUtils.isBlank(host)) {
             return addr;
         }
         try {
-            return InetAddress.getByName(host);
-        } catch (UnknownHostException e) {
-            logger.error("Address resolution exception", e);
+            return addresses.get(
+                    host,
+                    h -> {
+                        try {
+                            return InetAddress.getByName(h);
+                        } catch (UnknownHostException e) {
+                            throw new CompletionException(e);
+                        }
+                    });
+        } catch (CompletionException e) {
+            logger.error("Address resolution exception", e.getCause());
         }
         return addr;
     }
+
+    private record ValidationKey(
+            String tokenDigest,
+            UUID pluginId,
+            String realm,
+            String remoteAddress,
+            boolean validateTimeClaims) {}
+
+    private static class TokenExpiry implements Expiry<ValidationKey, JWT> {
+        private final Duration maxTtl;
+
+        TokenExpiry(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(ValidationKey key, JWT value, long currentTime) {
+            Duration ttl = maxTtl;
+            try {
+                Date exp = value.getJWTClaimsSet().getExpirationTime();
+                if (exp != null) {
+                    Duration remaining = Duration.between(Instant.now(), exp.toInstant());
+                    if (remaining.isNegative()) {
+                        remaining = Duration.ZERO;
+                    }
+                    if (remaining.compareTo(ttl) < 0) {
+                        ttl = remaining;
+                    }
+                }
+            } catch (ParseException e) {
+                ttl = Duration.ZERO;
+            }
+            return ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                ValidationKey key, JWT value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(
+                ValidationKey key, JWT value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -17,7 +17,9 @@ package io.cryostat.discovery;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import io.cryostat.credentials.Credential;
@@ -52,6 +54,7 @@ import jakarta.ws.rs.core.MultivaluedHashMap;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.UriBuilder;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.hibernate.annotations.GenericGenerator;
 import org.jboss.logging.Logger;
 
@@ -98,6 +101,9 @@ public class DiscoveryPlugin extends PanacheEntityBase {
     @ApplicationScoped
     static class Listener {
 
+        @ConfigProperty(name = "cryostat.discovery.plugins.ping-timeout")
+        Duration pingTimeout;
+
         @Inject Logger logger;
 
         @PrePersist
@@ -119,7 +125,7 @@ public class DiscoveryPlugin extends PanacheEntityBase {
                 logger.debugv(
                         "Testing discovery plugin callback: {0} @ {1}",
                         plugin.realm.name, plugin.callback);
-                PluginCallback.create(plugin).ping();
+                PluginCallback.create(plugin, pingTimeout).ping();
                 logger.debugv(
                         "Registered discovery plugin: {0} @ {1}",
                         plugin.realm.name, plugin.callback);
@@ -175,9 +181,24 @@ public class DiscoveryPlugin extends PanacheEntityBase {
         public void refresh();
 
         public static PluginCallback create(DiscoveryPlugin plugin) throws URISyntaxException {
+            return create(plugin, null);
+        }
+
+        /**
+         * Create a callback client for the given plugin. If a timeout is provided then it is
+         * applied as both the connect and read timeout, so that a single unresponsive plugin
+         * cannot hold up the caller for longer than that deadline.
+         */
+        public static PluginCallback create(DiscoveryPlugin plugin, @Nullable Duration timeout)
+                throws URISyntaxException {
+            var builder = QuarkusRestClientBuilder.newBuilder();
+            if (timeout != null && timeout.isPositive()) {
+                builder =
+                        builder.connectTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                                .readTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
             PluginCallback client =
-                    QuarkusRestClientBuilder.newBuilder()
-                            .baseUri(plugin.callback)
+                    builder.baseUri(plugin.callback)
                             .clientHeadersFactory(
                                     new DiscoveryPluginAuthorizationHeaderFactory(plugin))
                             .build(PluginCallback.class);
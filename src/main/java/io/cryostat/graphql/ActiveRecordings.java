@@ -18,16 +18,22 @@ package io.cryostat.graphql;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 
 import org.openjdk.jmc.common.unit.QuantityConversionException;
 
 import io.cryostat.ConfigProperties;
-import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
 import io.cryostat.graphql.TargetNodes.RecordingAggregateInfo;
 import io.cryostat.graphql.TargetNodes.Recordings;
@@ -41,13 +47,16 @@ import io.cryostat.recordings.RecordingHelper.RecordingOptions;
 import io.cryostat.recordings.RecordingHelper.RecordingReplace;
 import io.cryostat.targets.Target;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.smallrye.graphql.api.Nullable;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jdk.jfr.RecordingState;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
+import org.eclipse.microprofile.graphql.GraphQLException;
 import org.eclipse.microprofile.graphql.Mutation;
 import org.eclipse.microprofile.graphql.NonNull;
 import org.eclipse.microprofile.graphql.Source;
@@ -62,157 +71,199 @@ public class ActiveRecordings {
     @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
     Duration timeout;
 
-    @Transactional
+    @ConfigProperty(name = ConfigProperties.CONNECTIONS_UPLOAD_TIMEOUT)
+    Duration uploadTimeout;
+
+    @ConfigProperty(name = ConfigProperties.GRAPHQL_BULK_CONCURRENCY)
+    int bulkConcurrency;
+
     @Mutation
     @Description(
             "Start a new Flight Recording on all Targets under the subtrees of the discovery nodes"
                     + " matching the given filter")
     public List<ActiveRecording> createRecording(
-            @NonNull DiscoveryNodeFilter nodes, @NonNull RecordingSettings recording)
-            throws QuantityConversionException {
-        var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .toList();
-        var recordings = new ArrayList<ActiveRecording>();
-        for (var t : list) {
-            var template =
-                    recordingHelper.getPreferredTemplate(
-                            t, recording.template, TemplateType.valueOf(recording.templateType));
-            var r =
-                    recordingHelper
-                            .startRecording(
+            @NonNull DiscoveryNodeFilter nodes, @NonNull RecordingSettings recording) {
+        return forEachTarget(
+                nodes,
+                timeout,
+                t -> {
+                    var template =
+                            recordingHelper.getPreferredTemplate(
                                     t,
-                                    Optional.ofNullable(recording.replace)
-                                            .map(RecordingReplace::valueOf)
-                                            .orElse(RecordingReplace.STOPPED),
-                                    template,
-                                    recording.asOptions(),
-                                    Optional.ofNullable(recording.metadata)
-                                            .map(s -> s.labels)
-                                            .orElse(Map.of()))
-                            .await()
-                            .atMost(Duration.ofSeconds(10));
-            recordings.add(r);
-        }
-        return recordings;
+                                    recording.template,
+                                    TemplateType.valueOf(recording.templateType));
+                    return List.of(
+                            recordingHelper
+                                    .startRecording(
+                                            t,
+                                            Optional.ofNullable(recording.replace)
+                                                    .map(RecordingReplace::valueOf)
+                                                    .orElse(RecordingReplace.STOPPED),
+                                            template,
+                                            recording.asOptions(),
+                                            Optional.ofNullable(recording.metadata)
+                                                    .map(s -> s.labels)
+                                                    .orElse(Map.of()))
+                                    .await()
+                                    .atMost(timeout));
+                });
     }
 
-    @Transactional
     @Mutation
     @Description(
             "Archive an existing Flight Recording matching the given filter, on all Targets under"
                     + " the subtrees of the discovery nodes matching the given filter")
     public List<ArchivedRecording> archiveRecording(
-            @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings)
-            throws Exception {
-        var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .flatMap(
-                                t ->
-                                        recordingHelper.listActiveRecordings(t).stream()
-                                                .filter(
-                                                        r ->
-                                                                recordings == null
-                                                                        || recordings.test(r)))
-                        .toList();
-        var archives = new ArrayList<ArchivedRecording>();
-        for (var r : list) {
-            archives.add(recordingHelper.archiveRecording(r));
-        }
-        return archives;
+            @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings) {
+        return forEachTarget(
+                nodes,
+                uploadTimeout,
+                t -> {
+                    var archives = new ArrayList<ArchivedRecording>();
+                    for (var r : listActiveRecordings(t, recordings)) {
+                        archives.add(recordingHelper.archiveRecording(r));
+                    }
+                    return archives;
+                });
     }
 
-    @Transactional
     @Mutation
     @Description(
             "Stop an existing Flight Recording matching the given filter, on all Targets under"
                     + " the subtrees of the discovery nodes matching the given filter")
     public List<ActiveRecording> stopRecording(
-            @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings)
-            throws Exception {
-        var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .flatMap(
-                                t ->
-                                        recordingHelper.listActiveRecordings(t).stream()
-                                                .filter(
-                                                        r ->
-                                                                recordings == null
-                                                                        || recordings.test(r)))
-                        .toList();
-        for (var r : list) {
-            recordingHelper.stopRecording(r).await().atMost(Duration.ofSeconds(10));
-        }
-        return list;
+            @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings) {
+        return forEachTarget(
+                nodes,
+                timeout,
+                t -> {
+                    var list = listActiveRecordings(t, recordings);
+                    for (var r : list) {
+                        recordingHelper.stopRecording(r).await().atMost(timeout);
+                    }
+                    return list;
+                });
     }
 
-    @Transactional
     @Mutation
     @Description(
             "Delete an existing Flight Recording matching the given filter, on all Targets under"
                     + " the subtrees of the discovery nodes matching the given filter")
     public List<ActiveRecording> deleteRecording(
             @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings) {
-        var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .flatMap(
-                                t ->
-                                        recordingHelper.listActiveRecordings(t).stream()
-                                                .filter(
-                                                        r ->
-                                                                recordings == null
-                                                                        || recordings.test(r)))
-                        .toList();
-        for (var r : list) {
-            recordingHelper.deleteRecording(r).await().atMost(Duration.ofSeconds(10));
-        }
-        return list;
+        return forEachTarget(
+                nodes,
+                timeout,
+                t -> {
+                    var list = listActiveRecordings(t, recordings);
+                    for (var r : list) {
+                        recordingHelper.deleteRecording(r).await().atMost(timeout);
+                    }
+                    return list;
+                });
     }
 
-    @Transactional
     @Mutation
     @Description(
             "Create a Flight Recorder Snapshot on all Targets under"
                     + " the subtrees of the discovery nodes matching the given filter")
     public List<ActiveRecording> createSnapshot(@NonNull DiscoveryNodeFilter nodes) {
-        var targets =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .toList();
-        var snapshots = new ArrayList<ActiveRecording>();
-        for (var t : targets) {
-            snapshots.add(recordingHelper.createSnapshot(t).await().atMost(timeout));
+        return forEachTarget(
+                nodes,
+                timeout,
+                t -> List.of(recordingHelper.createSnapshot(t).await().atMost(timeout)));
+    }
+
+    private List<ActiveRecording> listActiveRecordings(
+            Target target, @Nullable ActiveRecordingsFilter filter) {
+        return recordingHelper.listActiveRecordings(target).stream()
+                .filter(r -> filter == null || filter.test(r))
+                .toList();
+    }
+
+    /**
+     * Perform a task against every Target under the subtrees of the discovery nodes matching the
+     * given filter. Targets are processed concurrently, up to the configured bulk concurrency
+     * limit, and each in its own transaction and with its own timeout. If the task fails for any
+     * Target then the results from the successful Targets are still returned to the client as
+     * partial results, alongside an error describing each failure.
+     */
+    private <T> List<T> forEachTarget(
+            DiscoveryNodeFilter nodes, Duration perTargetTimeout, TargetTask<T> task) {
+        List<Target> targets = QuarkusTransaction.joiningExisting().call(() -> findTargets(nodes));
+
+        ExecutorService workers =
+                Executors.newFixedThreadPool(
+                        Math.max(1, bulkConcurrency), Thread.ofVirtual().factory());
+        ExecutorService tasks = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Map<Target, Future<List<T>>> futures = new LinkedHashMap<>();
+            for (var target : targets) {
+                futures.put(
+                        target,
+                        workers.submit(
+                                () -> runWithTimeout(tasks, target.id, perTargetTimeout, task)));
+            }
+
+            List<T> results = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            for (var entry : futures.entrySet()) {
+                Target target = entry.getKey();
+                try {
+                    results.addAll(entry.getValue().get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errors.add(String.format("%s: interrupted", target.connectUrl));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    logger.warnv(cause, "Bulk operation failed on {0}", target.connectUrl);
+                    errors.add(
+                            String.format(
+                                    "%s: %s",
+                                    target.connectUrl,
+                                    cause instanceof TimeoutException
+                                            ? "timed out after " + perTargetTimeout
+                                            : ExceptionUtils.getRootCauseMessage(cause)));
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new GraphQLException(
+                        String.format(
+                                "Operation failed on %d of %d targets: %s",
+                                errors.size(), targets.size(), String.join("; ", errors)),
+                        results);
+            }
+            return results;
+        } finally {
+            workers.shutdownNow();
+            tasks.shutdownNow();
+        }
+    }
+
+    private static List<Target> findTargets(DiscoveryNodeFilter nodes) {
+        return DiscoveryNodeQuery.of(nodes).subtreeTargets();
+    }
+
+    private <T> List<T> runWithTimeout(
+            ExecutorService executor, long targetId, Duration timeout, TargetTask<T> task)
+            throws Exception {
+        Future<List<T>> f =
+                executor.submit(
+                        () ->
+                                QuarkusTransaction.requiringNew()
+                                        .timeout((int) timeout.toSeconds())
+                                        .call(() -> task.apply(Target.getTargetById(targetId))));
+        try {
+            return f.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            throw e;
         }
-        return snapshots;
+    }
+
+    @FunctionalInterface
+    private interface TargetTask<T> {
+        List<T> apply(Target target) throws Exception;
     }
 
     @Transactional
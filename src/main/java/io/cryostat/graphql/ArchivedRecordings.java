@@ -17,9 +17,16 @@ package io.cryostat.graphql;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import io.cryostat.graphql.ActiveRecordings.MetadataLabels;
 import io.cryostat.graphql.TargetNodes.RecordingAggregateInfo;
@@ -27,10 +34,15 @@ import io.cryostat.graphql.TargetNodes.Recordings;
 import io.cryostat.graphql.matchers.LabelSelectorMatcher;
 import io.cryostat.recordings.ActiveRecordings.Metadata;
 import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecordingKey;
+import io.cryostat.recordings.ArchivedRecordings.RecordingStatistics;
 import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.StoredRecordingStatistics;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.smallrye.graphql.api.Nullable;
 import jakarta.inject.Inject;
+import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.NonNull;
@@ -44,29 +56,31 @@ public class ArchivedRecordings {
 
     @Query("archivedRecordings")
     @Description("List archived recordings")
-    public TargetNodes.ArchivedRecordings listArchivedRecordings(ArchivedRecordingsFilter filter) {
+    public TargetNodes.ArchivedRecordings listArchivedRecordings(
+            ArchivedRecordingsFilter filter, @Nullable ArchivedRecordingsOrder orderBy) {
         var r = new TargetNodes.ArchivedRecordings();
         r.data =
-                recordingHelper
-                        .listArchivedRecordings(filter == null ? null : filter.sourceTarget)
-                        .stream()
-                        .filter(filter)
-                        .toList();
+                select(
+                        recordingHelper.listArchivedRecordings(
+                                filter == null ? null : filter.sourceTarget),
+                        filter,
+                        orderBy);
         r.aggregate = RecordingAggregateInfo.fromArchived(r.data);
         return r;
     }
 
     @Description("List and optionally filter archived recordings belonging to a Target")
     public TargetNodes.ArchivedRecordings archived(
-            @Source Recordings recordings, ArchivedRecordingsFilter filter) {
+            @Source Recordings recordings,
+            ArchivedRecordingsFilter filter,
+            @Nullable ArchivedRecordingsOrder orderBy) {
         var out = new TargetNodes.ArchivedRecordings();
         out.data = new ArrayList<>();
         out.aggregate = RecordingAggregateInfo.empty();
 
         var in = recordings.archived;
         if (in != null && in.data != null) {
-            out.data =
-                    in.data.stream().filter(r -> filter == null ? true : filter.test(r)).toList();
+            out.data = select(in.data, filter, orderBy);
             out.aggregate = RecordingAggregateInfo.fromArchived(out.data);
         }
 
@@ -80,6 +94,27 @@ public class ArchivedRecordings {
         return recording;
     }
 
+    @NonNull
+    @Description(
+            "Delete all of the archived recordings in this list, batching the storage requests."
+                    + " Returns the recordings which were deleted.")
+    public TargetNodes.ArchivedRecordings doDeleteAll(
+            @Source TargetNodes.ArchivedRecordings recordings) {
+        var keys =
+                new HashSet<>(
+                        recordingHelper.deleteArchivedRecordings(
+                                recordings.data.stream()
+                                        .map(r -> Pair.of(r.jvmId(), r.name()))
+                                        .toList()));
+        var out = new TargetNodes.ArchivedRecordings();
+        out.data =
+                recordings.data.stream()
+                        .filter(r -> keys.contains(Pair.of(r.jvmId(), r.name())))
+                        .toList();
+        out.aggregate = RecordingAggregateInfo.fromArchived(out.data);
+        return out;
+    }
+
     @NonNull
     @Description("Update the metadata associated with an archived recording")
     public ArchivedRecording doPutMetadata(
@@ -100,6 +135,90 @@ public class ArchivedRecordings {
                 recording.archivedTime());
     }
 
+    @Nullable
+    @Description(
+            "The event counts, time span and size of this recording's content, if they were"
+                    + " gathered when it was archived")
+    public List<RecordingStatistics> statistics(@Source List<ArchivedRecording> recordings) {
+        Map<ArchivedRecordingKey, RecordingStatistics> statistics = loadStatistics(recordings);
+        return recordings.stream().map(r -> statistics.get(key(r))).toList();
+    }
+
+    /**
+     * Filter and order the given recordings. Content statistics are only loaded if the filter or
+     * ordering needs them, and then in a single query for all of the recordings which pass the
+     * other filter criteria.
+     */
+    static List<ArchivedRecording> select(
+            List<ArchivedRecording> recordings,
+            @Nullable ArchivedRecordingsFilter filter,
+            @Nullable ArchivedRecordingsOrder orderBy) {
+        List<ArchivedRecording> selected =
+                recordings.stream().filter(r -> filter == null || filter.matches(r)).toList();
+        boolean byEventTypes = filter != null && filter.eventTypes != null;
+        if (selected.isEmpty() || (!byEventTypes && orderBy == null)) {
+            return selected;
+        }
+        Map<ArchivedRecordingKey, RecordingStatistics> statistics = loadStatistics(selected);
+        Stream<ArchivedRecording> stream = selected.stream();
+        if (byEventTypes) {
+            stream = stream.filter(r -> filter.containsEventTypes(statistics.get(key(r))));
+        }
+        if (orderBy != null) {
+            stream = stream.sorted(orderBy.comparator(statistics));
+        }
+        return stream.toList();
+    }
+
+    /**
+     * @return the stored content statistics of the given recordings, loaded in a single query.
+     *     Recordings without statistics have no entry.
+     */
+    private static Map<ArchivedRecordingKey, RecordingStatistics> loadStatistics(
+            List<ArchivedRecording> recordings) {
+        Set<ArchivedRecordingKey> keys =
+                recordings.stream().map(ArchivedRecordings::key).collect(Collectors.toSet());
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                StoredRecordingStatistics.listByKeys(keys).stream()
+                                        .collect(
+                                                Collectors.toMap(
+                                                        s ->
+                                                                new ArchivedRecordingKey(
+                                                                        s.jvmId, s.filename),
+                                                        s -> s.statistics)));
+    }
+
+    private static ArchivedRecordingKey key(ArchivedRecording recording) {
+        return new ArchivedRecordingKey(recording.jvmId(), recording.name());
+    }
+
+    @Description(
+            "Order archived recordings by the statistics gathered from their content, largest"
+                    + " first. Recordings without statistics are listed last.")
+    public enum ArchivedRecordingsOrder {
+        @Description("The total number of events in the recording")
+        EVENT_COUNT(RecordingStatistics::eventCount),
+        @Description("The time span covered by the recording's events")
+        DURATION(s -> s.endTime() - s.startTime()),
+        @Description("The size of the recording before compression")
+        UNCOMPRESSED_SIZE(RecordingStatistics::uncompressedSize);
+
+        private final ToLongFunction<RecordingStatistics> value;
+
+        ArchivedRecordingsOrder(ToLongFunction<RecordingStatistics> value) {
+            this.value = value;
+        }
+
+        Comparator<ArchivedRecording> comparator(
+                Map<ArchivedRecordingKey, RecordingStatistics> statistics) {
+            return Comparator.comparing(
+                    r -> statistics.get(key(r)),
+                    Comparator.nullsLast(Comparator.comparingLong(value).reversed()));
+        }
+    }
+
     public static class ArchivedRecordingsFilter implements Predicate<ArchivedRecording> {
         public @Nullable String name;
         public @Nullable List<String> names;
@@ -109,9 +228,27 @@ public class ArchivedRecordings {
         public @Nullable Long sizeBytesLessThanEqual;
         public @Nullable Long archivedTimeAfterEqual;
         public @Nullable Long archivedTimeBeforeEqual;
+        public @Nullable List<String> eventTypes;
 
         @Override
         public boolean test(ArchivedRecording r) {
+            return matches(r)
+                    && (eventTypes == null
+                            || containsEventTypes(
+                                    QuarkusTransaction.joiningExisting()
+                                            .call(
+                                                    () ->
+                                                            StoredRecordingStatistics.findByKey(
+                                                                    r.jvmId(), r.name()))
+                                            .map(s -> s.statistics)
+                                            .orElse(null)));
+        }
+
+        /**
+         * @return whether the recording matches every criterion of this filter other than its
+         *     event types, which depend on the recording's stored content statistics
+         */
+        boolean matches(ArchivedRecording r) {
             Predicate<ArchivedRecording> matchesName =
                     n -> name == null || Objects.equals(name, n.name());
             Predicate<ArchivedRecording> matchesNames =
@@ -141,7 +278,6 @@ public class ArchivedRecordings {
                     n ->
                             archivedTimeBeforeEqual == null
                                     || archivedTimeBeforeEqual <= n.archivedTime();
-
             return List.of(
                             matchesName,
                             matchesNames,
@@ -155,5 +291,9 @@ public class ArchivedRecordings {
                     .reduce(x -> true, Predicate::and)
                     .test(r);
         }
+
+        private boolean containsEventTypes(RecordingStatistics statistics) {
+            return statistics != null && statistics.eventCounts().keySet().containsAll(eventTypes);
+        }
     }
 }
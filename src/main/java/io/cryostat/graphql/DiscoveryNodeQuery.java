@@ -0,0 +1,226 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
+import io.cryostat.graphql.matchers.LabelSelectorMatcher;
+import io.cryostat.targets.Target;
+
+import jakarta.annotation.Nullable;
+import jakarta.persistence.Query;
+
+/**
+ * Translates a {@link DiscoveryNodeFilter} into a database query for target discovery nodes, so
+ * that narrow filters only load the matching rows rather than every {@link Target}. Filter clauses
+ * which cannot be expressed in SQL are collected into a residual filter which is applied to the
+ * query results in memory.
+ */
+class DiscoveryNodeQuery {
+
+    static final String NODE_ALIAS = "n";
+    static final String TARGET_ALIAS = "t";
+    // target nodes only
+    private static final String SELECT_TARGETS =
+            String.format(
+                    "select %1$s.* from Target %1$s join DiscoveryNode %2$s on %2$s.id"
+                            + " = %1$s.discoveryNode",
+                    TARGET_ALIAS, NODE_ALIAS);
+    // nodes of any type, with the target columns null for non-target nodes
+    private static final String SELECT_NODES =
+            String.format(
+                    "select %2$s.* from DiscoveryNode %2$s left join Target %1$s on %2$s.id"
+                            + " = %1$s.discoveryNode",
+                    TARGET_ALIAS, NODE_ALIAS);
+
+    private final List<String> predicates = new ArrayList<>();
+    private final Map<String, Object> params = new HashMap<>();
+    private final DiscoveryNodeFilter residual = new DiscoveryNodeFilter();
+    private Long root;
+
+    private DiscoveryNodeQuery(@Nullable DiscoveryNodeFilter filter) {
+        if (filter == null) {
+            return;
+        }
+        if (filter.id != null) {
+            predicates.add(
+                    String.format(
+                            "%s.id = %s",
+                            NODE_ALIAS,
+                            LabelSelectorMatcher.bind(params, filter.id)));
+        }
+        if (filter.ids != null) {
+            predicates.add(in(NODE_ALIAS + ".id", filter.ids));
+        }
+        if (filter.targetIds != null) {
+            predicates.add(in(TARGET_ALIAS + ".id", filter.targetIds));
+        }
+        if (filter.name != null) {
+            predicates.add(
+                    String.format(
+                            "%s.name = %s",
+                            NODE_ALIAS, LabelSelectorMatcher.bind(params, filter.name)));
+        }
+        if (filter.names != null) {
+            predicates.add(in(NODE_ALIAS + ".name", filter.names));
+        }
+        if (filter.nodeTypes != null) {
+            predicates.add(in(NODE_ALIAS + ".nodeType", filter.nodeTypes));
+        }
+        if (filter.labels != null) {
+            for (String label : filter.labels) {
+                LabelSelectorMatcher.parse(label)
+                        .toSql(k -> String.format("(%s.labels ->> %s)", NODE_ALIAS, k), params)
+                        .ifPresentOrElse(
+                                predicates::add,
+                                () -> {
+                                    if (residual.labels == null) {
+                                        residual.labels = new ArrayList<>();
+                                    }
+                                    residual.labels.add(label);
+                                });
+            }
+        }
+        if (filter.annotations != null) {
+            // only targets have annotations. Without this, negative selectors such as "k!=v" or
+            // "!k" would also match non-target nodes, whose annotation columns are null
+            predicates.add(String.format("%s.id is not null", TARGET_ALIAS));
+            for (String annotation : filter.annotations) {
+                // equivalent to Target.Annotations#merged(): platform annotations take precedence
+                // over cryostat annotations with the same key
+                LabelSelectorMatcher.parse(annotation)
+                        .toSql(
+                                k ->
+                                        String.format(
+                                                "coalesce(%1$s.annotations -> 'platform' ->> %2$s,"
+                                                        + " %1$s.annotations -> 'cryostat' ->>"
+                                                        + " %2$s)",
+                                                TARGET_ALIAS, k),
+                                params)
+                        .ifPresentOrElse(
+                                predicates::add,
+                                () -> {
+                                    if (residual.annotations == null) {
+                                        residual.annotations = new ArrayList<>();
+                                    }
+                                    residual.annotations.add(annotation);
+                                });
+            }
+        }
+    }
+
+    static DiscoveryNodeQuery of(@Nullable DiscoveryNodeFilter filter) {
+        return new DiscoveryNodeQuery(filter);
+    }
+
+    /**
+     * Restrict the query to target nodes within the subtree rooted at the given node, including the
+     * node itself. The subtree is walked by a recursive query over the discovery tree's parent
+     * links.
+     */
+    DiscoveryNodeQuery descendantsOf(DiscoveryNode node) {
+        this.root = node.id;
+        return this;
+    }
+
+    /**
+     * @return the discovery nodes of all targets matching the filter
+     */
+    @SuppressWarnings("unchecked")
+    List<DiscoveryNode> list() {
+        Query query =
+                Target.getEntityManager().createNativeQuery(sql(SELECT_TARGETS), Target.class);
+        params.forEach(query::setParameter);
+        List<Target> targets = query.getResultList();
+        return targets.stream()
+                .map(t -> t.discoveryNode)
+                .filter(Objects::nonNull)
+                .filter(residual)
+                .toList();
+    }
+
+    /**
+     * Unlike {@link #list()}, the filter may match discovery nodes of any type, such as a Realm or
+     * a Pod, and selects every target below the matching nodes. Only the matching nodes and the
+     * selected targets are loaded.
+     *
+     * @return the targets within the subtrees rooted at the discovery nodes matching the filter
+     */
+    @SuppressWarnings("unchecked")
+    List<Target> subtreeTargets() {
+        Query nodeQuery =
+                DiscoveryNode.getEntityManager()
+                        .createNativeQuery(sql(SELECT_NODES), DiscoveryNode.class);
+        params.forEach(nodeQuery::setParameter);
+        List<DiscoveryNode> nodes = nodeQuery.getResultList();
+        List<Long> ids = nodes.stream().filter(residual).map(n -> n.id).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return Target.getEntityManager()
+                .createNativeQuery(
+                        """
+                        with recursive subtree(id) as (
+                            select id from DiscoveryNode where id in (:ids)
+                            union
+                            select c.id from DiscoveryNode c join subtree s on c.parentNode = s.id
+                        )
+                        select t.* from Target t where t.discoveryNode in (select id from subtree)
+                        """,
+                        Target.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    private String sql(String select) {
+        StringBuilder sb = new StringBuilder();
+        List<String> clauses = new ArrayList<>(predicates);
+        if (root != null) {
+            sb.append(
+                    String.format(
+                            """
+                            with recursive subtree(id) as (
+                                select id from DiscoveryNode where id = %s
+                                union all
+                                select c.id from DiscoveryNode c join subtree s on c.parentNode = s.id
+                            )
+                            """,
+                            LabelSelectorMatcher.bind(params, root)));
+            clauses.add(String.format("%s.id in (select id from subtree)", NODE_ALIAS));
+        }
+        sb.append(select);
+        if (!clauses.isEmpty()) {
+            sb.append(" where ");
+            sb.append(String.join(" and ", clauses.stream().map(p -> "(" + p + ")").toList()));
+        }
+        return sb.toString();
+    }
+
+    private String in(String column, Collection<?> values) {
+        if (values.isEmpty()) {
+            return "false";
+        }
+        return String.format(
+                "%s in (%s)", column, LabelSelectorMatcher.bind(params, new ArrayList<>(values)));
+    }
+}
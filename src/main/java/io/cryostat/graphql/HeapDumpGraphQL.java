@@ -16,11 +16,13 @@
 package io.cryostat.graphql;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
 
 import io.cryostat.diagnostic.Diagnostics.HeapDump;
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary;
 import io.cryostat.diagnostic.DiagnosticsHelper;
 import io.cryostat.graphql.ActiveRecordings.MetadataLabels;
 import io.cryostat.graphql.TargetNodes.HeapDumpAggregateInfo;
@@ -31,6 +33,7 @@ import io.cryostat.targets.Target;
 
 import io.smallrye.graphql.api.Nullable;
 import jakarta.inject.Inject;
+import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.NonNull;
@@ -62,6 +65,26 @@ public class HeapDumpGraphQL {
         return dump;
     }
 
+    @NonNull
+    @Description(
+            "Delete all of the heap dumps in this list, batching the storage requests. Returns the"
+                    + " heap dumps which were deleted.")
+    public HeapDumps doDeleteAll(@Source HeapDumps dumps) {
+        var keys =
+                new HashSet<>(
+                        diagnosticsHelper.deleteHeapDumps(
+                                dumps.data.stream()
+                                        .map(d -> Pair.of(d.jvmId(), d.heapDumpId()))
+                                        .toList()));
+        var out = new HeapDumps();
+        out.data =
+                dumps.data.stream()
+                        .filter(d -> keys.contains(Pair.of(d.jvmId(), d.heapDumpId())))
+                        .toList();
+        out.aggregate = HeapDumpAggregateInfo.fromArchived(out.data);
+        return out;
+    }
+
     @NonNull
     @Description("Update the metadata for a heap dump")
     public HeapDump doPutMetadata(@Source HeapDump heapDump, MetadataLabels metadataInput)
@@ -80,6 +103,17 @@ public class HeapDumpGraphQL {
                 new Metadata(metadataInput.getLabels()));
     }
 
+    @Nullable
+    @Description(
+            "The class histogram and largest objects of this heap dump, if it was analyzed after"
+                    + " upload. Each selected summary is fetched from storage individually, so"
+                    + " selecting this field on a large listing makes one request per heap dump")
+    public HeapDumpSummary summary(@Source HeapDump heapDump) {
+        return diagnosticsHelper
+                .getHeapDumpSummary(heapDump.jvmId(), heapDump.heapDumpId())
+                .orElse(null);
+    }
+
     public static class HeapDumpsFilter implements Predicate<HeapDump> {
         public @Nullable String name;
         public @Nullable List<String> names;
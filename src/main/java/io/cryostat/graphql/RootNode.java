@@ -43,12 +43,7 @@ public class RootNode {
                     + " from anywhere below this node's subtree.")
     public List<DiscoveryNode> descendantTargets(
             @Source DiscoveryNode discoveryNode, DiscoveryNodeFilter filter) {
-        // TODO do this filtering at the database query level as much as possible. As is, this will
-        // load the entire discovery tree out of the database, then perform the filtering at the
-        // application level.
-        return recurseChildren(discoveryNode, n -> n.target != null).stream()
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+        return DiscoveryNodeQuery.of(filter).descendantsOf(discoveryNode).list();
     }
 
     static Set<DiscoveryNode> recurseChildren(
@@ -35,6 +35,7 @@ import io.cryostat.diagnostic.DiagnosticsHelper;
 import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.ActiveRecordings.ActiveRecordingsFilter;
 import io.cryostat.graphql.ArchivedRecordings.ArchivedRecordingsFilter;
+import io.cryostat.graphql.ArchivedRecordings.ArchivedRecordingsOrder;
 import io.cryostat.graphql.HeapDumpGraphQL.HeapDumpsFilter;
 import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
 import io.cryostat.graphql.ThreadDumpGraphQL.ThreadDumpsFilter;
@@ -72,18 +73,10 @@ public class TargetNodes {
     @Query("targetNodes")
     @Description("Get the Target discovery nodes, i.e. the leaf nodes of the discovery tree")
     public List<DiscoveryNode> getTargetNodes(DiscoveryNodeFilter filter) {
-        // TODO do this filtering at the database query level as much as possible. As is, this will
-        // load the entire discovery tree out of the database, then perform the filtering at the
-        // application level.
-        return Target.<Target>findAll().stream()
-                // FIXME filtering by distinct JVM ID breaks clients that expect to be able to use a
-                // different connection URL (in the node filter or for client-side filtering) than
-                // the one we end up selecting for here.
-                // .filter(distinctWith(t -> t.jvmId))
-                .map(t -> t.discoveryNode)
-                .filter(Objects::nonNull)
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+        // FIXME filtering by distinct JVM ID breaks clients that expect to be able to use a
+        // different connection URL (in the node filter or for client-side filtering) than the one
+        // we end up selecting for here.
+        return DiscoveryNodeQuery.of(filter).list();
     }
 
     @Transactional
@@ -104,14 +97,15 @@ public class TargetNodes {
 
     @Description("Retrieve a list of archived recordings belonging to the target")
     public ArchivedRecordings archivedRecordings(
-            @Source Target target, @Nullable ArchivedRecordingsFilter filter) {
+            @Source Target target,
+            @Nullable ArchivedRecordingsFilter filter,
+            @Nullable ArchivedRecordingsOrder orderBy) {
         var fTarget = Target.getTargetById(target.id);
         var recordings = new ArchivedRecordings();
         if (StringUtils.isNotBlank(fTarget.jvmId)) {
             recordings.data =
-                    recordingHelper.listArchivedRecordings(fTarget).stream()
-                            .filter(r -> filter == null || filter.test(r))
-                            .toList();
+                    io.cryostat.graphql.ArchivedRecordings.select(
+                            recordingHelper.listArchivedRecordings(fTarget), filter, orderBy);
             recordings.aggregate = RecordingAggregateInfo.fromArchived(recordings.data);
         }
         return recordings;
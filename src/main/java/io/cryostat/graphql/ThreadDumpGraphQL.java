@@ -16,6 +16,7 @@
 package io.cryostat.graphql;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
@@ -31,6 +32,7 @@ import io.cryostat.targets.Target;
 
 import io.smallrye.graphql.api.Nullable;
 import jakarta.inject.Inject;
+import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.NonNull;
@@ -64,6 +66,26 @@ public class ThreadDumpGraphQL {
         return dump;
     }
 
+    @NonNull
+    @Description(
+            "Delete all of the thread dumps in this list, batching the storage requests. Returns"
+                    + " the thread dumps which were deleted.")
+    public ThreadDumps doDeleteAll(@Source ThreadDumps dumps) {
+        var keys =
+                new HashSet<>(
+                        diagnosticsHelper.deleteThreadDumps(
+                                dumps.data.stream()
+                                        .map(d -> Pair.of(d.jvmId(), d.threadDumpId()))
+                                        .toList()));
+        var out = new ThreadDumps();
+        out.data =
+                dumps.data.stream()
+                        .filter(d -> keys.contains(Pair.of(d.jvmId(), d.threadDumpId())))
+                        .toList();
+        out.aggregate = ThreadDumpAggregateInfo.fromArchived(out.data);
+        return out;
+    }
+
     @NonNull
     @Description("Update the metadata for a thread dump")
     public ThreadDump doPutMetadata(@Source ThreadDump threadDump, MetadataLabels metadataInput)
@@ -80,7 +102,8 @@ public class ThreadDumpGraphQL {
                 threadDump.threadDumpId(),
                 threadDump.lastModified(),
                 threadDump.size(),
-                new Metadata(metadataInput.getLabels()));
+                new Metadata(metadataInput.getLabels()),
+                threadDump.summary());
     }
 
     public static class ThreadDumpsFilter implements Predicate<ThreadDump> {
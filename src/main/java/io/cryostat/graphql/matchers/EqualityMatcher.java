@@ -15,7 +15,9 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -41,6 +43,16 @@ public class EqualityMatcher implements LabelMatcher {
         return operator.with(value).test(s);
     }
 
+    @Override
+    public Optional<String> toSql(String v, Map<String, Object> params) {
+        String param = LabelSelectorMatcher.bind(params, value);
+        return Optional.of(
+                switch (operator) {
+                    case EQUAL, DOUBLE_EQUAL -> String.format("%s = %s", v, param);
+                    case NOT_EQUAL -> String.format("%s is distinct from %s", v, param);
+                });
+    }
+
     public enum Operator {
         EQUAL("=", arg -> v -> Objects.equals(arg, v)),
         DOUBLE_EQUAL("==", arg -> v -> Objects.equals(arg, v)),
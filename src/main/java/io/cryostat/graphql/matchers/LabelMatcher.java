@@ -15,8 +15,23 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 interface LabelMatcher extends Predicate<String> {
     String getKey();
+
+    /**
+     * Render this matcher as a SQL predicate.
+     *
+     * @param value SQL expression yielding the value for this matcher's key, or SQL null if the key
+     *     is not present
+     * @param params named query parameters, to which any values referenced by the rendered
+     *     predicate are added
+     * @return the SQL predicate, or empty if this matcher has no SQL equivalent
+     */
+    default Optional<String> toSql(String value, Map<String, Object> params) {
+        return Optional.empty();
+    }
 }
@@ -18,9 +18,11 @@ package io.cryostat.graphql.matchers;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -62,6 +64,44 @@ public class LabelSelectorMatcher implements Predicate<Map<String, String>> {
         return this.matchers.stream().allMatch(m -> m.test(labels.get(m.getKey())));
     }
 
+    /**
+     * Render this selector as a SQL predicate over a set of key/value pairs, such as a JSON column.
+     *
+     * @param value function which accepts the SQL placeholder for a key and returns a SQL
+     *     expression yielding that key's value, or SQL null if the key is not present
+     * @param params named query parameters, to which the keys and values referenced by the rendered
+     *     predicate are added
+     * @return the SQL predicate, or empty if any part of this selector has no SQL equivalent
+     */
+    public Optional<String> toSql(Function<String, String> value, Map<String, Object> params) {
+        Map<String, Object> bound = new HashMap<>(params);
+        List<String> clauses = new ArrayList<>();
+        for (var m : matchers) {
+            Optional<String> clause = m.toSql(value.apply(bind(bound, m.getKey())), bound);
+            if (clause.isEmpty()) {
+                return Optional.empty();
+            }
+            clauses.add(clause.get());
+        }
+        params.putAll(bound);
+        if (clauses.isEmpty()) {
+            return Optional.of("true");
+        }
+        return Optional.of(
+                clauses.stream().map(c -> "(" + c + ")").collect(Collectors.joining(" and ")));
+    }
+
+    /**
+     * Add a value to a set of named query parameters under a newly generated name.
+     *
+     * @return the placeholder referring to the new parameter, ie. ":name"
+     */
+    public static String bind(Map<String, Object> params, Object value) {
+        String name = "p" + params.size();
+        params.put(name, value);
+        return ":" + name;
+    }
+
     public static LabelSelectorMatcher parse(String clause) throws IllegalArgumentException {
         Collection<Function<String, LabelMatcher>> parsers =
                 Arrays.asList(
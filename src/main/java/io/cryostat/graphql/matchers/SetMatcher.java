@@ -15,8 +15,11 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -47,6 +50,32 @@ public class SetMatcher implements LabelMatcher {
         return operator.with(values).test(s);
     }
 
+    @Override
+    public Optional<String> toSql(String v, Map<String, Object> params) {
+        return Optional.of(
+                switch (operator) {
+                    case IN ->
+                            values.isEmpty()
+                                    ? "false"
+                                    : String.format(
+                                            "%s in (%s)",
+                                            v,
+                                            LabelSelectorMatcher.bind(
+                                                    params, new ArrayList<>(values)));
+                    case NOT_IN ->
+                            values.isEmpty()
+                                    ? "true"
+                                    : String.format(
+                                            "(%s is null or %s not in (%s))",
+                                            v,
+                                            v,
+                                            LabelSelectorMatcher.bind(
+                                                    params, new ArrayList<>(values)));
+                    case EXISTS -> String.format("%s is not null", v);
+                    case DOES_NOT_EXIST -> String.format("%s is null", v);
+                });
+    }
+
     public enum Operator {
         IN("In", args -> v -> contains(args, v)),
         NOT_IN("NotIn", args -> v -> !contains(args, v)),
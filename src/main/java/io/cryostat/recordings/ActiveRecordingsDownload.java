@@ -15,8 +15,10 @@
  */
 package io.cryostat.recordings;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
+import java.util.Arrays;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.Producers;
@@ -24,22 +26,30 @@ import io.cryostat.util.HttpMimeType;
 
 import io.smallrye.common.annotation.Blocking;
 import io.smallrye.common.annotation.Identifier;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.core.buffer.Buffer;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import org.apache.commons.codec.binary.Base64;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestMulti;
 import org.jboss.resteasy.reactive.RestPath;
-import org.jboss.resteasy.reactive.RestResponse;
-import org.jboss.resteasy.reactive.RestResponse.ResponseBuilder;
 
 @Path("/api/v4/activedownload/{id}")
 public class ActiveRecordingsDownload {
 
+    static final int CHUNK_SIZE = 64 * 1024;
+
     @Inject RecordingHelper recordingHelper;
     @Inject Logger logger;
 
@@ -62,14 +72,53 @@ public class ActiveRecordingsDownload {
                     format for that recording. The client can feed this data to other tooling which ingests the JFR
                     binary file format.
                     """)
-    public RestResponse<InputStream> handleActiveDownload(@RestPath long id) throws Exception {
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public RestMulti<Buffer> handleActiveDownload(@RestPath long id) throws Exception {
         ActiveRecording recording = ActiveRecording.find("id", id).singleResult();
-        return ResponseBuilder.<InputStream>ok()
+        InputStream stream =
+                recordingHelper.getActiveInputStream(recording, connectionFailedTimeout);
+        return RestMulti.fromMultiData(pipe(stream))
                 .header(
                         HttpHeaders.CONTENT_DISPOSITION,
                         String.format("attachment; filename=\"%s.jfr\"", recording.name))
                 .header(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime())
-                .entity(recordingHelper.getActiveInputStream(recording, connectionFailedTimeout))
                 .build();
     }
+
+    /**
+     * Stream the remote recording in chunks as the client consumes them. Each chunk is read on a
+     * worker thread only once the previous chunk has been written to the response, so a slow client
+     * applies backpressure to the remote read without holding a worker thread while it waits.
+     */
+    private Multi<Buffer> pipe(InputStream stream) {
+        return Multi.createBy()
+                .repeating()
+                .uni(
+                        () ->
+                                Uni.createFrom()
+                                        .item(Unchecked.supplier(() -> readChunk(stream)))
+                                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool()))
+                .until(chunk -> chunk.length() == 0)
+                .onTermination()
+                .invoke(
+                        () -> {
+                            try {
+                                stream.close();
+                            } catch (IOException e) {
+                                logger.warn(e);
+                            }
+                        });
+    }
+
+    /**
+     * @return the next chunk of the stream, or an empty buffer at the end of the stream
+     */
+    private static Buffer readChunk(InputStream stream) throws IOException {
+        byte[] buf = new byte[CHUNK_SIZE];
+        int n = stream.read(buf);
+        if (n < 0) {
+            return Buffer.buffer();
+        }
+        return Buffer.buffer(n == buf.length ? buf : Arrays.copyOf(buf, n));
+    }
 }
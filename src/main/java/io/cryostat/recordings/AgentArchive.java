@@ -0,0 +1,94 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.util.List;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Retention index entry for an archived recording pushed by an agent for a particular target JVM.
+ * Entries are ordered by archival time so that enforcing an agent's {@code maxFiles} limit does not
+ * require listing the archive bucket.
+ *
+ * @see io.cryostat.recordings.ArchivedRecordings#agentPush
+ */
+@Entity
+@Table(
+        indexes = {
+            @Index(columnList = "jvmId, archivedTime"),
+            @Index(columnList = "jvmId, filename", unique = true)
+        })
+public class AgentArchive extends PanacheEntity {
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String jvmId;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String filename;
+
+    public long archivedTime;
+
+    /**
+     * Index the archive, or update its archival time if it is already indexed, as when an agent
+     * pushes a recording with the same filename again.
+     */
+    public static void upsert(String jvmId, String filename, long archivedTime) {
+        insert(jvmId, filename, archivedTime, "update set archivedTime = excluded.archivedTime");
+    }
+
+    /**
+     * Index the archive unless it is already indexed. Concurrent inserts of the same archive do not
+     * fail, and do not create duplicate entries.
+     */
+    public static void insertIfAbsent(String jvmId, String filename, long archivedTime) {
+        insert(jvmId, filename, archivedTime, "nothing");
+    }
+
+    private static void insert(
+            String jvmId, String filename, long archivedTime, String conflictAction) {
+        getEntityManager()
+                .createNativeQuery(
+                        "insert into AgentArchive (id, jvmId, filename, archivedTime) values"
+                                + " (nextval('AgentArchive_SEQ'), :jvmId, :filename,"
+                                + " :archivedTime) on conflict (jvmId, filename) do "
+                                + conflictAction)
+                .setParameter("jvmId", jvmId)
+                .setParameter("filename", filename)
+                .setParameter("archivedTime", archivedTime)
+                .executeUpdate();
+    }
+
+    /**
+     * @return the archives for the given target JVM beyond the newest {@code retain}, newest first
+     */
+    public static List<AgentArchive> listExpired(String jvmId, int retain) {
+        return find("jvmId = ?1 order by archivedTime desc, id desc", jvmId)
+                .range(retain, Integer.MAX_VALUE - 1)
+                .list();
+    }
+
+    public static long deleteByKey(String jvmId, String filename) {
+        return delete("jvmId = ?1 and filename = ?2", jvmId, filename);
+    }
+}
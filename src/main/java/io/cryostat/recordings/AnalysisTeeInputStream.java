@@ -0,0 +1,146 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Copies the bytes read from a recording stream into a bounded pipe, so that a concurrent reader
+ * such as a report generator can consume the same bytes without a second transfer. The pipe blocks
+ * this stream's reader when it is full, so the slower of the two consumers sets the pace.
+ *
+ * <p>Failures of the {@link #branch()} side never fail this stream: once the branch reader closes
+ * its end, copying stops and this stream carries on alone. If this stream is closed before its
+ * source is exhausted, the branch reader sees an {@link IOException} instead of the end of the
+ * stream, so that a truncated recording is never mistaken for a complete one.
+ */
+class AnalysisTeeInputStream extends FilterInputStream {
+
+    private final PipedInputStream pipe;
+    private final PipedOutputStream out;
+    private volatile boolean complete;
+    private boolean branchClosed;
+
+    AnalysisTeeInputStream(InputStream in, int pipeSize) throws IOException {
+        super(in);
+        this.pipe = new PipedInputStream(pipeSize);
+        this.out = new PipedOutputStream(pipe);
+    }
+
+    /**
+     * @return the stream of bytes copied from this stream, which should be read on another thread
+     *     and must be closed by that reader when it is done
+     */
+    InputStream branch() {
+        return new FilterInputStream(pipe) {
+            @Override
+            public int read() throws IOException {
+                return checkComplete(super.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return checkComplete(super.read(b, off, len));
+            }
+        };
+    }
+
+    private int checkComplete(int n) throws IOException {
+        if (n < 0 && !complete) {
+            throw new IOException("Recording stream was closed before it was fully read");
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b < 0) {
+            complete = true;
+        } else {
+            copy(new byte[] {(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n < 0) {
+            complete = true;
+        } else if (n > 0) {
+            copy(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // read through skipped bytes so that the branch still sees them
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            closeBranch();
+        }
+    }
+
+    private void copy(byte[] b, int off, int len) {
+        if (branchClosed) {
+            return;
+        }
+        try {
+            out.write(b, off, len);
+        } catch (IOException e) {
+            // the branch reader has gone away
+            closeBranch();
+        }
+    }
+
+    private void closeBranch() {
+        if (branchClosed) {
+            return;
+        }
+        branchClosed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            // nothing more can be done for the branch reader
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.util.Optional;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.LockModeType;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Content-addressed storage object holding the bytes of one or more byte-identical archived
+ * recordings. Each {@link ArchiveBlobRef} pointing at the blob holds one reference, and the blob's
+ * object is deleted from storage when the last reference is released.
+ *
+ * @see io.cryostat.recordings.RecordingHelper#archiveRecording
+ */
+@Entity
+public class ArchiveBlob extends PanacheEntity {
+
+    /** Hex-encoded SHA-256 digest of the uncompressed recording bytes. */
+    @Column(nullable = false, updatable = false, unique = true)
+    @NotBlank
+    public String hash;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String storageKey;
+
+    public long size;
+
+    public int refs;
+
+    public static ArchiveBlob of(String hash, String storageKey, long size) {
+        ArchiveBlob blob = new ArchiveBlob();
+        blob.hash = hash;
+        blob.storageKey = storageKey;
+        blob.size = size;
+        return blob;
+    }
+
+    /**
+     * Find and row-lock the blob with the given hash, so that reference count updates are
+     * serialized across Cryostat instances sharing the database.
+     */
+    public static Optional<ArchiveBlob> findByHashForUpdate(String hash) {
+        return find("hash", hash).withLock(LockModeType.PESSIMISTIC_WRITE).singleResultOptional();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Points an archived recording's key at the {@link ArchiveBlob} holding its bytes. The object
+ * stored under the archived recording's own key is then an empty placeholder which carries the
+ * recording's metadata and keeps it visible to bucket listings.
+ */
+@Entity
+@Table(indexes = {@Index(columnList = "jvmId, filename", unique = true)})
+public class ArchiveBlobRef extends PanacheEntity {
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String jvmId;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String filename;
+
+    @ManyToOne
+    @JoinColumn(name = "blob_id")
+    @NotNull
+    public ArchiveBlob blob;
+
+    public static ArchiveBlobRef of(String jvmId, String filename, ArchiveBlob blob) {
+        ArchiveBlobRef ref = new ArchiveBlobRef();
+        ref.jvmId = jvmId;
+        ref.filename = filename;
+        ref.blob = blob;
+        return ref;
+    }
+
+    public static Optional<ArchiveBlobRef> findByKey(String jvmId, String filename) {
+        return find("jvmId = ?1 and filename = ?2", jvmId, filename).singleResultOptional();
+    }
+
+    /**
+     * Find and row-lock the reference, so that concurrent releases of the same key, including
+     * from other Cryostat instances, do not both decrement its blob's reference count.
+     */
+    public static Optional<ArchiveBlobRef> findByKeyForUpdate(String jvmId, String filename) {
+        return find("jvmId = ?1 and filename = ?2", jvmId, filename)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .singleResultOptional();
+    }
+
+    public static List<ArchiveBlobRef> listByKeys(String jvmId, Collection<String> filenames) {
+        return list(
+                "from ArchiveBlobRef r join fetch r.blob where r.jvmId = ?1 and r.filename in ?2",
+                jvmId,
+                filenames);
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import io.cryostat.ConfigProperties;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Bounded on-disk cache of archived recording objects, so that repeated reads of the same archive
+ * for reports, Grafana uploads and downloads do not each fetch it from storage again. Entries are
+ * keyed by the object's bucket, key and ETag, so a replaced object is never served stale, and the
+ * least recently used entries are evicted once the total size exceeds the configured limit.
+ * Concurrent readers of an object which is not yet cached share a single fetch, which is streamed
+ * to the first reader as it is written to the cache. Readers wait a bounded time for that fetch,
+ * since it proceeds at the first reader's pace, before reading from storage themselves.
+ *
+ * <p>Objects are cached exactly as stored, so compressed objects remain compressed on disk. Entries
+ * are not persisted across restarts.
+ */
+@ApplicationScoped
+public class ArchivedRecordingCache {
+
+    private static final long MIB = 1024 * 1024;
+    private static final String FETCH_PREFIX = "fetch-";
+    private static final Pattern ENTRY_FILE_NAME = Pattern.compile("^[0-9a-f]{64}$");
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_CACHE_ENABLED)
+    boolean enabled;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_CACHE_DIR)
+    Path dir;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_CACHE_MAX_SIZE_MIB)
+    long maxSizeMib;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_CACHE_WAIT_TIMEOUT)
+    Duration waitTimeout;
+
+    @Inject Logger logger;
+
+    // access-ordered, so that iteration begins with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> inflight = new HashMap<>();
+    private long size;
+
+    void onStart(@Observes StartupEvent evt) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        // entries from a previous run are not tracked, so they would never be evicted. Only the
+        // cache's own files are removed, in case the directory is shared
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(FETCH_PREFIX) || ENTRY_FILE_NAME.matcher(name).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Open a cached copy of the given storage object. If it is not already cached then the first
+     * reader is streamed its content from the loader while it is cached, and any concurrent
+     * readers wait for the cached copy. Readers which are still waiting after the configured
+     * timeout, and readers of objects larger than the cache, are streamed directly from the
+     * loader.
+     *
+     * @param eTag the object's current ETag
+     * @param contentLength the object's size in storage
+     * @param loader opens the object's content from storage
+     */
+    public InputStream open(
+            String bucket,
+            String key,
+            String eTag,
+            long contentLength,
+            Supplier<? extends InputStream> loader)
+            throws IOException {
+        if (eTag == null || contentLength > maxBytes()) {
+            return loader.get();
+        }
+        String cacheKey = cacheKey(bucket, key, eTag);
+        CompletableFuture<Entry> future;
+        boolean owner = false;
+        synchronized (this) {
+            InputStream cached = openEntry(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            future = inflight.get(cacheKey);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                inflight.put(cacheKey, future);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            return fetch(cacheKey, future, loader);
+        }
+
+        Entry entry = await(cacheKey, future);
+        if (entry != null) {
+            synchronized (this) {
+                InputStream cached = openEntry(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        // the shared fetch did not complete in time, or the entry was evicted by other insertions
+        // before it could be opened
+        return loader.get();
+    }
+
+    /**
+     * Open the given storage object only if it is already cached, without fetching it or waiting
+     * for a fetch in progress.
+     *
+     * @return a stream of the cached content, or null if the object is not cached
+     */
+    public InputStream openIfCached(String bucket, String key, String eTag) throws IOException {
+        if (!enabled || eTag == null) {
+            return null;
+        }
+        synchronized (this) {
+            return openEntry(cacheKey(bucket, key, eTag));
+        }
+    }
+
+    /**
+     * @return the entry fetched by another reader, or null if that fetch failed, was abandoned, or
+     *     did not complete within the wait timeout
+     */
+    private Entry await(String cacheKey, CompletableFuture<Entry> future) {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debugv("Timed out waiting for {0} to be cached", cacheKey);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a stream of the cached entry's content, or null if the entry is not cached
+     */
+    private InputStream openEntry(String cacheKey) throws IOException {
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            // an entry evicted while open remains readable until the stream is closed
+            return Files.newInputStream(entry.path());
+        } catch (NoSuchFileException e) {
+            entries.remove(cacheKey);
+            size -= entry.size();
+            return null;
+        }
+    }
+
+    private InputStream fetch(
+            String cacheKey,
+            CompletableFuture<Entry> future,
+            Supplier<? extends InputStream> loader)
+            throws IOException {
+        Path tmp = null;
+        InputStream in = null;
+        try {
+            tmp = Files.createTempFile(dir, FETCH_PREFIX, ".tmp");
+            in = loader.get();
+            return new FetchInputStream(cacheKey, future, in, tmp);
+        } catch (IOException | RuntimeException e) {
+            if (in != null) {
+                in.close();
+            }
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+            synchronized (this) {
+                inflight.remove(cacheKey);
+            }
+            future.complete(null);
+            throw e;
+        }
+    }
+
+    private void add(Entry entry) {
+        Entry previous = entries.put(entry.key(), entry);
+        if (previous != null) {
+            size -= previous.size();
+        }
+        size += entry.size();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size > maxBytes() && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == entry) {
+                continue;
+            }
+            it.remove();
+            size -= eldest.getValue().size();
+            try {
+                Files.deleteIfExists(eldest.getValue().path());
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+        }
+        logger.tracev("Cached {0} ({1} bytes cached in total)", entry.key(), size);
+    }
+
+    private long maxBytes() {
+        return maxSizeMib * MIB;
+    }
+
+    private static String cacheKey(String bucket, String key, String eTag) {
+        return String.format("%s/%s#%s", bucket, key, eTag);
+    }
+
+    static String fileName(String cacheKey) {
+        try {
+            return HexFormat.of()
+                    .formatHex(
+                            MessageDigest.getInstance("SHA-256")
+                                    .digest(cacheKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(String key, Path path, long size) {}
+
+    /**
+     * Streams an object from storage to the first reader while copying it into a temporary file,
+     * which becomes the cache entry once the object has been read to its end. If the reader stops
+     * early or the copy fails, the object is not cached and readers waiting on the same fetch fall
+     * back to reading from storage themselves.
+     */
+    private class FetchInputStream extends InputStream {
+        private final String cacheKey;
+        private final CompletableFuture<Entry> future;
+        private final InputStream in;
+        private final Path tmp;
+        private final OutputStream out;
+        private long count;
+        private boolean done;
+
+        FetchInputStream(
+                String cacheKey, CompletableFuture<Entry> future, InputStream in, Path tmp)
+                throws IOException {
+            this.cacheKey = cacheKey;
+            this.future = future;
+            this.in = in;
+            this.tmp = tmp;
+            this.out = Files.newOutputStream(tmp);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = in.read(b, off, len);
+            } catch (IOException | RuntimeException e) {
+                abandon();
+                throw e;
+            }
+            if (done) {
+                return n;
+            }
+            if (n < 0) {
+                complete();
+            } else if (n > 0) {
+                try {
+                    out.write(b, off, n);
+                    count += n;
+                } catch (IOException e) {
+                    logger.warnv(e, "Could not cache {0}", cacheKey);
+                    abandon();
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        private void complete() {
+            done = true;
+            Entry entry = null;
+            try {
+                out.close();
+                Path path = dir.resolve(fileName(cacheKey));
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+                entry = new Entry(cacheKey, path, count);
+            } catch (IOException e) {
+                logger.warnv(e, "Could not cache {0}", cacheKey);
+                deleteTemp();
+            }
+            synchronized (ArchivedRecordingCache.this) {
+                inflight.remove(cacheKey);
+                if (entry != null) {
+                    add(entry);
+                }
+            }
+            future.complete(entry);
+        }
+
+        private void abandon() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+            deleteTemp();
+            synchronized (ArchivedRecordingCache.this) {
+                inflight.remove(cacheKey);
+            }
+            future.complete(null);
+        }
+
+        private void deleteTemp() {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package io.cryostat.recordings;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 import io.cryostat.recordings.ActiveRecordings.Metadata;
@@ -37,6 +39,9 @@ public interface ArchivedRecordingMetadataService extends CRUDService<String, Me
 
     Optional<Metadata> read(String storageKey) throws IOException;
 
+    /** Read the metadata of all of a JVM's archived recordings, keyed by filename. */
+    Map<String, Metadata> readAll(String jvmId) throws IOException;
+
     default void update(String jvmId, String filename, Metadata metadata) throws IOException {
         delete(jvmId, filename);
         create(jvmId, filename, metadata);
@@ -46,6 +51,12 @@ public interface ArchivedRecordingMetadataService extends CRUDService<String, Me
         delete(RecordingHelper.archivedRecordingKey(jvmId, filename));
     }
 
+    default void deleteAll(Collection<String> storageKeys) throws IOException {
+        for (String storageKey : storageKeys) {
+            delete(storageKey);
+        }
+    }
+
     static enum StorageMode {
         TAGGING(METADATA_STORAGE_MODE_TAGGING),
         METADATA(METADATA_STORAGE_MODE_OBJECTMETA),
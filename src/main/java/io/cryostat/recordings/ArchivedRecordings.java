@@ -16,19 +16,23 @@
 package io.cryostat.recordings;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.Producers;
@@ -36,12 +40,15 @@ import io.cryostat.StorageBuckets;
 import io.cryostat.libcryostat.sys.Clock;
 import io.cryostat.recordings.ActiveRecordings.Metadata;
 import io.cryostat.recordings.LongRunningRequestGenerator.GrafanaArchiveUploadRequest;
+import io.cryostat.recordings.RecordingHelper.ArchivedRecordingContent;
 import io.cryostat.targets.Target;
 import io.cryostat.util.HttpMimeType;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.smallrye.common.annotation.Blocking;
 import io.smallrye.common.annotation.Identifier;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.mutiny.core.eventbus.EventBus;
@@ -54,6 +61,7 @@ import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.core.HttpHeaders;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -61,13 +69,17 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestForm;
+import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestPath;
 import org.jboss.resteasy.reactive.RestQuery;
 import org.jboss.resteasy.reactive.RestResponse;
 import org.jboss.resteasy.reactive.RestResponse.ResponseBuilder;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
@@ -75,6 +87,15 @@ import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequ
 @Path("")
 public class ArchivedRecordings {
 
+    static final String RANGE = "Range";
+    static final String IF_RANGE = "If-Range";
+    static final String ACCEPT_RANGES = "Accept-Ranges";
+    static final String CONTENT_RANGE = "Content-Range";
+    // marks archives pushed by an agent, as opposed to rule, manual, or user-uploaded archives
+    static final String AGENT_PUSH_LABEL = "agentPush";
+    // a single range of the form "bytes=first-[last]" or "bytes=-suffixLength"
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^bytes=(\\d+-\\d*|-\\d+)$");
+
     @Inject EventBus bus;
     @Inject Clock clock;
     @Inject StorageBuckets storageBuckets;
@@ -86,9 +107,6 @@ public class ArchivedRecordings {
     @Identifier(Producers.BASE64_URL)
     Base64 base64Url;
 
-    @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
-    String bucket;
-
     @ConfigProperty(name = ConfigProperties.STORAGE_PRESIGNED_DOWNLOADS_ENABLED)
     boolean presignedDownloadsEnabled;
 
@@ -155,47 +173,69 @@ public class ArchivedRecordings {
                             required = false,
                             description =
                                     """
-                                    if supplied and greater than zero, Cryostat will only keep this many archived
-                                    recordings associated with this target. Recordings will be sorted by
+                                    if supplied and greater than zero, Cryostat will only keep this many agent-pushed
+                                    archived recordings associated with this target. Recordings will be sorted by
                                     'last modified' date and only the most recent 'maxFiles' will be retained.
+                                    Recordings archived by other means, such as by Automated Rules or by users, are
+                                    neither counted nor removed.
                                     """)
                     @RestForm("maxFiles")
                     int maxFiles)
             throws Exception {
-        jvmId = jvmId.strip();
-        int max = Integer.MAX_VALUE;
-        if (maxFiles > 0) {
-            max = maxFiles;
-        }
+        final String fJvmId = jvmId.strip();
         Map<String, String> labels = new HashMap<>();
         if (rawLabels != null) {
             rawLabels.getMap().forEach((k, v) -> labels.put(k, v.toString()));
         }
-        labels.put("jvmId", jvmId);
+        labels.put("jvmId", fJvmId);
+        labels.put(AGENT_PUSH_LABEL, "true");
         Metadata metadata = new Metadata(labels);
         logger.tracev(
                 "recording:{0}, labels:{1}, maxFiles:{2}", recording.fileName(), labels, maxFiles);
-        doUpload(recording, metadata, jvmId);
-        var objs = new ArrayList<S3Object>(recordingHelper.listArchivedRecordingObjects(jvmId));
-        var toRemove =
-                objs.stream()
-                        .sorted((a, b) -> b.lastModified().compareTo(a.lastModified()))
-                        .skip(max)
-                        .map(S3Object::key)
-                        .map(s -> s.split("/"))
-                        .map(a -> Pair.of(a[0], a[1]))
-                        .toList();
+        String filename = (String) doUpload(recording, metadata, fJvmId).get("name");
+        List<Pair<String, String>> toRemove =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    if (AgentArchive.count("jvmId", fJvmId) == 0) {
+                                        // first push indexed for this JVM. Seed the index from the
+                                        // archives already in storage. Concurrent first pushes
+                                        // may both seed, but entries are only inserted if absent
+                                        indexArchives(fJvmId);
+                                    }
+                                    AgentArchive.upsert(
+                                            fJvmId, filename, clock.now().getEpochSecond());
+                                    if (maxFiles <= 0) {
+                                        return List.of();
+                                    }
+                                    // rows are only removed once their objects are deleted, so a
+                                    // failed deletion leaves them to be retried by the next push
+                                    return AgentArchive.listExpired(fJvmId, maxFiles).stream()
+                                            .map(e -> Pair.of(e.jvmId, e.filename))
+                                            .toList();
+                                });
         if (toRemove.isEmpty()) {
             return;
         }
-        toRemove.forEach(
-                p -> {
-                    try {
-                        recordingHelper.deleteArchivedRecording(p.getKey(), p.getValue());
-                    } catch (IOException ioe) {
-                        logger.error(ioe);
-                    }
-                });
+        Infrastructure.getDefaultWorkerPool()
+                .execute(() -> recordingHelper.deleteIndexedArchivedRecordings(toRemove));
+    }
+
+    private void indexArchives(String jvmId) {
+        recordingHelper.listArchivedRecordings(jvmId).stream()
+                .filter(r -> isAgentPush(r.metadata()))
+                .sorted((a, b) -> Long.compare(a.archivedTime(), b.archivedTime()))
+                .forEach(r -> AgentArchive.insertIfAbsent(jvmId, r.name(), r.archivedTime()));
+    }
+
+    private static boolean isAgentPush(Metadata metadata) {
+        Map<String, String> labels = metadata.labels();
+        if (labels.containsKey(AGENT_PUSH_LABEL)) {
+            return Boolean.parseBoolean(labels.get(AGENT_PUSH_LABEL));
+        }
+        // pushes archived before the marker label was introduced. Rule and manual archives are
+        // always labelled with the connectUrl of their source target, but agent pushes are not
+        return !labels.containsKey("connectUrl");
     }
 
     @GET
@@ -247,11 +287,7 @@ public class ArchivedRecordings {
         } else {
             jvmId = Target.getTargetByConnectUrl(URI.create(connectUrl)).jvmId;
         }
-        if (!recordingHelper.listArchivedRecordingObjects(jvmId).stream()
-                .map(item -> item.key().strip().split("/")[1])
-                .anyMatch(fn -> Objects.equals(fn, filename))) {
-            throw new NotFoundException();
-        }
+        // the existence check is a single HEAD request, which responds 404 if the object is missing
         recordingHelper.deleteArchivedRecording(jvmId, filename);
     }
 
@@ -372,6 +408,45 @@ public class ArchivedRecordings {
         recordingHelper.deleteArchivedRecording(jvmId, filename);
     }
 
+    @GET
+    @Blocking
+    @Path("/api/beta/fs/recordings/{jvmId}/{filename}/statistics")
+    @RolesAllowed("read")
+    @Operation(
+            summary = "Get the content statistics of an archived recording",
+            description =
+                    """
+                    Retrieve the event counts, time span, chunk count and uncompressed size gathered from the
+                    recording as it was archived. Returns 404 if no statistics were gathered for the recording.
+                    """)
+    public RecordingStatistics getArchivedRecordingStatistics(
+            @RestPath String jvmId, @RestPath String filename) {
+        return recordingHelper
+                .getArchivedRecordingStatistics(jvmId, filename)
+                .orElseThrow(NotFoundException::new);
+    }
+
+    @POST
+    @Blocking
+    @Path("/api/beta/fs/recordings/bulk-delete")
+    @RolesAllowed("write")
+    @Operation(
+            summary = "Delete many archived recordings",
+            description =
+                    """
+                    Delete the specified archived recordings, grouping the storage requests into batches. Keys which do
+                    not exist are ignored. Returns the keys which were deleted.
+                    """)
+    public List<ArchivedRecordingKey> deleteArchivedRecordings(
+            @Parameter(required = true) List<ArchivedRecordingKey> keys) {
+        return recordingHelper
+                .deleteArchivedRecordings(
+                        keys.stream().map(k -> Pair.of(k.jvmId(), k.filename())).toList())
+                .stream()
+                .map(p -> new ArchivedRecordingKey(p.getKey(), p.getValue()))
+                .toList();
+    }
+
     @POST
     @Blocking
     @Path("/api/v4/grafana/{encodedKey}")
@@ -411,26 +486,42 @@ public class ArchivedRecordings {
                     """
                     Get a download URL for an archived recording. The response will be an HTTP redirect with a Location
                     header pointing to the location where the client can download the recording JFR binary file.
+                    If presigned downloads are disabled, the recording is served directly instead, and a single
+                    byte Range may be requested to resume an interrupted download.
                     """)
     public RestResponse<Object> handleStorageDownload(
-            @RestPath String encodedKey, @RestQuery String f) throws URISyntaxException {
+            @RestPath String encodedKey,
+            @RestQuery String f,
+            @RestHeader(RANGE) String range,
+            @RestHeader(IF_RANGE) String ifRange,
+            @RestHeader(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch)
+            throws URISyntaxException, IOException {
         Pair<String, String> pair = recordingHelper.decodedKey(encodedKey);
-        String key = RecordingHelper.archivedRecordingKey(pair);
 
-        recordingHelper.assertArchivedRecordingExists(pair.getKey(), pair.getValue());
+        // a single HEAD of the content's resolved location checks that the recording exists and
+        // provides everything the branches below need
+        var content = recordingHelper.headArchivedRecordingContent(pair.getKey(), pair.getValue());
 
-        if (!presignedDownloadsEnabled) {
+        // compressed objects are decoded here rather than relying on the client to honour the
+        // presigned response's Content-Encoding
+        if (content.isEncoded()) {
+            // byte ranges of the stored object do not correspond to ranges of the decoded file
             return ResponseBuilder.ok()
                     .header(
                             HttpHeaders.CONTENT_DISPOSITION,
                             String.format("attachment; filename=\"%s\"", pair.getValue()))
                     .header(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime())
-                    .entity(recordingHelper.getArchivedRecordingStream(encodedKey))
+                    .header(ACCEPT_RANGES, "none")
+                    .entity(recordingHelper.getArchivedRecordingStream(content))
                     .build();
         }
+        if (!presignedDownloadsEnabled) {
+            return proxyStorageDownload(pair, content, range, ifRange, ifNoneMatch);
+        }
 
         logger.tracev("Handling presigned download request for {0}", pair);
-        GetObjectRequest getRequest = GetObjectRequest.builder().bucket(bucket).key(key).build();
+        GetObjectRequest getRequest =
+                GetObjectRequest.builder().bucket(content.bucket()).key(content.key()).build();
         GetObjectPresignRequest presignRequest =
                 GetObjectPresignRequest.builder()
                         .signatureDuration(Duration.ofMinutes(1))
@@ -466,6 +557,185 @@ public class ArchivedRecordings {
         return response.location(uri).build();
     }
 
+    /**
+     * Serve an uncompressed archived recording directly from storage, through the archive cache if
+     * it is enabled. A single byte range is served from the cached copy if there is one, and is
+     * otherwise passed through to storage as a ranged GET, so that interrupted downloads can be
+     * resumed and small reads such as JFR chunk headers do not transfer the whole file. Multiple
+     * ranges are not supported and result in the whole file being served, as HTTP permits.
+     */
+    private RestResponse<Object> proxyStorageDownload(
+            Pair<String, String> pair,
+            ArchivedRecordingContent content,
+            String range,
+            String ifRange,
+            String ifNoneMatch)
+            throws IOException {
+        HeadObjectResponse head = content.head();
+        String eTag = head.eTag();
+        if (eTag != null && ifNoneMatch != null && matchesETag(ifNoneMatch, eTag)) {
+            return ResponseBuilder.create(RestResponse.Status.NOT_MODIFIED)
+                    .header(HttpHeaders.ETAG, eTag)
+                    .build();
+        }
+        // a date-valued If-Range never matches, and so also results in the whole file
+        boolean ranged =
+                range != null
+                        && SINGLE_BYTE_RANGE.matcher(range.strip()).matches()
+                        && (ifRange == null || ifRange.strip().equals(eTag));
+
+        if (!ranged) {
+            return proxyResponse(
+                    ResponseBuilder.ok(),
+                    pair,
+                    eTag,
+                    head.lastModified(),
+                    head.contentLength(),
+                    recordingHelper.getArchivedRecordingObject(content));
+        }
+        InputStream cached = recordingHelper.getCachedArchivedRecordingObject(content);
+        if (cached != null) {
+            return cachedRangeResponse(pair, head, range.strip(), cached);
+        }
+
+        ResponseInputStream<GetObjectResponse> stream;
+        try {
+            stream = recordingHelper.getArchivedRecordingObject(content, range.strip());
+        } catch (S3Exception e) {
+            if (e.statusCode()
+                    == RestResponse.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+                return ResponseBuilder.create(RestResponse.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(CONTENT_RANGE, "bytes */" + head.contentLength())
+                        .header(ACCEPT_RANGES, "bytes")
+                        .build();
+            }
+            throw e;
+        }
+
+        GetObjectResponse resp = stream.response();
+        ResponseBuilder<Object> response;
+        if (resp.contentRange() != null) {
+            response =
+                    ResponseBuilder.create(RestResponse.Status.PARTIAL_CONTENT)
+                            .header(CONTENT_RANGE, resp.contentRange());
+        } else {
+            response = ResponseBuilder.ok();
+        }
+        return proxyResponse(
+                response, pair, resp.eTag(), resp.lastModified(), resp.contentLength(), stream);
+    }
+
+    /**
+     * Serve a single byte range of an archived recording from its cached copy, with the same
+     * responses as a ranged GET from storage.
+     */
+    private RestResponse<Object> cachedRangeResponse(
+            Pair<String, String> pair, HeadObjectResponse head, String range, InputStream cached)
+            throws IOException {
+        long length = head.contentLength();
+        long[] bounds = byteRange(range, length);
+        if (bounds == null) {
+            cached.close();
+            return ResponseBuilder.create(RestResponse.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(CONTENT_RANGE, "bytes */" + length)
+                    .header(ACCEPT_RANGES, "bytes")
+                    .build();
+        }
+        long count = bounds[1] - bounds[0] + 1;
+        InputStream stream;
+        try {
+            cached.skipNBytes(bounds[0]);
+            stream = BoundedInputStream.builder().setInputStream(cached).setMaxCount(count).get();
+        } catch (IOException e) {
+            cached.close();
+            throw e;
+        }
+        return proxyResponse(
+                ResponseBuilder.create(RestResponse.Status.PARTIAL_CONTENT)
+                        .header(
+                                CONTENT_RANGE,
+                                String.format("bytes %d-%d/%d", bounds[0], bounds[1], length)),
+                pair,
+                head.eTag(),
+                head.lastModified(),
+                count,
+                stream);
+    }
+
+    /**
+     * @param range a single byte range, as matched by {@link #SINGLE_BYTE_RANGE}
+     * @return the first and last byte positions which the range selects from an object of the
+     *     given length, or null if the range is not satisfiable
+     */
+    static long[] byteRange(String range, long length) {
+        String spec = range.substring("bytes=".length());
+        int dash = spec.indexOf('-');
+        long first;
+        long last;
+        if (dash == 0) {
+            long suffix = Long.parseLong(spec.substring(1));
+            if (suffix == 0) {
+                return null;
+            }
+            first = Math.max(0, length - suffix);
+            last = length - 1;
+        } else {
+            first = Long.parseLong(spec.substring(0, dash));
+            last =
+                    dash == spec.length() - 1
+                            ? length - 1
+                            : Math.min(length - 1, Long.parseLong(spec.substring(dash + 1)));
+        }
+        if (first >= length) {
+            return null;
+        }
+        if (last < first) {
+            // not a valid range, so it is ignored and the whole object is selected
+            return new long[] {0, length - 1};
+        }
+        return new long[] {first, last};
+    }
+
+    private static RestResponse<Object> proxyResponse(
+            ResponseBuilder<Object> response,
+            Pair<String, String> pair,
+            String eTag,
+            Instant lastModified,
+            long contentLength,
+            InputStream stream) {
+        if (eTag != null) {
+            response = response.header(HttpHeaders.ETAG, eTag);
+        }
+        if (lastModified != null) {
+            response = response.lastModified(Date.from(lastModified));
+        }
+        return response.header(
+                        HttpHeaders.CONTENT_DISPOSITION,
+                        String.format("attachment; filename=\"%s\"", pair.getValue()))
+                .header(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime())
+                .header(HttpHeaders.CONTENT_LENGTH, contentLength)
+                .header(ACCEPT_RANGES, "bytes")
+                .entity(stream)
+                .build();
+    }
+
+    private static boolean matchesETag(String header, String eTag) {
+        String opaque = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        for (String candidate : header.split(",")) {
+            candidate = candidate.strip();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public record ArchivedRecording(
             String jvmId,
             String name,
@@ -483,6 +753,32 @@ public class ArchivedRecordings {
         }
     }
 
+    /**
+     * Content statistics gathered from an archived recording as it was archived. Times are epoch
+     * milliseconds and the size is that of the JFR data before any storage encoding.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public record RecordingStatistics(
+            long chunkCount,
+            long eventCount,
+            Map<String, Long> eventCounts,
+            long startTime,
+            long endTime,
+            long uncompressedSize) {
+        public RecordingStatistics {
+            if (eventCounts == null) {
+                eventCounts = Collections.emptyMap();
+            }
+        }
+    }
+
+    public record ArchivedRecordingKey(String jvmId, String filename) {
+        public ArchivedRecordingKey {
+            Objects.requireNonNull(jvmId);
+            Objects.requireNonNull(filename);
+        }
+    }
+
     @SuppressFBWarnings("EI_EXPOSE_REP")
     public record ArchivedRecordingDirectory(
             String connectUrl, String jvmId, List<ArchivedRecording> recordings) {
@@ -17,17 +17,35 @@ package io.cryostat.recordings;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.StorageBuckets;
 import io.cryostat.recordings.ActiveRecordings.Metadata;
 import io.cryostat.util.HttpMimeType;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.quarkus.arc.lookup.LookupIfProperty;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
@@ -35,23 +53,44 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
+/**
+ * Stores archived recording metadata in a per-jvmId index within the metadata bucket. Each jvmId's
+ * index is split into a fixed number of shards by filename hash. A shard consists of a compacted
+ * manifest object and a sequence of delta objects, each of which is a map of filename to metadata
+ * with null marking a deletion. Every create, update or delete is a single PUT of a new delta.
+ * Reading folds the deltas over the manifest in sequence order, so listing all of a jvmId's
+ * metadata costs one listing plus one GET per shard object rather than one GET per recording. Once
+ * enough deltas accumulate they are compacted back into the shard manifests.
+ *
+ * <p>Folded shards are cached in memory. This instance is the only writer to the index, so each
+ * write and compaction is applied to the cached shard under a per-shard lock, and reads of a cached
+ * shard make no storage requests.
+ *
+ * <p>Metadata written in the older layout, one object per recording at {@code prefix/jvmId/file},
+ * is still read as a fallback, and compaction migrates it into the index.
+ */
 @ApplicationScoped
 @LookupIfProperty(
         name = ConfigProperties.STORAGE_METADATA_ARCHIVES_STORAGE_MODE,
         stringValue = ArchivedRecordingMetadataService.METADATA_STORAGE_MODE_BUCKET)
-/**
- * Implements archived recording metadata as standalone objects in a bucket. When the storage mode
- * is set to select this implementation, archived recordings' metadata is not stored using the S3
- * object Tags, but rather as separate JSON files in separate buckets. This ensures broader
- * compatibility with different S3-like implementations and providers, and also circumvents any
- * limitations on tag count or tag size/length.
- */
 class BucketedArchivedRecordingMetadataService implements ArchivedRecordingMetadataService {
 
+    static final int INDEX_SHARDS = 16;
+    static final String INDEX_DIR = "_index";
+    static final String MANIFEST_NAME = "manifest.json";
+    private static final int SHARD_LOAD_ATTEMPTS = 3;
+    private static final int SHARD_CACHE_SIZE = 4096;
+    private static final int SHARD_LOCK_STRIPES = 64;
+
+    private static final TypeReference<Map<String, Metadata>> ENTRIES_TYPE =
+            new TypeReference<>() {};
+
     @Inject StorageBuckets storageBuckets;
     @Inject S3Client storage;
     @Inject Logger logger;
@@ -65,10 +104,30 @@ class BucketedArchivedRecordingMetadataService implements ArchivedRecordingMetad
     @ConfigProperty(name = ConfigProperties.AWS_METADATA_PREFIX_RECORDINGS)
     String prefix;
 
+    @ConfigProperty(name = ConfigProperties.STORAGE_METADATA_ARCHIVES_INDEX_COMPACTION_THRESHOLD)
+    int compactionThreshold;
+
     // don't use the application-wide instance. That one serializes maps as key-value pair lists for
     // historical API reasons, but for this internal usage we just want the default behaviour.
     private final ObjectMapper mapper = new ObjectMapper();
 
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, AtomicInteger> pendingDeltas = new ConcurrentHashMap<>();
+    private final Set<String> compacting = ConcurrentHashMap.newKeySet();
+    // folded shard contents, including deletion markers, keyed by the shard's object prefix
+    private final Cache<String, Map<String, Metadata>> shards =
+            Caffeine.newBuilder().maximumSize(SHARD_CACHE_SIZE).build();
+    private final Object[] shardLocks = new Object[SHARD_LOCK_STRIPES];
+    // count of deltas written to the shards of each lock stripe, so that a fold of a listing taken
+    // before a write is not cached over that write
+    private final AtomicLongArray shardWrites = new AtomicLongArray(SHARD_LOCK_STRIPES);
+
+    Executor executor = Infrastructure.getDefaultWorkerPool();
+
+    BucketedArchivedRecordingMetadataService() {
+        Arrays.setAll(shardLocks, i -> new Object());
+    }
+
     void onStart(@Observes StartupEvent evt) {
         if (!METADATA_STORAGE_MODE_BUCKET.equals(storageMode)) {
             return;
@@ -77,35 +136,349 @@ class BucketedArchivedRecordingMetadataService implements ArchivedRecordingMetad
     }
 
     @Override
-    public void create(String storageKey, Metadata metadata) throws JsonProcessingException {
-        PutObjectRequest.Builder builder =
-                PutObjectRequest.builder()
-                        .bucket(bucket)
-                        .key(prefix(storageKey))
-                        .contentType(HttpMimeType.JSON.mime());
-        storage.putObject(
-                builder.build(), RequestBody.fromBytes(mapper.writeValueAsBytes(metadata)));
+    public void create(String storageKey, Metadata metadata) throws IOException {
+        String[] key = splitKey(storageKey);
+        writeDelta(key[0], shard(key[1]), Collections.singletonMap(key[1], metadata));
     }
 
     @Override
     public Optional<Metadata> read(String storageKey) throws IOException {
-        GetObjectRequest.Builder builder =
-                GetObjectRequest.builder().bucket(bucket).key(prefix(storageKey));
-        var resp = storage.getObject(builder.build());
-        if (resp.response().sdkHttpResponse().isSuccessful()) {
-            return Optional.of(mapper.readValue(new BufferedInputStream(resp), Metadata.class));
+        String[] key = splitKey(storageKey);
+        String jvmId = key[0];
+        String filename = key[1];
+        Map<String, Metadata> entries = loadShard(jvmId, shard(filename), null, 0);
+        if (entries.containsKey(filename)) {
+            return Optional.ofNullable(entries.get(filename));
+        }
+        return readLegacy(legacyKey(jvmId, filename));
+    }
+
+    @Override
+    public Map<String, Metadata> readAll(String jvmId) throws IOException {
+        long[] observed = new long[INDEX_SHARDS];
+        for (int shard = 0; shard < INDEX_SHARDS; shard++) {
+            observed[shard] = shardWrites.get(stripe(shardPrefix(jvmId, shard)));
+        }
+        Listing listing = list(jvmId, "");
+        Map<String, Metadata> entries = new HashMap<>();
+        int deltas = 0;
+        for (var shard : listing.shards.entrySet()) {
+            entries.putAll(
+                    loadShard(
+                            jvmId, shard.getKey(), shard.getValue(), observed[shard.getKey()]));
+            deltas += shard.getValue().deltas.size();
         }
-        return Optional.empty();
+        for (var legacy : listing.legacy.entrySet()) {
+            if (!entries.containsKey(legacy.getKey())) {
+                readLegacy(legacy.getValue()).ifPresent(m -> entries.put(legacy.getKey(), m));
+            }
+        }
+        entries.values().removeIf(m -> m == null);
+        if (!listing.legacy.isEmpty() || deltas >= compactionThreshold) {
+            scheduleCompaction(jvmId);
+        }
+        return entries;
     }
 
     @Override
-    public void delete(String storageKey) {
-        DeleteObjectRequest.Builder builder =
-                DeleteObjectRequest.builder().bucket(bucket).key(prefix(storageKey));
-        storage.deleteObject(builder.build());
+    public void update(String storageKey, Metadata metadata) throws IOException {
+        create(storageKey, metadata);
+    }
+
+    @Override
+    public void update(String jvmId, String filename, Metadata metadata) throws IOException {
+        create(jvmId, filename, metadata);
+    }
+
+    @Override
+    public void delete(String storageKey) throws IOException {
+        deleteAll(List.of(storageKey));
+    }
+
+    @Override
+    public void deleteAll(Collection<String> storageKeys) throws IOException {
+        Map<String, Map<Integer, Map<String, Metadata>>> tombstones = new HashMap<>();
+        for (String storageKey : storageKeys) {
+            String[] key = splitKey(storageKey);
+            tombstones
+                    .computeIfAbsent(key[0], k -> new HashMap<>())
+                    .computeIfAbsent(shard(key[1]), k -> new HashMap<>())
+                    .put(key[1], null);
+        }
+        for (var jvm : tombstones.entrySet()) {
+            for (var shard : jvm.getValue().entrySet()) {
+                writeDelta(jvm.getKey(), shard.getKey(), shard.getValue());
+            }
+        }
+    }
+
+    /**
+     * Fold all of a jvmId's deltas, and any metadata objects left over from the older layout, into
+     * the shard manifests, then remove the folded objects. Deletions are only retained in a
+     * manifest while an older-layout object for the same file still exists, so that a failure to
+     * remove that object cannot resurrect it.
+     */
+    void compact(String jvmId) {
+        if (!compacting.add(jvmId)) {
+            return;
+        }
+        try {
+            pendingDeltas.remove(jvmId);
+            Listing listing = list(jvmId, "");
+            Map<Integer, Map<String, String>> legacyByShard = new TreeMap<>();
+            listing.legacy.forEach(
+                    (filename, key) ->
+                            legacyByShard
+                                    .computeIfAbsent(shard(filename), k -> new HashMap<>())
+                                    .put(filename, key));
+            Set<Integer> candidates = new TreeSet<>(legacyByShard.keySet());
+            listing.shards.forEach(
+                    (shard, objects) -> {
+                        if (!objects.deltas.isEmpty()) {
+                            candidates.add(shard);
+                        }
+                    });
+            for (int shard : candidates) {
+                compactShard(jvmId, shard, legacyByShard.getOrDefault(shard, Map.of()));
+            }
+        } catch (Exception e) {
+            logger.warnv(e, "Failed to compact archived recording metadata for {0}", jvmId);
+        } finally {
+            compacting.remove(jvmId);
+        }
+    }
+
+    private void compactShard(String jvmId, int shard, Map<String, String> legacy)
+            throws IOException {
+        String key = shardPrefix(jvmId, shard);
+        synchronized (lock(key)) {
+            Shard objects = listShard(jvmId, shard);
+            if (objects.deltas.isEmpty() && legacy.isEmpty()) {
+                return;
+            }
+            Map<String, Metadata> entries = new HashMap<>();
+            for (var l : legacy.entrySet()) {
+                readLegacy(l.getValue()).ifPresent(m -> entries.put(l.getKey(), m));
+            }
+            entries.putAll(fold(jvmId, shard, objects));
+            entries.entrySet()
+                    .removeIf(en -> en.getValue() == null && !legacy.containsKey(en.getKey()));
+            put(manifestKey(jvmId, shard), entries);
+            shards.put(key, Collections.unmodifiableMap(entries));
+
+            List<String> folded = new ArrayList<>(objects.deltas);
+            folded.addAll(legacy.values());
+            storageBuckets.deleteObjects(bucket, folded);
+        }
+    }
+
+    private void scheduleCompaction(String jvmId) {
+        if (compacting.contains(jvmId)) {
+            return;
+        }
+        executor.execute(() -> compact(jvmId));
+    }
+
+    private void writeDelta(String jvmId, int shard, Map<String, Metadata> entries)
+            throws IOException {
+        String key = shardPrefix(jvmId, shard);
+        synchronized (lock(key)) {
+            // epoch microseconds, bumped as needed so that sequence numbers stay unique and
+            // increasing within this process and remain ordered after a restart
+            long seq =
+                    sequence.updateAndGet(
+                            prev -> Math.max(prev + 1, System.currentTimeMillis() * 1_000));
+            put(String.format("%s%019d.json", key, seq), entries);
+            shardWrites.incrementAndGet(stripe(key));
+            shards.asMap()
+                    .computeIfPresent(
+                            key,
+                            (k, v) -> {
+                                Map<String, Metadata> updated = new HashMap<>(v);
+                                updated.putAll(entries);
+                                return Collections.unmodifiableMap(updated);
+                            });
+        }
+        int pending =
+                pendingDeltas.computeIfAbsent(jvmId, k -> new AtomicInteger()).incrementAndGet();
+        if (pending >= compactionThreshold) {
+            scheduleCompaction(jvmId);
+        }
+    }
+
+    private void put(String key, Map<String, Metadata> entries) throws IOException {
+        storage.putObject(
+                PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(HttpMimeType.JSON.mime())
+                        .build(),
+                RequestBody.fromBytes(mapper.writeValueAsBytes(entries)));
+    }
+
+    /**
+     * @param listed the shard's objects if they are already known from a listing, or null to list
+     *     them if the shard is not cached
+     * @param observedWrites the shard's stripe write count from before the listing was taken. If
+     *     a delta has been written since then the listing may be missing it, so the shard is listed
+     *     again rather than caching a stale fold
+     * @return the folded shard, including deletion markers
+     */
+    private Map<String, Metadata> loadShard(
+            String jvmId, int shard, Shard listed, long observedWrites) throws IOException {
+        String key = shardPrefix(jvmId, shard);
+        Map<String, Metadata> cached = shards.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (lock(key)) {
+            cached = shards.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (listed != null && shardWrites.get(stripe(key)) != observedWrites) {
+                listed = null;
+            }
+            Map<String, Metadata> entries =
+                    Collections.unmodifiableMap(
+                            fold(jvmId, shard, listed == null ? listShard(jvmId, shard) : listed));
+            shards.put(key, entries);
+            return entries;
+        }
+    }
+
+    /**
+     * Fold the shard's deltas over its manifest. If a listed object has disappeared by the time it
+     * is read then another compaction has folded it into a newer manifest, so the shard is listed
+     * and folded again rather than silently dropping that object's entries.
+     */
+    private Map<String, Metadata> fold(String jvmId, int shard, Shard objects)
+            throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Map<String, Metadata> entries = new HashMap<>();
+                if (objects.manifest) {
+                    entries.putAll(get(manifestKey(jvmId, shard)));
+                }
+                for (String delta : objects.deltas) {
+                    entries.putAll(get(delta));
+                }
+                return entries;
+            } catch (NoSuchKeyException nske) {
+                if (attempt >= SHARD_LOAD_ATTEMPTS) {
+                    throw new IOException(
+                            String.format(
+                                    "Metadata index shard %s changed while being read",
+                                    shardPrefix(jvmId, shard)),
+                            nske);
+                }
+                logger.debugv(
+                        "Metadata index shard {0} changed while being read, retrying",
+                        shardPrefix(jvmId, shard));
+                objects = listShard(jvmId, shard);
+            }
+        }
+    }
+
+    private Map<String, Metadata> get(String key) throws IOException {
+        try (var stream =
+                new BufferedInputStream(
+                        storage.getObject(
+                                GetObjectRequest.builder().bucket(bucket).key(key).build()))) {
+            return mapper.readValue(stream, ENTRIES_TYPE);
+        }
+    }
+
+    private Optional<Metadata> readLegacy(String key) throws IOException {
+        try (var stream =
+                new BufferedInputStream(
+                        storage.getObject(
+                                GetObjectRequest.builder().bucket(bucket).key(key).build()))) {
+            return Optional.of(mapper.readValue(stream, Metadata.class));
+        } catch (NoSuchKeyException nske) {
+            return Optional.empty();
+        }
+    }
+
+    /** List a jvmId's metadata objects, optionally restricted to a sub-prefix of its index. */
+    private Listing list(String jvmId, String subPrefix) {
+        String base = base(jvmId);
+        Listing listing = new Listing();
+        var req = ListObjectsV2Request.builder().bucket(bucket).prefix(base + subPrefix).build();
+        for (S3Object object : storage.listObjectsV2Paginator(req).contents()) {
+            String name = object.key().substring(base.length());
+            String[] parts = name.split("/");
+            if (parts.length == 1) {
+                listing.legacy.put(name, object.key());
+            } else if (parts.length == 3 && INDEX_DIR.equals(parts[0])) {
+                int shard;
+                try {
+                    shard = Integer.parseInt(parts[1], 16);
+                } catch (NumberFormatException nfe) {
+                    continue;
+                }
+                Shard objects = listing.shards.computeIfAbsent(shard, k -> new Shard());
+                if (MANIFEST_NAME.equals(parts[2])) {
+                    objects.manifest = true;
+                } else {
+                    objects.deltas.add(object.key());
+                }
+            }
+        }
+        // delta names are zero-padded sequence numbers, so lexical order is application order
+        listing.shards.values().forEach(s -> Collections.sort(s.deltas));
+        return listing;
+    }
+
+    private Shard listShard(String jvmId, int shard) {
+        return list(jvmId, String.format("%s/%02x/", INDEX_DIR, shard))
+                .shards
+                .getOrDefault(shard, new Shard());
+    }
+
+    private Object lock(String shardPrefix) {
+        return shardLocks[stripe(shardPrefix)];
+    }
+
+    private int stripe(String shardPrefix) {
+        return Math.floorMod(shardPrefix.hashCode(), shardLocks.length);
+    }
+
+    private String base(String jvmId) {
+        return String.format("%s/%s/", prefix, jvmId);
+    }
+
+    private String legacyKey(String jvmId, String filename) {
+        return base(jvmId) + filename;
+    }
+
+    private String shardPrefix(String jvmId, int shard) {
+        return String.format("%s%s/%02x/", base(jvmId), INDEX_DIR, shard);
+    }
+
+    private String manifestKey(String jvmId, int shard) {
+        return shardPrefix(jvmId, shard) + MANIFEST_NAME;
+    }
+
+    static int shard(String filename) {
+        return Math.floorMod(filename.hashCode(), INDEX_SHARDS);
+    }
+
+    private static String[] splitKey(String storageKey) {
+        int idx = storageKey.indexOf('/');
+        if (idx < 0) {
+            throw new IllegalArgumentException(storageKey);
+        }
+        return new String[] {storageKey.substring(0, idx), storageKey.substring(idx + 1)};
+    }
+
+    private static class Listing {
+        final Map<String, String> legacy = new HashMap<>();
+        final Map<Integer, Shard> shards = new TreeMap<>();
     }
 
-    private String prefix(String key) {
-        return String.format("%s/%s", prefix, key);
+    private static class Shard {
+        boolean manifest;
+        final List<String> deltas = new ArrayList<>();
     }
 }
@@ -0,0 +1,433 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import io.cryostat.recordings.ArchivedRecordings.RecordingStatistics;
+
+/**
+ * Passes a JFR file through unchanged while reading its chunk headers and event headers, so that
+ * statistics about the recording's content can be gathered as it is copied elsewhere. Only the
+ * size and type of each event are decoded and event bodies are skipped, except for each chunk's
+ * metadata event which is read to resolve event type IDs to type names.
+ *
+ * <p>The parser never fails the stream it wraps: if the data is not a JFR file it can understand
+ * then it stops parsing and {@link #statistics()} is empty.
+ */
+class JfrStatisticsInputStream extends FilterInputStream {
+
+    static final int MAX_METADATA_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] MAGIC = {'F', 'L', 'R', 0};
+    private static final int HEADER_SIZE = 68;
+    private static final int FEATURE_COMPRESSED_INTS = 1;
+    private static final long METADATA_EVENT_TYPE = 0;
+    private static final long CONSTANT_POOL_EVENT_TYPE = 1;
+
+    private enum State {
+        HEADER,
+        EVENT_SIZE,
+        EVENT_TYPE,
+        METADATA,
+        SKIP,
+        FAILED,
+    }
+
+    private State state = State.HEADER;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private int headerPos;
+    private ByteArrayOutputStream metadata;
+
+    private boolean compressedInts;
+    private long chunkSize;
+    private long chunkPos;
+    private final Map<Long, Long> chunkCounts = new HashMap<>();
+    private final Map<Long, String> chunkTypes = new HashMap<>();
+
+    private long number;
+    private int numberBytes;
+    private long eventRemaining;
+
+    private long chunkCount;
+    private long startNanos = Long.MAX_VALUE;
+    private long endNanos = Long.MIN_VALUE;
+    private final Map<String, Long> eventCounts = new TreeMap<>();
+    private long size;
+
+    JfrStatisticsInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            accept((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            accept(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // read through skipped bytes so that the parser still sees them
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return the statistics of the data read so far, or empty if the data could not be parsed as
+     *     a JFR file
+     */
+    Optional<RecordingStatistics> statistics() {
+        if (state == State.FAILED || chunkCount == 0) {
+            return Optional.empty();
+        }
+        // a final chunk cut short still contributes the events which were read
+        if (state != State.HEADER) {
+            endChunk();
+        }
+        long eventCount = eventCounts.values().stream().mapToLong(Long::longValue).sum();
+        return Optional.of(
+                new RecordingStatistics(
+                        chunkCount,
+                        eventCount,
+                        Map.copyOf(eventCounts),
+                        startNanos / 1_000_000,
+                        endNanos / 1_000_000,
+                        size));
+    }
+
+    /**
+     * Accept a run of bytes. Event bodies which are skipped or collected as metadata are consumed
+     * in bulk rather than a byte at a time, so that the cost of passing an event through does not
+     * grow with its size.
+     */
+    private void accept(byte[] b, int off, int len) {
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (state == State.FAILED) {
+                size += end - i;
+                return;
+            }
+            if (state != State.SKIP && state != State.METADATA) {
+                accept(b[i++]);
+                continue;
+            }
+            int n = (int) Math.min(eventRemaining, end - i);
+            if (state == State.METADATA) {
+                metadata.write(b, i, n);
+            }
+            i += n;
+            size += n;
+            chunkPos += n;
+            eventRemaining -= n;
+            if (eventRemaining == 0) {
+                if (state == State.METADATA) {
+                    readMetadata(metadata.toByteArray());
+                    metadata = null;
+                }
+                endEvent();
+            }
+        }
+    }
+
+    private void accept(byte b) {
+        size++;
+        if (state == State.FAILED) {
+            return;
+        }
+        chunkPos++;
+        switch (state) {
+            case HEADER:
+                header[headerPos++] = b;
+                if (headerPos == HEADER_SIZE) {
+                    startChunk();
+                }
+                return;
+            case EVENT_SIZE:
+                if (readNumber(b, Integer.BYTES)) {
+                    if (number <= numberBytes) {
+                        state = State.FAILED;
+                        return;
+                    }
+                    eventRemaining = number - numberBytes;
+                    resetNumber();
+                    state = State.EVENT_TYPE;
+                }
+                return;
+            case EVENT_TYPE:
+                eventRemaining--;
+                if (readNumber(b, Long.BYTES)) {
+                    long type = number;
+                    resetNumber();
+                    if (type == METADATA_EVENT_TYPE && eventRemaining <= MAX_METADATA_SIZE) {
+                        metadata = new ByteArrayOutputStream((int) eventRemaining);
+                        state = State.METADATA;
+                    } else {
+                        if (type != METADATA_EVENT_TYPE && type != CONSTANT_POOL_EVENT_TYPE) {
+                            chunkCounts.merge(type, 1L, Long::sum);
+                        }
+                        state = State.SKIP;
+                    }
+                    if (eventRemaining == 0) {
+                        endEvent();
+                    } else if (eventRemaining < 0) {
+                        state = State.FAILED;
+                    }
+                }
+                return;
+            case METADATA:
+                metadata.write(b);
+                if (--eventRemaining == 0) {
+                    readMetadata(metadata.toByteArray());
+                    metadata = null;
+                    endEvent();
+                }
+                return;
+            case SKIP:
+                if (--eventRemaining == 0) {
+                    endEvent();
+                }
+                return;
+            default:
+                return;
+        }
+    }
+
+    private void startChunk() {
+        ByteBuffer buf = ByteBuffer.wrap(header);
+        for (byte m : MAGIC) {
+            if (buf.get() != m) {
+                state = State.FAILED;
+                return;
+            }
+        }
+        buf.getShort(); // major version
+        buf.getShort(); // minor version
+        chunkSize = buf.getLong();
+        buf.getLong(); // constant pool offset
+        buf.getLong(); // metadata offset
+        long chunkStart = buf.getLong();
+        long chunkDuration = buf.getLong();
+        buf.getLong(); // start ticks
+        buf.getLong(); // ticks per second
+        compressedInts = (buf.getInt() & FEATURE_COMPRESSED_INTS) != 0;
+        if (chunkSize != 0 && chunkSize < HEADER_SIZE) {
+            state = State.FAILED;
+            return;
+        }
+
+        chunkCount++;
+        startNanos = Math.min(startNanos, chunkStart);
+        endNanos = Math.max(endNanos, chunkStart + chunkDuration);
+        headerPos = 0;
+        state = chunkSize == HEADER_SIZE ? State.HEADER : State.EVENT_SIZE;
+        if (state == State.HEADER) {
+            chunkPos = 0;
+        }
+    }
+
+    private void endEvent() {
+        if (chunkSize > 0 && chunkPos >= chunkSize) {
+            endChunk();
+            chunkPos = 0;
+            state = State.HEADER;
+        } else {
+            state = State.EVENT_SIZE;
+        }
+    }
+
+    private void endChunk() {
+        chunkCounts.forEach(
+                (type, count) ->
+                        eventCounts.merge(
+                                chunkTypes.getOrDefault(type, String.valueOf(type)),
+                                count,
+                                Long::sum));
+        chunkCounts.clear();
+        chunkTypes.clear();
+    }
+
+    /**
+     * Accumulate one byte of a variable-length (compressed) or big-endian fixed-length integer.
+     *
+     * @return true once the integer is complete, leaving its value in {@link #number}
+     */
+    private boolean readNumber(byte b, int fixedBytes) {
+        if (!compressedInts) {
+            number = (number << 8) | (b & 0xFF);
+            return ++numberBytes == fixedBytes;
+        }
+        if (numberBytes == 8) {
+            number |= (b & 0xFFL) << 56;
+            numberBytes++;
+            return true;
+        }
+        number |= (b & 0x7FL) << (7 * numberBytes);
+        numberBytes++;
+        return (b & 0x80) == 0;
+    }
+
+    private void resetNumber() {
+        number = 0;
+        numberBytes = 0;
+    }
+
+    /**
+     * Resolve the event type IDs of the current chunk from the body of its metadata event, which
+     * follows the event size and type ID.
+     */
+    private void readMetadata(byte[] body) {
+        try {
+            MetadataReader reader = new MetadataReader(ByteBuffer.wrap(body), compressedInts);
+            reader.readLong(); // start time
+            reader.readLong(); // duration
+            reader.readLong(); // metadata ID
+            int stringCount = reader.readInt();
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = reader.readString();
+            }
+            readElement(reader, strings);
+        } catch (BufferUnderflowException
+                | IllegalArgumentException
+                | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            // leave this chunk's types unresolved rather than abandon the whole stream
+        }
+    }
+
+    private void readElement(MetadataReader reader, String[] strings) {
+        String name = strings[reader.readInt()];
+        int attributeCount = reader.readInt();
+        Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.put(strings[reader.readInt()], strings[reader.readInt()]);
+        }
+        if ("class".equals(name)
+                && attributes.get("id") != null
+                && attributes.get("name") != null) {
+            chunkTypes.put(Long.parseLong(attributes.get("id")), attributes.get("name"));
+        }
+        int childCount = reader.readInt();
+        for (int i = 0; i < childCount; i++) {
+            readElement(reader, strings);
+        }
+    }
+
+    private static class MetadataReader {
+        private static final int STRING_NULL = 0;
+        private static final int STRING_EMPTY = 1;
+        private static final int STRING_CONSTANT_POOL = 2;
+        private static final int STRING_UTF8 = 3;
+        private static final int STRING_CHAR_ARRAY = 4;
+        private static final int STRING_LATIN1 = 5;
+
+        private final ByteBuffer buf;
+        private final boolean compressedInts;
+
+        MetadataReader(ByteBuffer buf, boolean compressedInts) {
+            this.buf = buf;
+            this.compressedInts = compressedInts;
+        }
+
+        int readInt() {
+            return compressedInts ? (int) readVarLong() : buf.getInt();
+        }
+
+        long readLong() {
+            return compressedInts ? readVarLong() : buf.getLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                byte b = buf.get();
+                value |= (b & 0x7FL) << (7 * i);
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            return value | ((buf.get() & 0xFFL) << 56);
+        }
+
+        String readString() {
+            int encoding = buf.get();
+            switch (encoding) {
+                case STRING_NULL:
+                    return null;
+                case STRING_EMPTY:
+                    return "";
+                case STRING_CONSTANT_POOL:
+                    readLong();
+                    return null;
+                case STRING_UTF8:
+                    return new String(readBytes(), StandardCharsets.UTF_8);
+                case STRING_LATIN1:
+                    return new String(readBytes(), StandardCharsets.ISO_8859_1);
+                case STRING_CHAR_ARRAY:
+                    int length = readInt();
+                    char[] chars = new char[length];
+                    for (int i = 0; i < length; i++) {
+                        chars[i] = (char) readInt();
+                    }
+                    return new String(chars);
+                default:
+                    throw new IllegalArgumentException("Unknown string encoding " + encoding);
+            }
+        }
+
+        private byte[] readBytes() {
+            byte[] bytes = new byte[readInt()];
+            buf.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package io.cryostat.recordings;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -28,22 +29,29 @@ import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -54,12 +62,14 @@ import org.openjdk.jmc.common.unit.QuantityConversionException;
 import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
 import org.openjdk.jmc.flightrecorder.configuration.recording.RecordingOptionsBuilder;
 
+import io.cryostat.AsyncStorage;
 import io.cryostat.ConfigProperties;
 import io.cryostat.Producers;
 import io.cryostat.StorageBuckets;
 import io.cryostat.core.EventOptionsBuilder;
 import io.cryostat.core.FlightRecorderException;
 import io.cryostat.core.net.JFRConnection;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.events.EventTemplates;
 import io.cryostat.events.PresetTemplateService;
 import io.cryostat.events.S3TemplateService;
@@ -73,7 +83,9 @@ import io.cryostat.recordings.ActiveRecording.Listener.ArchivedRecordingEvent;
 import io.cryostat.recordings.ActiveRecordings.LinkedRecordingDescriptor;
 import io.cryostat.recordings.ActiveRecordings.Metadata;
 import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
+import io.cryostat.recordings.ArchivedRecordings.RecordingStatistics;
 import io.cryostat.reports.AnalysisReportAggregator;
+import io.cryostat.reports.ReportsService;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.TargetConnectionManager;
 import io.cryostat.util.EntityExistsException;
@@ -91,6 +103,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.BadRequestException;
@@ -103,11 +116,13 @@ import jakarta.ws.rs.core.Response;
 import jdk.jfr.RecordingState;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.validator.routines.UrlValidator;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.hibernate.exception.ConstraintViolationException;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.PartFilename;
 import org.jboss.resteasy.reactive.PartType;
@@ -124,7 +139,7 @@ import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
-import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
@@ -134,6 +149,7 @@ import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
@@ -167,12 +183,15 @@ public class RecordingHelper {
 
     private static final int S3_API_PART_LIMIT = 10_000;
     private static final int MIB = 1024 * 1024;
+    private static final int BLOB_REFERENCE_ATTEMPTS = 3;
+    private static final int ANALYSIS_PIPE_SIZE = 4 * MIB;
 
     private static final Pattern TEMPLATE_PATTERN =
             Pattern.compile("^template=([\\w]+)(?:,type=([\\w]+))?$");
     public static final String DATASOURCE_FILENAME = "cryostat-analysis.jfr";
 
     @Inject S3Client storage;
+    @Inject AsyncStorage asyncStorage;
 
     @Inject @RestClient DatasourceClient datasourceClient;
     @Inject StorageBuckets buckets;
@@ -180,12 +199,14 @@ public class RecordingHelper {
     @Inject Clock clock;
     @Inject TargetConnectionManager connectionManager;
     @Inject RemoteRecordingInputStreamFactory remoteRecordingStreamFactory;
+    @Inject ArchivedRecordingCache archiveCache;
     @Inject RecordingOptionsBuilderFactory recordingOptionsBuilderFactory;
     @Inject EventOptionsBuilder.Factory eventOptionsBuilderFactory;
     @Inject TargetTemplateService.Factory targetTemplateServiceFactory;
     @Inject S3TemplateService customTemplateService;
     @Inject PresetTemplateService presetTemplateService;
     @Inject Instance<ArchivedRecordingMetadataService> metadataService;
+    @Inject Instance<ReportsService> reportsService;
     @Inject Scheduler scheduler;
     @Inject S3Presigner presigner;
 
@@ -202,6 +223,21 @@ public class RecordingHelper {
     @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
     String archiveBucket;
 
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_CODEC)
+    StorageCodec archiveCodec;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_DEDUPLICATE)
+    boolean deduplicateArchives;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_ARCHIVES_STATISTICS_ENABLED)
+    boolean archiveStatistics;
+
+    @ConfigProperty(name = ConfigProperties.REPORTS_ANALYZE_ON_ARCHIVE)
+    boolean analyzeOnArchive;
+
+    @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVE_BLOBS)
+    String archiveBlobBucket;
+
     @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
     Duration connectionFailedTimeout;
 
@@ -224,6 +260,9 @@ public class RecordingHelper {
 
     void onStart(@Observes StartupEvent evt) {
         buckets.createIfNecessary(archiveBucket);
+        if (deduplicateArchives) {
+            buckets.createIfNecessary(archiveBlobBucket);
+        }
 
         if (grafanaDatasourceURLProperty.isEmpty()) {
             grafanaDatasourceURL.completeExceptionally(
@@ -777,7 +816,10 @@ public class RecordingHelper {
     }
 
     public List<ArchivedRecording> listArchivedRecordings() {
-        return listArchivedRecordingObjects().stream()
+        List<S3Object> objects = listArchivedRecordingObjects();
+        Map<String, Long> blobSizes = archiveBlobSizes(objects);
+        Map<String, Function<String, Metadata>> metadataLookups = new HashMap<>();
+        return objects.stream()
                 .map(
                         item -> {
                             String path = item.key().strip();
@@ -785,15 +827,16 @@ public class RecordingHelper {
                             String jvmId = parts[0];
                             String filename = parts[1];
                             Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
+                                    metadataLookups
+                                            .computeIfAbsent(jvmId, this::archivedMetadataLookup)
+                                            .apply(filename);
                             return new ArchivedRecording(
                                     jvmId,
                                     filename,
                                     downloadUrl(jvmId, filename),
                                     reportUrl(jvmId, filename),
                                     metadata,
-                                    item.size(),
+                                    blobSizes.getOrDefault(path, item.size()),
                                     item.lastModified().getEpochSecond());
                         })
                 .toList();
@@ -804,26 +847,27 @@ public class RecordingHelper {
         if (StringUtils.isNotBlank(jvmId)) {
             builder = builder.prefix(jvmId);
         }
-        return storage.listObjectsV2(builder.build()).contents();
+        return asyncStorage.listObjectsV2(builder.build()).await().indefinitely().contents();
     }
 
     public List<ArchivedRecording> listArchivedRecordings(String jvmId) {
-        return listArchivedRecordingObjects(jvmId).stream()
+        List<S3Object> objects = listArchivedRecordingObjects(jvmId);
+        Map<String, Long> blobSizes = archiveBlobSizes(objects);
+        Function<String, Metadata> metadataLookup = archivedMetadataLookup(jvmId);
+        return objects.stream()
                 .map(
                         item -> {
                             String path = item.key().strip();
                             String[] parts = path.split("/");
                             String filename = parts[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
+                            Metadata metadata = metadataLookup.apply(filename);
                             return new ArchivedRecording(
                                     jvmId,
                                     filename,
                                     downloadUrl(jvmId, filename),
                                     reportUrl(jvmId, filename),
                                     metadata,
-                                    item.size(),
+                                    blobSizes.getOrDefault(path, item.size()),
                                     item.lastModified().getEpochSecond());
                         })
                 .toList();
@@ -833,6 +877,24 @@ public class RecordingHelper {
         return listArchivedRecordings(target.jvmId);
     }
 
+    /**
+     * Resolve archived recording metadata by filename for one JVM. In bucket storage mode the
+     * metadata index is loaded once up front, rather than making a request per recording.
+     */
+    private Function<String, Metadata> archivedMetadataLookup(String jvmId) {
+        if (storageMode() == ArchivedRecordingMetadataService.StorageMode.BUCKET) {
+            try {
+                Map<String, Metadata> all = metadataService.get().readAll(jvmId);
+                return filename ->
+                        Optional.ofNullable(all.get(filename)).orElseGet(Metadata::empty);
+            } catch (IOException ioe) {
+                logger.error(ioe);
+            }
+        }
+        return filename ->
+                getArchivedRecordingMetadata(jvmId, filename).orElseGet(Metadata::empty);
+    }
+
     public ArchivedRecording archiveRecording(ActiveRecording recording) throws Exception {
         // AWS object key name guidelines advise characters to avoid (% so we should not pass url
         // encoded characters)
@@ -844,25 +906,53 @@ public class RecordingHelper {
         String filename =
                 String.format("%s_%s_%s.jfr", transformedAlias, recording.name, timestamp);
         String key = archivedRecordingKey(recording.target.jvmId, filename);
-        String multipartId = null;
-        List<Pair<Integer, String>> parts = new ArrayList<>();
-        long accum = 0;
-        try (var stream = getActiveInputStream(recording, uploadFailedTimeout);
-                var ch = Channels.newChannel(stream)) {
-            ByteBuffer buf = ByteBuffer.allocate(20 * MIB);
+        // when deduplicating, the recording is uploaded as a candidate blob and is only linked to
+        // its own key once the digest of its contents is known
+        String uploadBucket = deduplicateArchives ? archiveBlobBucket : archiveBucket;
+        String uploadKey = deduplicateArchives ? UUID.randomUUID().toString() : key;
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        InputStream source = getActiveInputStream(recording, uploadFailedTimeout);
+        JfrStatisticsInputStream statistics = null;
+        if (archiveStatistics) {
+            statistics = new JfrStatisticsInputStream(source);
+            source = statistics;
+        }
+        // recordings which will be automatically analyzed once archived are analyzed from the
+        // same stream as it is uploaded, rather than fetched back from storage afterward
+        CompletableFuture<Map<String, AnalysisResult>> analysis = null;
+        var labels = recording.metadata.labels();
+        if (analyzeOnArchive
+                && Boolean.parseBoolean(labels.get(AnalysisReportAggregator.AUTOANALYZE_LABEL))) {
+            var tee = new AnalysisTeeInputStream(source, ANALYSIS_PIPE_SIZE);
+            source = tee;
+            analysis =
+                    reportsService
+                            .get()
+                            .reportForArchiving(recording.target.jvmId, filename, tee.branch())
+                            .subscribeAsCompletionStage();
+        }
+        long accum;
+        try (var stream = archiveCodec.encode(new DigestInputStream(source, digest))) {
             CreateMultipartUploadRequest.Builder builder =
                     CreateMultipartUploadRequest.builder()
-                            .bucket(archiveBucket)
-                            .key(key)
+                            .bucket(uploadBucket)
+                            .key(uploadKey)
                             .contentType(HttpMimeType.JFR.mime())
+                            .contentEncoding(archiveCodec.contentEncoding())
                             .contentDisposition(
                                     String.format("attachment; filename=\"%s\"", filename));
             switch (storageMode()) {
                 case TAGGING:
-                    builder = builder.tagging(createActiveRecordingTagging(recording));
+                    if (!deduplicateArchives) {
+                        builder = builder.tagging(createActiveRecordingTagging(recording));
+                    }
                     break;
                 case METADATA:
-                    builder = builder.metadata(createActiveRecordingMetadata(recording).labels());
+                    if (!deduplicateArchives) {
+                        builder =
+                                builder.metadata(
+                                        createActiveRecordingMetadata(recording).labels());
+                    }
                     break;
                 case BUCKET:
                     metadataService
@@ -875,7 +965,73 @@ public class RecordingHelper {
                 default:
                     throw new IllegalStateException();
             }
-            CreateMultipartUploadRequest request = builder.build();
+            accum = multipartUpload(builder.build(), stream);
+        }
+        if (deduplicateArchives) {
+            String hash = HexFormat.of().formatHex(digest.digest());
+            linkArchiveBlob(recording, filename, uploadKey, hash, accum);
+        }
+        if (statistics != null) {
+            statistics
+                    .statistics()
+                    .ifPresent(s -> storeArchivedRecordingStatistics(recording, filename, s));
+        }
+        if (analysis != null) {
+            // let the report reach the caches before the archive notifications trigger requests
+            // for it
+            try {
+                analysis.get(uploadFailedTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warnv(e, "Analysis of {0} while archiving failed", key);
+            }
+        }
+        ArchivedRecording archivedRecording =
+                new ArchivedRecording(
+                        recording.target.jvmId,
+                        filename,
+                        downloadUrl(recording.target.jvmId, filename),
+                        reportUrl(recording.target.jvmId, filename),
+                        recording.metadata,
+                        accum,
+                        now.getEpochSecond());
+
+        URI connectUrl = recording.target.connectUrl;
+
+        var event =
+                new ArchivedRecordingEvent(
+                        ActiveRecordings.RecordingEventCategory.ARCHIVED_CREATED,
+                        ArchivedRecordingEvent.Payload.of(connectUrl, archivedRecording));
+        bus.publish(event.category().category(), event.payload().recording());
+        bus.publish(
+                MessagingServer.class.getName(),
+                new Notification(event.category().category(), event.payload()));
+        return new ArchivedRecording(
+                recording.target.jvmId,
+                filename,
+                downloadUrl(recording.target.jvmId, filename),
+                reportUrl(recording.target.jvmId, filename),
+                recording.metadata,
+                accum,
+                now.getEpochSecond());
+    }
+
+    /**
+     * Upload the contents of the stream as the object described by the request, in parts of up to
+     * 20MiB, so that the stream's length does not need to be known up front. The upload is aborted
+     * if reading from the stream or uploading a part fails.
+     *
+     * @return the number of bytes uploaded
+     */
+    private long multipartUpload(CreateMultipartUploadRequest request, InputStream stream)
+            throws IOException {
+        String bucket = request.bucket();
+        String key = request.key();
+        String multipartId = null;
+        List<CompletedPart> parts = new ArrayList<>();
+        long accum = 0;
+        try {
+            ReadableByteChannel ch = Channels.newChannel(stream);
+            ByteBuffer buf = ByteBuffer.allocate(20 * MIB);
             multipartId = storage.createMultipartUpload(request).uploadId();
             int read = 0;
             for (int i = 1; i <= S3_API_PART_LIMIT; i++) {
@@ -884,19 +1040,19 @@ public class RecordingHelper {
                 if (read == 0) {
                     read = retryRead(ch, buf);
                 }
-                accum += read;
                 if (read == -1) {
                     logger.tracev(
                             "Key: {0} completed upload of {1} chunks ({2} bytes)",
-                            key, i - 1, accum + 1);
+                            key, i - 1, accum);
                     break;
                 }
+                accum += read;
 
                 logger.tracev("Writing chunk {0} of {1} bytes", i, read);
                 String eTag =
                         storage.uploadPart(
                                         UploadPartRequest.builder()
-                                                .bucket(archiveBucket)
+                                                .bucket(bucket)
                                                 .key(key)
                                                 .uploadId(multipartId)
                                                 .partNumber(i)
@@ -904,7 +1060,7 @@ public class RecordingHelper {
                                                 .build(),
                                         RequestBody.fromByteBuffer(buf.slice(0, read)))
                                 .eTag();
-                parts.add(Pair.of(i, eTag));
+                parts.add(CompletedPart.builder().partNumber(i).eTag(eTag).build());
                 buf.clear();
                 // S3 API limit
                 if (i == S3_API_PART_LIMIT) {
@@ -917,7 +1073,7 @@ public class RecordingHelper {
                 if (multipartId != null) {
                     storage.abortMultipartUpload(
                             AbortMultipartUploadRequest.builder()
-                                    .bucket(archiveBucket)
+                                    .bucket(bucket)
                                     .key(key)
                                     .uploadId(multipartId)
                                     .build());
@@ -927,89 +1083,248 @@ public class RecordingHelper {
             }
             throw e;
         }
+        storage.completeMultipartUpload(
+                CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(multipartId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+        return accum;
+    }
+
+    /**
+     * Point the archived recording's key at the blob holding the given content, reusing an
+     * existing blob with the same hash if there is one, and write the empty placeholder object
+     * carrying the recording's metadata under its key.
+     */
+    private void linkArchiveBlob(
+            ActiveRecording recording, String filename, String blobKey, String hash, long size) {
+        String jvmId = recording.target.jvmId;
+        boolean duplicate;
         try {
-            storage.completeMultipartUpload(
-                    CompleteMultipartUploadRequest.builder()
-                            .bucket(archiveBucket)
-                            .key(key)
-                            .uploadId(multipartId)
-                            .multipartUpload(
-                                    CompletedMultipartUpload.builder()
-                                            .parts(
-                                                    parts.stream()
-                                                            .map(
-                                                                    part ->
-                                                                            CompletedPart.builder()
-                                                                                    .partNumber(
-                                                                                            part
-                                                                                                    .getLeft())
-                                                                                    .eTag(
-                                                                                            part
-                                                                                                    .getRight())
-                                                                                    .build())
-                                                            .toList())
-                                            .build())
-                            .build());
-        } catch (SdkClientException e) {
-            // Amazon S3 couldn't be contacted for a response, or the client
-            // couldn't parse the response from Amazon S3.
+            duplicate = referenceArchiveBlob(jvmId, filename, blobKey, hash, size);
+        } catch (RuntimeException e) {
+            buckets.deleteObjects(archiveBlobBucket, List.of(blobKey));
             throw e;
         }
-        ArchivedRecording archivedRecording =
-                new ArchivedRecording(
-                        recording.target.jvmId,
-                        filename,
-                        downloadUrl(recording.target.jvmId, filename),
-                        reportUrl(recording.target.jvmId, filename),
-                        recording.metadata,
-                        accum,
-                        now.getEpochSecond());
+        if (duplicate) {
+            logger.debugv("Archived recording {0}/{1} deduplicated to {2}", jvmId, filename, hash);
+            buckets.deleteObjects(archiveBlobBucket, List.of(blobKey));
+        }
 
-        URI connectUrl = recording.target.connectUrl;
+        PutObjectRequest.Builder builder =
+                PutObjectRequest.builder()
+                        .bucket(archiveBucket)
+                        .key(archivedRecordingKey(jvmId, filename))
+                        .contentType(HttpMimeType.JFR.mime())
+                        .contentDisposition(
+                                String.format("attachment; filename=\"%s\"", filename));
+        switch (storageMode()) {
+            case TAGGING:
+                builder = builder.tagging(createActiveRecordingTagging(recording));
+                break;
+            case METADATA:
+                builder = builder.metadata(createActiveRecordingMetadata(recording).labels());
+                break;
+            case BUCKET:
+                // already written before the upload
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+        try {
+            storage.putObject(builder.build(), RequestBody.empty());
+        } catch (RuntimeException e) {
+            releaseArchiveBlobs(List.of(Pair.of(jvmId, filename)));
+            throw e;
+        }
+    }
 
-        var event =
-                new ArchivedRecordingEvent(
-                        ActiveRecordings.RecordingEventCategory.ARCHIVED_CREATED,
-                        ArchivedRecordingEvent.Payload.of(connectUrl, archivedRecording));
-        bus.publish(event.category().category(), event.payload().recording());
-        bus.publish(
-                MessagingServer.class.getName(),
-                new Notification(event.category().category(), event.payload()));
-        return new ArchivedRecording(
-                recording.target.jvmId,
-                filename,
-                downloadUrl(recording.target.jvmId, filename),
-                reportUrl(recording.target.jvmId, filename),
-                recording.metadata,
-                accum,
-                now.getEpochSecond());
+    /**
+     * Reference the blob with the given hash from the archived recording's key, creating the blob
+     * from the candidate upload if there is none yet. The blob's row is locked while its reference
+     * count is updated. If another Cryostat instance creates a blob with the same hash at the same
+     * time, the unique hash constraint fails this attempt and the next attempt finds that blob.
+     *
+     * @return true if an existing blob was referenced, making the candidate upload a duplicate
+     */
+    private boolean referenceArchiveBlob(
+            String jvmId, String filename, String blobKey, String hash, long size) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    var existing = ArchiveBlob.findByHashForUpdate(hash);
+                                    ArchiveBlob blob =
+                                            existing.orElseGet(
+                                                    () -> ArchiveBlob.of(hash, blobKey, size));
+                                    blob.refs++;
+                                    blob.persist();
+                                    ArchiveBlobRef.of(jvmId, filename, blob).persist();
+                                    return existing.isPresent();
+                                });
+            } catch (RuntimeException e) {
+                if (attempt >= BLOB_REFERENCE_ATTEMPTS
+                        || ExceptionUtils.indexOfType(e, ConstraintViolationException.class) < 0) {
+                    throw e;
+                }
+                logger.debugv(e, "Retrying reference to blob {0}", hash);
+            }
+        }
+    }
+
+    /**
+     * Record the content statistics gathered while archiving. These are informational, so a
+     * failure to store them does not fail the archive.
+     */
+    private void storeArchivedRecordingStatistics(
+            ActiveRecording recording, String filename, RecordingStatistics statistics) {
+        String jvmId = recording.target.jvmId;
+        try {
+            QuarkusTransaction.requiringNew()
+                    .run(() -> StoredRecordingStatistics.of(jvmId, filename, statistics).persist());
+        } catch (RuntimeException e) {
+            logger.warnv(e, "Could not store statistics for {0}/{1}", jvmId, filename);
+        }
+    }
+
+    public Optional<RecordingStatistics> getArchivedRecordingStatistics(
+            String jvmId, String filename) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                StoredRecordingStatistics.findByKey(jvmId, filename)
+                                        .map(s -> s.statistics));
+    }
+
+    /**
+     * Drop the blob references held by the given archived recordings, deleting any blobs which
+     * are no longer referenced. Keys without a blob reference are ignored.
+     */
+    private void releaseArchiveBlobs(Collection<Pair<String, String>> keys) {
+        List<String> orphans =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    List<String> unreferenced = new ArrayList<>();
+                                    for (Pair<String, String> key : keys) {
+                                        var ref =
+                                                ArchiveBlobRef.findByKeyForUpdate(
+                                                        key.getKey(), key.getValue());
+                                        if (ref.isEmpty()) {
+                                            continue;
+                                        }
+                                        // lock the blob's row and re-read its reference count
+                                        ArchiveBlob blob = ref.get().blob;
+                                        ArchiveBlob.getEntityManager()
+                                                .refresh(blob, LockModeType.PESSIMISTIC_WRITE);
+                                        ref.get().delete();
+                                        if (--blob.refs <= 0) {
+                                            unreferenced.add(blob.storageKey);
+                                            blob.delete();
+                                        }
+                                    }
+                                    return unreferenced;
+                                });
+        if (!orphans.isEmpty()) {
+            buckets.deleteObjects(archiveBlobBucket, orphans);
+        }
     }
 
+    /**
+     * @return the sizes of the blobs of the deduplicated archived recordings among the listed
+     *     objects, by archived recording key. The objects under their own keys are empty
+     *     placeholders, so only empty objects are looked up.
+     */
+    private Map<String, Long> archiveBlobSizes(List<S3Object> objects) {
+        Map<String, List<String>> placeholders = new HashMap<>();
+        for (S3Object item : objects) {
+            String[] parts = item.key().strip().split("/");
+            if (parts.length == 2 && item.size() != null && item.size() == 0) {
+                placeholders.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+            }
+        }
+        if (placeholders.isEmpty()) {
+            return Map.of();
+        }
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () -> {
+                            Map<String, Long> sizes = new HashMap<>();
+                            for (var e : placeholders.entrySet()) {
+                                for (var r : ArchiveBlobRef.listByKeys(e.getKey(), e.getValue())) {
+                                    String key = archivedRecordingKey(r.jvmId, r.filename);
+                                    sizes.put(key, r.blob.size);
+                                }
+                            }
+                            return sizes;
+                        });
+    }
+
+    /**
+     * @return the (bucket, key) pair of the object holding the archived recording's bytes, which
+     *     is a shared blob if the recording was deduplicated
+     */
+    public Pair<String, String> archivedRecordingLocation(String jvmId, String filename) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                ArchiveBlobRef.findByKey(jvmId, filename)
+                                        .map(r -> Pair.of(archiveBlobBucket, r.blob.storageKey))
+                                        .orElseGet(
+                                                () ->
+                                                        Pair.of(
+                                                                archiveBucket,
+                                                                archivedRecordingKey(
+                                                                        jvmId, filename))));
+    }
+
+    /**
+     * Look up a single archived recording directly by its object key, so that the cost does not
+     * depend on how many other recordings the JVM has archived.
+     */
     public Optional<ArchivedRecording> getArchivedRecordingInfo(String jvmId, String filename) {
-        return listArchivedRecordingObjects(jvmId).stream()
-                .filter(
-                        item -> {
-                            String objectName = item.key().strip();
-                            String f = objectName.split("/")[1];
-                            return Objects.equals(filename, f);
-                        })
-                .map(
-                        item -> {
-                            String objectName = item.key().strip();
-                            String f = objectName.split("/")[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, f)
-                                            .orElseGet(Metadata::empty);
-                            return new ArchivedRecording(
-                                    jvmId,
-                                    filename,
-                                    downloadUrl(jvmId, f),
-                                    reportUrl(jvmId, f),
-                                    metadata,
-                                    item.size(),
-                                    item.lastModified().getEpochSecond());
-                        })
-                .findFirst();
+        HeadObjectResponse head;
+        try {
+            head =
+                    storage.headObject(
+                            HeadObjectRequest.builder()
+                                    .bucket(archiveBucket)
+                                    .key(archivedRecordingKey(jvmId, filename))
+                                    .build());
+        } catch (NoSuchKeyException nske) {
+            return Optional.empty();
+        }
+        long size =
+                QuarkusTransaction.joiningExisting()
+                        .call(
+                                () ->
+                                        ArchiveBlobRef.findByKey(jvmId, filename)
+                                                .map(r -> r.blob.size)
+                                                .orElse(head.contentLength()));
+        return Optional.of(
+                new ArchivedRecording(
+                        jvmId,
+                        filename,
+                        downloadUrl(jvmId, filename),
+                        reportUrl(jvmId, filename),
+                        archivedRecordingMetadata(jvmId, filename, head),
+                        size,
+                        head.lastModified().getEpochSecond()));
+    }
+
+    /**
+     * Resolve an archived recording's metadata, reusing the object's HEAD response where the
+     * metadata is stored on the object itself rather than making another request for it.
+     */
+    private Metadata archivedRecordingMetadata(
+            String jvmId, String filename, HeadObjectResponse head) {
+        if (storageMode() == ArchivedRecordingMetadataService.StorageMode.METADATA) {
+            return head.hasMetadata() ? new Metadata(head.metadata()) : Metadata.empty();
+        }
+        return getArchivedRecordingMetadata(jvmId, filename).orElseGet(Metadata::empty);
     }
 
     public Optional<Metadata> getArchivedRecordingMetadata(String jvmId, String filename) {
@@ -1100,12 +1415,110 @@ public class RecordingHelper {
     }
 
     public InputStream getArchivedRecordingStream(String encodedKey) {
-        String key = new String(base64Url.decode(encodedKey), StandardCharsets.UTF_8);
+        var pair = decodedKey(encodedKey);
+        if (archiveCache.isEnabled()) {
+            return getArchivedRecordingStream(
+                    headArchivedRecordingContent(pair.getKey(), pair.getValue()));
+        }
+        var location = archivedRecordingLocation(pair.getKey(), pair.getValue());
+        var resp =
+                getObject(
+                        GetObjectRequest.builder()
+                                .bucket(location.getKey())
+                                .key(location.getValue())
+                                .build());
+        return decode(resp, resp.response().contentEncoding());
+    }
+
+    /**
+     * Open the decoded content of an archived recording whose storage metadata has already been
+     * looked up, so that its metadata is not requested again.
+     */
+    public InputStream getArchivedRecordingStream(ArchivedRecordingContent content) {
+        return decode(getArchivedRecordingObject(content), content.head().contentEncoding());
+    }
 
+    /**
+     * Open the archived recording's stored bytes without decoding them, through the archive cache
+     * if it is enabled.
+     */
+    public InputStream getArchivedRecordingObject(ArchivedRecordingContent content) {
         GetObjectRequest getRequest =
-                GetObjectRequest.builder().bucket(archiveBucket).key(key).build();
+                GetObjectRequest.builder().bucket(content.bucket()).key(content.key()).build();
+        if (!archiveCache.isEnabled()) {
+            return getObject(getRequest);
+        }
+        try {
+            return archiveCache.open(
+                    content.bucket(),
+                    content.key(),
+                    content.head().eTag(),
+                    content.head().contentLength(),
+                    () -> getObject(getRequest));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the archived recording's stored bytes from the archive cache, or null if they are not
+     *     cached
+     */
+    public InputStream getCachedArchivedRecordingObject(ArchivedRecordingContent content)
+            throws IOException {
+        return archiveCache.openIfCached(content.bucket(), content.key(), content.head().eTag());
+    }
+
+    private InputStream decode(InputStream stream, String contentEncoding) {
+        try {
+            return new BufferedInputStream(
+                    StorageCodec.fromContentEncoding(contentEncoding).decode(stream));
+        } catch (IOException e) {
+            try {
+                stream.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Open the archived recording's stored bytes without decoding them, optionally restricted to a
+     * single byte range.
+     *
+     * @param range an HTTP {@code Range} header value passed through to storage, or null for the
+     *     whole object
+     */
+    public ResponseInputStream<GetObjectResponse> getArchivedRecordingObject(
+            ArchivedRecordingContent content, String range) {
+        return getObject(
+                GetObjectRequest.builder()
+                        .bucket(content.bucket())
+                        .key(content.key())
+                        .range(range)
+                        .build());
+    }
 
-        return new BufferedInputStream(storage.getObject(getRequest));
+    private ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        return asyncStorage.getObject(request).await().indefinitely();
+    }
+
+    /**
+     * Resolve where the archived recording's content is stored and request its storage metadata.
+     * For deduplicated archives this is the shared blob rather than the placeholder object at the
+     * archive key. This also serves as the existence check, failing with {@link
+     * NoSuchKeyException} if the content does not exist.
+     */
+    public ArchivedRecordingContent headArchivedRecordingContent(String jvmId, String filename) {
+        var location = archivedRecordingLocation(jvmId, filename);
+        var head =
+                storage.headObject(
+                        HeadObjectRequest.builder()
+                                .bucket(location.getKey())
+                                .key(location.getValue())
+                                .build());
+        return new ArchivedRecordingContent(location.getKey(), location.getValue(), head);
     }
 
     public String downloadUrl(ActiveRecording recording) {
@@ -1171,8 +1584,8 @@ public class RecordingHelper {
 
     /* Archived Recording Helpers */
     public void deleteArchivedRecording(String jvmId, String filename) throws IOException {
-        assertArchivedRecordingExists(jvmId, filename);
-        var metadata = getArchivedRecordingMetadata(jvmId, filename).orElseGet(Metadata::empty);
+        var head = assertArchivedRecordingExists(jvmId, filename);
+        var metadata = archivedRecordingMetadata(jvmId, filename, head);
         var target = Target.getTargetByJvmId(jvmId);
 
         var key = archivedRecordingKey(jvmId, filename);
@@ -1199,6 +1612,13 @@ public class RecordingHelper {
             default:
                 throw new IllegalStateException();
         }
+        QuarkusTransaction.joiningExisting()
+                .run(
+                        () -> {
+                            AgentArchive.deleteByKey(jvmId, filename);
+                            StoredRecordingStatistics.deleteByKey(jvmId, filename);
+                        });
+        releaseArchiveBlobs(List.of(Pair.of(jvmId, filename)));
 
         var event =
                 new ArchivedRecordingEvent(
@@ -1219,6 +1639,116 @@ public class RecordingHelper {
                 new Notification(event.category().category(), event.payload()));
     }
 
+    /**
+     * Delete many archived recordings using as few S3 requests as possible. Objects are deleted in
+     * batches through {@link StorageBuckets#deleteObjects(String, Collection)}, and their metadata
+     * is removed in the same pass. Unlike {@link #deleteArchivedRecording(String, String)}, the
+     * objects are checked for existence with one listing per jvmId rather than one HEAD request per
+     * object, and the emitted notifications carry only the jvmId label rather than the full
+     * metadata.
+     *
+     * @param keys pairs of (jvmId, filename) to delete
+     * @return the keys which were successfully deleted
+     */
+    public List<Pair<String, String>> deleteArchivedRecordings(
+            Collection<Pair<String, String>> keys) {
+        return deleteArchivedRecordings(keys, true);
+    }
+
+    /**
+     * Like {@link #deleteArchivedRecordings(Collection)}, but for keys taken from a database index
+     * of archives known to exist, such as {@link AgentArchive}. The bucket is not listed to check
+     * for the objects first, so keys whose objects are already gone are reported as deleted and
+     * their index entries are dropped along with the others.
+     *
+     * @param keys pairs of (jvmId, filename) to delete
+     * @return the keys which were successfully deleted
+     */
+    public List<Pair<String, String>> deleteIndexedArchivedRecordings(
+            Collection<Pair<String, String>> keys) {
+        return deleteArchivedRecordings(keys, false);
+    }
+
+    private List<Pair<String, String>> deleteArchivedRecordings(
+            Collection<Pair<String, String>> keys, boolean checkExistence) {
+        Map<String, Pair<String, String>> byKey = new HashMap<>();
+        keys.forEach(k -> byKey.put(archivedRecordingKey(k), k));
+        // S3 reports missing keys as deleted, so only delete, and notify for, keys which exist
+        Set<String> existing =
+                checkExistence
+                        ? buckets.existingKeys(archiveBucket, byKey.keySet())
+                        : byKey.keySet();
+        List<Pair<String, String>> missing =
+                byKey.entrySet().stream()
+                        .filter(e -> !existing.contains(e.getKey()))
+                        .map(Map.Entry::getValue)
+                        .toList();
+        if (!missing.isEmpty()) {
+            // the objects are already gone, so drop any agent retention entries still naming them
+            QuarkusTransaction.joiningExisting()
+                    .run(
+                            () -> {
+                                for (Pair<String, String> key : missing) {
+                                    AgentArchive.deleteByKey(key.getKey(), key.getValue());
+                                }
+                            });
+        }
+        List<String> deletedKeys = buckets.deleteObjects(archiveBucket, existing);
+        List<Pair<String, String>> deleted =
+                deletedKeys.stream().map(byKey::get).filter(Objects::nonNull).toList();
+        if (deleted.isEmpty()) {
+            return deleted;
+        }
+
+        if (storageMode() == ArchivedRecordingMetadataService.StorageMode.BUCKET) {
+            try {
+                metadataService.get().deleteAll(deletedKeys);
+            } catch (IOException e) {
+                logger.warn(e);
+            }
+        }
+        Map<String, Optional<URI>> connectUrls =
+                QuarkusTransaction.joiningExisting()
+                        .call(
+                                () -> {
+                                    Map<String, Optional<URI>> urls = new HashMap<>();
+                                    for (Pair<String, String> key : deleted) {
+                                        AgentArchive.deleteByKey(key.getKey(), key.getValue());
+                                        StoredRecordingStatistics.deleteByKey(
+                                                key.getKey(), key.getValue());
+                                        urls.computeIfAbsent(
+                                                key.getKey(),
+                                                id ->
+                                                        Target.getTargetByJvmId(id)
+                                                                .map(t -> t.connectUrl));
+                                    }
+                                    return urls;
+                                });
+        releaseArchiveBlobs(deleted);
+        for (Pair<String, String> key : deleted) {
+            String jvmId = key.getKey();
+            String filename = key.getValue();
+            var event =
+                    new ArchivedRecordingEvent(
+                            ActiveRecordings.RecordingEventCategory.ARCHIVED_DELETED,
+                            ArchivedRecordingEvent.Payload.of(
+                                    connectUrls.get(jvmId).orElse(null),
+                                    new ArchivedRecording(
+                                            jvmId,
+                                            filename,
+                                            downloadUrl(jvmId, filename),
+                                            reportUrl(jvmId, filename),
+                                            new Metadata(Map.of("jvmId", jvmId)),
+                                            0,
+                                            0)));
+            bus.publish(event.category().category(), event.payload().recording());
+            bus.publish(
+                    MessagingServer.class.getName(),
+                    new Notification(event.category().category(), event.payload()));
+        }
+        return deleted;
+    }
+
     Metadata createActiveRecordingMetadata(ActiveRecording recording) {
         Map<String, String> labels = new HashMap<>(recording.metadata.labels());
         labels.put("connectUrl", recording.target.connectUrl.toString());
@@ -1324,7 +1854,8 @@ public class RecordingHelper {
                 PutObjectRequest.builder()
                         .bucket(archiveBucket)
                         .key(key)
-                        .contentType(HttpMimeType.JFR.mime());
+                        .contentType(HttpMimeType.JFR.mime())
+                        .contentEncoding(archiveCodec.contentEncoding());
         switch (storageMode()) {
             case TAGGING:
                 requestBuilder =
@@ -1339,7 +1870,28 @@ public class RecordingHelper {
             default:
                 throw new IllegalStateException();
         }
-        storage.putObject(requestBuilder.build(), RequestBody.fromFile(recording.filePath()));
+        // an upload replacing a deduplicated archive must not keep resolving to the old blob
+        releaseArchiveBlobs(List.of(Pair.of(jvmId, filename)));
+        QuarkusTransaction.joiningExisting()
+                .run(() -> StoredRecordingStatistics.deleteByKey(jvmId, filename));
+        PutObjectRequest request = requestBuilder.build();
+        if (archiveCodec == StorageCodec.NONE) {
+            storage.putObject(request, RequestBody.fromFile(recording.filePath()));
+        } else {
+            // the encoded length is not known up front, so stream it through a multipart upload
+            try (var stream = archiveCodec.encode(fs.newInputStream(recording.filePath()))) {
+                multipartUpload(
+                        CreateMultipartUploadRequest.builder()
+                                .bucket(request.bucket())
+                                .key(request.key())
+                                .contentType(request.contentType())
+                                .contentEncoding(request.contentEncoding())
+                                .tagging(request.tagging())
+                                .metadata(request.metadata())
+                                .build(),
+                        stream);
+            }
+        }
 
         var target = Target.getTargetByJvmId(jvmId);
         ArchivedRecording archivedRecording =
@@ -1430,23 +1982,29 @@ public class RecordingHelper {
     }
 
     public Uni<String> uploadToJFRDatasource(long targetEntityId, long remoteId) throws Exception {
-        // copy an active recording and upload this directly to datasource
+        // stream an active recording directly to datasource
         Target target = Target.getTargetById(targetEntityId);
         Objects.requireNonNull(target, "Target from targetId not found");
         ActiveRecording recording = target.getRecordingById(remoteId);
         Objects.requireNonNull(recording, "ActiveRecording from remoteId not found");
-        Path recordingPath =
+        InputStream stream =
                 connectionManager.executeConnectedTask(
                         target,
                         connection -> {
-                            return getRecordingCopyPath(connection, target, recording.name)
-                                    .orElseThrow(
-                                            () ->
-                                                    new RecordingNotFoundException(
-                                                            target.targetId(), recording.name));
+                            IRecordingDescriptor descriptor =
+                                    connection.getService().getAvailableRecordings().stream()
+                                            .filter(r -> r.getName().equals(recording.name))
+                                            .findFirst()
+                                            .orElseThrow(
+                                                    () ->
+                                                            new RecordingNotFoundException(
+                                                                    target.targetId(),
+                                                                    recording.name));
+                            return remoteRecordingStreamFactory.openDirect(
+                                    connection, target, descriptor);
                         });
 
-        return uploadToJFRDatasource(recordingPath);
+        return uploadToJFRDatasource(stream);
     }
 
     public Uni<String> uploadToJFRDatasource(Pair<String, String> key) throws Exception {
@@ -1456,28 +2014,20 @@ public class RecordingHelper {
         Objects.requireNonNull(key.getValue());
 
         if (usePresignedTransfer) {
-            return uploadPresignedToJFRDatasource(key.getKey(), key.getValue());
-        } else {
-            GetObjectRequest getRequest =
-                    GetObjectRequest.builder()
-                            .bucket(archiveBucket)
-                            .key(archivedRecordingKey(key))
-                            .build();
-
-            Path recordingPath = fs.createTempFile(null, null);
-            // the S3 client will create the file at this path, we just need to get a fresh temp
-            // file path but one that does not yet exist
-            fs.deleteIfExists(recordingPath);
-
-            storage.getObject(getRequest, recordingPath);
-
-            return uploadToJFRDatasource(recordingPath);
+            // the datasource cannot decode compressed objects fetched from a presigned URL itself.
+            // The same HEAD is reused to open the object if it has to be streamed instead
+            var content = headArchivedRecordingContent(key.getKey(), key.getValue());
+            if (!content.isEncoded()) {
+                return uploadPresignedToJFRDatasource(content);
+            }
+            return uploadToJFRDatasource(getArchivedRecordingStream(content));
         }
+        return uploadToJFRDatasource(getArchivedRecordingStream(key.getKey(), key.getValue()));
     }
 
-    private Uni<String> uploadPresignedToJFRDatasource(String jvmId, String filename)
+    private Uni<String> uploadPresignedToJFRDatasource(ArchivedRecordingContent content)
             throws URISyntaxException {
-        var uri = getPresignedPath(jvmId, filename);
+        var uri = getPresignedPath(content);
         return datasourceClient
                 .uploadPresigned(uri.getPath(), uri.getQuery())
                 .onItem()
@@ -1489,10 +2039,13 @@ public class RecordingHelper {
                         });
     }
 
-    private Uni<String> uploadToJFRDatasource(Path recordingPath)
-            throws URISyntaxException, InterruptedException, ExecutionException {
+    /**
+     * Stream the recording to the datasource as the multipart body is written, rather than staging
+     * it on disk first. The source stream is closed once the upload completes or fails.
+     */
+    private Uni<String> uploadToJFRDatasource(InputStream stream) {
         return datasourceClient
-                .upload(recordingPath, true)
+                .upload(stream, true)
                 .onItem()
                 .transform(
                         r -> {
@@ -1503,42 +2056,18 @@ public class RecordingHelper {
                 .eventually(
                         () -> {
                             try {
-                                fs.deleteIfExists(recordingPath);
+                                stream.close();
                             } catch (IOException e) {
                                 logger.warn(e);
                             }
                         });
     }
 
-    private Optional<Path> getRecordingCopyPath(
-            JFRConnection connection, Target target, String recordingName) throws Exception {
-        return connection.getService().getAvailableRecordings().stream()
-                .filter(recording -> recording.getName().equals(recordingName))
-                .findFirst()
-                .map(
-                        descriptor -> {
-                            try {
-                                Path tempFile = fs.createTempFile(null, null);
-                                try (var stream =
-                                        remoteRecordingStreamFactory.openDirect(
-                                                connection, target, descriptor)) {
-                                    fs.copy(stream, tempFile, StandardCopyOption.REPLACE_EXISTING);
-                                }
-                                return tempFile;
-                            } catch (Exception e) {
-                                logger.warn(e);
-                                throw new BadRequestException(e);
-                            }
-                        });
-    }
-
-    private URI getPresignedPath(String jvmId, String filename) throws URISyntaxException {
-        logger.infov("Handling presigned download request for {0}/{1}", jvmId, filename);
+    private URI getPresignedPath(ArchivedRecordingContent content) throws URISyntaxException {
+        logger.infov(
+                "Handling presigned download request for {0}/{1}", content.bucket(), content.key());
         GetObjectRequest getRequest =
-                GetObjectRequest.builder()
-                        .bucket(archiveBucket)
-                        .key(RecordingHelper.archivedRecordingKey(Pair.of(jvmId, filename)))
-                        .build();
+                GetObjectRequest.builder().bucket(content.bucket()).key(content.key()).build();
         GetObjectPresignRequest presignRequest =
                 GetObjectPresignRequest.builder()
                         .signatureDuration(Duration.ofMinutes(1))
@@ -1547,6 +2076,20 @@ public class RecordingHelper {
         return URI.create(presigner.presignGetObject(presignRequest).url().toString()).normalize();
     }
 
+    /**
+     * The storage location of an archived recording's content and its storage metadata, as
+     * resolved by {@link #headArchivedRecordingContent(String, String)}.
+     */
+    public record ArchivedRecordingContent(String bucket, String key, HeadObjectResponse head) {
+        /**
+         * @return true if the content is stored compressed, in which case its raw bytes (ex. via
+         *     a presigned URL) are not a valid JFR file
+         */
+        public boolean isEncoded() {
+            return StorageCodec.fromContentEncoding(head.contentEncoding()) != StorageCodec.NONE;
+        }
+    }
+
     public record RecordingOptions(
             String name,
             Optional<Boolean> toDisk,
@@ -1623,11 +2166,12 @@ public class RecordingHelper {
     interface DatasourceClient {
         @POST
         @jakarta.ws.rs.Path("/load")
+        @Consumes(MediaType.MULTIPART_FORM_DATA)
         Uni<Response> upload(
                 @RestForm
                         @PartType(MediaType.APPLICATION_OCTET_STREAM)
                         @PartFilename("cryostat-analysis.jfr")
-                        java.nio.file.Path file,
+                        InputStream file,
                 @RestQuery boolean overwrite);
 
         @POST
@@ -15,6 +15,7 @@
  */
 package io.cryostat.recordings;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
 
@@ -25,6 +26,7 @@ import io.cryostat.core.net.JFRConnection;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.TargetConnectionManager;
 
+import io.vertx.mutiny.core.Vertx;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
@@ -32,13 +34,18 @@ import jakarta.inject.Inject;
  * Creates {@link java.io.InputStream}s that pipe Flight Recording data from a remote target JVM.
  * This class ensures that the cached target connection is continuously marked as in use, so that
  * the {@link io.cryostat.target.TargetConnectionManager} does not prematurely evict and close the
- * connection while streaming is still underway.
+ * connection while streaming is still underway. The connection is marked once per {@link
+ * #MARK_INTERVAL} for as long as the stream is open, rather than on every read, so that it is also
+ * kept alive while a slow consumer is not reading.
  */
 @ApplicationScoped
 public class RemoteRecordingInputStreamFactory {
 
+    static final Duration MARK_INTERVAL = Duration.ofSeconds(1);
+
     @Inject TargetConnectionManager connectionManager;
     @Inject RecordingHelper recordingHelper;
+    @Inject Vertx vertx;
 
     public ProgressInputStream open(ActiveRecording recording, Duration timeout) throws Exception {
         return connectionManager.executeConnectedTask(
@@ -54,7 +61,25 @@ public class RemoteRecordingInputStreamFactory {
     public ProgressInputStream openDirect(
             JFRConnection conn, Target target, IRecordingDescriptor desc) throws Exception {
         InputStream bareStream = conn.getService().openStream(desc, false);
-        return new ProgressInputStream(
-                bareStream, n -> connectionManager.markConnectionInUse(target));
+        return new KeepAliveInputStream(bareStream, target);
+    }
+
+    private class KeepAliveInputStream extends ProgressInputStream {
+        private final long timerId;
+
+        KeepAliveInputStream(InputStream delegate, Target target) {
+            super(delegate, n -> {});
+            connectionManager.markConnectionInUse(target);
+            this.timerId =
+                    vertx.setPeriodic(
+                            MARK_INTERVAL.toMillis(),
+                            id -> connectionManager.markConnectionInUse(target));
+        }
+
+        @Override
+        public void close() throws IOException {
+            vertx.cancelTimer(timerId);
+            super.close();
+        }
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compression codec applied to archived recording objects while they are streamed into storage.
+ * The codec used for an object is recorded as the object's standard {@code Content-Encoding}, so
+ * that readers can decode it transparently regardless of the currently configured codec.
+ */
+public enum StorageCodec {
+    NONE(null),
+    GZIP("gzip"),
+    ;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String contentEncoding;
+
+    private StorageCodec(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the HTTP Content-Encoding token for this codec, or null if objects are stored as-is
+     */
+    public String contentEncoding() {
+        return contentEncoding;
+    }
+
+    public static StorageCodec fromContentEncoding(String contentEncoding) {
+        if (StringUtils.isBlank(contentEncoding)) {
+            return NONE;
+        }
+        return Arrays.asList(values()).stream()
+                .filter(c -> Objects.equals(c.contentEncoding, contentEncoding.strip()))
+                .findFirst()
+                .orElse(NONE);
+    }
+
+    /**
+     * @return a stream yielding the encoded form of the given stream's contents
+     */
+    public InputStream encode(InputStream in) {
+        switch (this) {
+            case GZIP:
+                return new GzipEncodingInputStream(in);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * @return a stream yielding the decoded form of the given encoded stream's contents
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * Pull-based gzip encoder. {@link java.util.zip.GZIPOutputStream} needs to be pushed into,
+     * which would require a copying thread or buffering the whole output to feed an upload that
+     * reads from an {@link InputStream}.
+     */
+    static class GzipEncodingInputStream extends InputStream {
+        // magic, CM=deflate, FLG=0, MTIME=0, XFL=0, OS=unknown
+        private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+        };
+
+        private final InputStream in;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] inBuf = new byte[BUFFER_SIZE];
+        private ByteBuffer pending = ByteBuffer.wrap(HEADER);
+        private boolean trailed;
+
+        GzipEncodingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xff);
+        }
+
+        /**
+         * Fills the requested range unless the end of the encoded stream is reached, since
+         * compressed output trickles out in small pieces and callers such as multipart uploads
+         * size their chunks by what a single read returns.
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            int total = 0;
+            while (total < len) {
+                if (pending.hasRemaining()) {
+                    int n = Math.min(len - total, pending.remaining());
+                    pending.get(b, off + total, n);
+                    total += n;
+                    continue;
+                }
+                if (trailed) {
+                    break;
+                }
+                if (deflater.finished()) {
+                    ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                    trailer.putInt((int) crc.getValue());
+                    trailer.putInt((int) deflater.getBytesRead());
+                    trailer.flip();
+                    pending = trailer;
+                    trailed = true;
+                    continue;
+                }
+                if (deflater.needsInput()) {
+                    int n = in.read(inBuf);
+                    if (n < 0) {
+                        deflater.finish();
+                    } else if (n > 0) {
+                        crc.update(inBuf, 0, n);
+                        deflater.setInput(inBuf, 0, n);
+                    }
+                }
+                total += deflater.deflate(b, off + total, len - total);
+            }
+            return total == 0 ? -1 : total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
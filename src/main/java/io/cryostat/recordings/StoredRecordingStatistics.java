@@ -0,0 +1,90 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecordingKey;
+import io.cryostat.recordings.ArchivedRecordings.RecordingStatistics;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * Content statistics of an archived recording, gathered while the recording is archived so that
+ * clients can sort and filter archives by their content without downloading them.
+ */
+@Entity
+@Table(indexes = {@Index(columnList = "jvmId, filename", unique = true)})
+public class StoredRecordingStatistics extends PanacheEntity {
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String jvmId;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String filename;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @NotNull
+    public RecordingStatistics statistics;
+
+    public static StoredRecordingStatistics of(
+            String jvmId, String filename, RecordingStatistics statistics) {
+        StoredRecordingStatistics stored = new StoredRecordingStatistics();
+        stored.jvmId = jvmId;
+        stored.filename = filename;
+        stored.statistics = statistics;
+        return stored;
+    }
+
+    public static Optional<StoredRecordingStatistics> findByKey(String jvmId, String filename) {
+        return find("jvmId = ?1 and filename = ?2", jvmId, filename).singleResultOptional();
+    }
+
+    /**
+     * @return the statistics stored for any of the given archived recordings, in a single query
+     */
+    public static List<StoredRecordingStatistics> listByKeys(Set<ArchivedRecordingKey> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        Set<String> jvmIds =
+                keys.stream().map(ArchivedRecordingKey::jvmId).collect(Collectors.toSet());
+        Set<String> filenames =
+                keys.stream().map(ArchivedRecordingKey::filename).collect(Collectors.toSet());
+        return StoredRecordingStatistics.<StoredRecordingStatistics>list(
+                        "jvmId in ?1 and filename in ?2", jvmIds, filenames)
+                .stream()
+                .filter(s -> keys.contains(new ArchivedRecordingKey(s.jvmId, s.filename)))
+                .toList();
+    }
+
+    public static long deleteByKey(String jvmId, String filename) {
+        return delete("jvmId = ?1 and filename = ?2", jvmId, filename);
+    }
+}
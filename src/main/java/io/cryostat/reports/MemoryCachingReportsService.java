@@ -15,7 +15,9 @@
  */
 package io.cryostat.reports;
 
+import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
@@ -99,6 +101,24 @@ class MemoryCachingReportsService implements ReportsService {
                 });
     }
 
+    @Override
+    public Uni<Map<String, AnalysisResult>> reportForArchiving(
+            String jvmId, String filename, InputStream stream) {
+        if (!quarkusCache || !memoryCache) {
+            logger.trace("cache disabled, delegating...");
+            return delegate.reportForArchiving(jvmId, filename, stream);
+        }
+        String key = RecordingHelper.archivedRecordingKey(jvmId, filename);
+        logger.tracev("reportForArchiving {0}", key);
+        // the generator is already consuming the stream, so cache the pending result right away
+        // for any request for this report which arrives before it completes
+        CompletableFuture<Map<String, AnalysisResult>> report =
+                delegate.reportForArchiving(jvmId, filename, stream)
+                        .subscribeAsCompletionStage();
+        archivedCache.as(CaffeineCache.class).put(key, report);
+        return Uni.createFrom().completionStage(report);
+    }
+
     @Override
     public Uni<Map<String, AnalysisResult>> reportFor(ActiveRecording recording) {
         return reportFor(recording, null);
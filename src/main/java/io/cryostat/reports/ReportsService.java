@@ -15,6 +15,7 @@
  */
 package io.cryostat.reports;
 
+import java.io.InputStream;
 import java.util.Map;
 
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
@@ -31,6 +32,14 @@ public interface ReportsService {
 
     Uni<Map<String, AnalysisResult>> reportFor(String jvmId, String filename);
 
+    /**
+     * Generate the report for an archived recording from a stream of its content read while it is
+     * being archived, rather than by fetching the archived recording back from storage. The
+     * report is entered into the caching layers under the archived recording's key.
+     */
+    Uni<Map<String, AnalysisResult>> reportForArchiving(
+            String jvmId, String filename, InputStream stream);
+
     static String key(ActiveRecording recording) {
         return String.format("%s/%d", recording.target.jvmId, recording.id);
     }
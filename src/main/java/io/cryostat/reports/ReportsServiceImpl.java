@@ -30,13 +30,13 @@ import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.core.util.RuleFilterParser;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.RecordingHelper.ArchivedRecordingContent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.InternalServerErrorException;
-import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.logging.Logger;
@@ -68,9 +68,6 @@ class ReportsServiceImpl implements ReportsService {
     @ConfigProperty(name = ConfigProperties.REPORTS_USE_PRESIGNED_TRANSFER)
     boolean usePresignedTransfer;
 
-    @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
-    String archiveBucket;
-
     @ConfigProperty(name = ConfigProperties.STORAGE_EXT_URL)
     Optional<String> externalStorageUrl;
 
@@ -115,10 +112,20 @@ class ReportsServiceImpl implements ReportsService {
                 logger.tracev("inprocess reportFor archived recording {0} {1}", jvmId, filename);
                 return process(stream, filter).eventually(safeClose(stream));
             } else if (usePresignedSidecar()) {
-                logger.tracev(
-                        "sidecar reportFor presigned archived recording {0} {1}", jvmId, filename);
-                var uri = getPresignedPath(jvmId, filename);
-                return sidecar.generatePresigned(uri.getPath(), uri.getQuery(), filter);
+                // the sidecar cannot decode compressed objects fetched from a presigned URL itself.
+                // The same HEAD is reused to open the object if it has to be streamed instead
+                var content = helper.headArchivedRecordingContent(jvmId, filename);
+                if (!content.isEncoded()) {
+                    logger.tracev(
+                            "sidecar reportFor presigned archived recording {0} {1}",
+                            jvmId,
+                            filename);
+                    var uri = getPresignedPath(content);
+                    return sidecar.generatePresigned(uri.getPath(), uri.getQuery(), filter);
+                }
+                InputStream stream = helper.getArchivedRecordingStream(content);
+                logger.tracev("sidecar reportFor archived recording {0} {1}", jvmId, filename);
+                return fireRequest(stream, filter).eventually(safeClose(stream));
             } else {
                 InputStream stream = helper.getArchivedRecordingStream(jvmId, filename);
                 logger.tracev("sidecar reportFor archived recording {0} {1}", jvmId, filename);
@@ -132,6 +139,14 @@ class ReportsServiceImpl implements ReportsService {
         }
     }
 
+    @Override
+    public Uni<Map<String, AnalysisResult>> reportForArchiving(
+            String jvmId, String filename, InputStream stream) {
+        // the stream is only available in this process, so it is never handed to a sidecar
+        logger.tracev("inprocess reportFor archiving recording {0} {1}", jvmId, filename);
+        return process(stream, null).eventually(safeClose(stream));
+    }
+
     @Override
     public Uni<Map<String, AnalysisResult>> reportFor(ActiveRecording recording) {
         return reportFor(recording, null);
@@ -187,13 +202,11 @@ class ReportsServiceImpl implements ReportsService {
         return useSidecar() && usePresignedTransfer;
     }
 
-    private URI getPresignedPath(String jvmId, String filename) throws URISyntaxException {
-        logger.infov("Handling presigned download request for {0}/{1}", jvmId, filename);
+    private URI getPresignedPath(ArchivedRecordingContent content) throws URISyntaxException {
+        logger.infov(
+                "Handling presigned download request for {0}/{1}", content.bucket(), content.key());
         GetObjectRequest getRequest =
-                GetObjectRequest.builder()
-                        .bucket(archiveBucket)
-                        .key(RecordingHelper.archivedRecordingKey(Pair.of(jvmId, filename)))
-                        .build();
+                GetObjectRequest.builder().bucket(content.bucket()).key(content.key()).build();
         GetObjectPresignRequest presignRequest =
                 GetObjectPresignRequest.builder()
                         .signatureDuration(Duration.ofMinutes(1))
@@ -17,17 +17,18 @@ package io.cryostat.reports;
 
 import java.util.Optional;
 
+import io.cryostat.AsyncStorage;
 import io.cryostat.ConfigProperties;
 import io.cryostat.recordings.ActiveRecordings;
 import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
 import io.cryostat.recordings.RecordingHelper;
 
 import io.quarkus.vertx.ConsumeEvent;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
-import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
@@ -41,26 +42,30 @@ class StorageCachingReportsListener {
     @ConfigProperty(name = ConfigProperties.ARCHIVED_REPORTS_STORAGE_CACHE_NAME)
     String bucket;
 
-    @Inject S3Client storage;
+    @Inject AsyncStorage storage;
 
     @Inject Logger logger;
 
     @ConsumeEvent(value = ActiveRecordings.ARCHIVED_RECORDING_DELETED)
-    public void handleArchivedRecordingDeletion(ArchivedRecording recording) {
+    public Uni<Void> handleArchivedRecordingDeletion(ArchivedRecording recording) {
         if (!enabled) {
-            return;
+            return Uni.createFrom().voidItem();
         }
-        Optional.ofNullable(recording.metadata().labels().get("jvmId"))
-                .ifPresent(
+        return Optional.ofNullable(recording.metadata().labels().get("jvmId"))
+                .map(
                         jvmId -> {
                             var key = RecordingHelper.archivedRecordingKey(jvmId, recording.name());
                             logger.tracev("Picked up deletion of archived recording: {0}", key);
                             var req = DeleteObjectRequest.builder().bucket(bucket).key(key).build();
-                            try {
-                                storage.deleteObject(req);
-                            } catch (S3Exception e) {
-                                logger.warn(e);
-                            }
-                        });
+                            return storage.deleteObject(req)
+                                    .replaceWithVoid()
+                                    .onFailure(S3Exception.class)
+                                    .recoverWithUni(
+                                            e -> {
+                                                logger.warn(e);
+                                                return Uni.createFrom().voidItem();
+                                            });
+                        })
+                .orElseGet(() -> Uni.createFrom().voidItem());
     }
 }
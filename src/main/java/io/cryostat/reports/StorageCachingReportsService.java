@@ -15,13 +15,14 @@
  */
 package io.cryostat.reports;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.CompletionException;
 
+import io.cryostat.AsyncStorage;
 import io.cryostat.ConfigProperties;
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.recordings.ActiveRecording;
@@ -41,8 +42,6 @@ import jakarta.enterprise.inject.Any;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
@@ -75,7 +74,7 @@ class StorageCachingReportsService implements ReportsService {
     @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
     Duration timeout;
 
-    @Inject S3Client storage;
+    @Inject AsyncStorage storage;
     @Inject ObjectMapper mapper;
 
     @Inject @Delegate @Any ReportsService delegate;
@@ -110,62 +109,69 @@ class StorageCachingReportsService implements ReportsService {
                         });
     }
 
+    @Override
+    public Uni<Map<String, AnalysisResult>> reportForArchiving(
+            String jvmId, String filename, InputStream stream) {
+        if (!enabled) {
+            logger.trace("cache disabled, delegating...");
+            return delegate.reportForArchiving(jvmId, filename, stream);
+        }
+        var key = RecordingHelper.archivedRecordingKey(jvmId, filename);
+        logger.tracev("reportForArchiving {0}", key);
+        return putStorage(key, delegate.reportForArchiving(jvmId, filename, stream));
+    }
+
     private Uni<Boolean> checkStorage(String key) {
-        return Uni.createFrom()
-                .item(
-                        () -> {
-                            var req =
-                                    HeadObjectRequest.builder()
-                                            .bucket(bucket)
-                                            .key(suffixKey(key))
-                                            .build();
-                            try {
-                                return storage.headObject(req).sdkHttpResponse().isSuccessful();
-                            } catch (NoSuchKeyException nske) {
-                                return false;
-                            }
-                        });
+        var req = HeadObjectRequest.builder().bucket(bucket).key(suffixKey(key)).build();
+        return storage.headObject(req)
+                .map(res -> res.sdkHttpResponse().isSuccessful())
+                .onFailure(NoSuchKeyException.class)
+                .recoverWithItem(false);
     }
 
     private Uni<Map<String, AnalysisResult>> putStorage(
             String key, Uni<Map<String, AnalysisResult>> payload) {
         return payload.onItem()
-                .invoke(
+                .call(
                         map -> {
+                            byte[] str;
                             try {
-                                var str = mapper.writeValueAsString(map);
-                                var req =
-                                        PutObjectRequest.builder()
-                                                .bucket(bucket)
-                                                .key(suffixKey(key))
-                                                .contentType(HttpMimeType.JSON.mime())
-                                                .expires(Instant.now().plus(expiry))
-                                                .build();
-                                var res = storage.putObject(req, RequestBody.fromString(str));
-                                var sc = res.sdkHttpResponse().statusCode();
-                                if (!HttpStatusCodeIdentifier.isSuccessCode(sc)) {
-                                    throw new CompletionException(
-                                            String.format("Bad S3 report storage response: %d", sc),
-                                            null);
-                                }
+                                str = mapper.writeValueAsBytes(map);
                             } catch (JsonProcessingException jpe) {
-                                throw new CompletionException(jpe);
+                                return Uni.createFrom().failure(new CompletionException(jpe));
                             }
-                        });
-    }
-
-    private Uni<Map<String, AnalysisResult>> getStorage(String key) {
-        return Uni.createFrom()
-                .item(
-                        () -> {
                             var req =
-                                    GetObjectRequest.builder()
+                                    PutObjectRequest.builder()
                                             .bucket(bucket)
                                             .key(suffixKey(key))
+                                            .contentType(HttpMimeType.JSON.mime())
+                                            .expires(Instant.now().plus(expiry))
                                             .build();
-                            try (var res = new BufferedInputStream(storage.getObject(req))) {
+                            return storage.putObject(req, str)
+                                    .invoke(
+                                            res -> {
+                                                var sc = res.sdkHttpResponse().statusCode();
+                                                if (!HttpStatusCodeIdentifier.isSuccessCode(sc)) {
+                                                    throw new CompletionException(
+                                                            String.format(
+                                                                    "Bad S3 report storage"
+                                                                            + " response: %d",
+                                                                    sc),
+                                                            null);
+                                                }
+                                            });
+                        });
+    }
+
+    private Uni<Map<String, AnalysisResult>> getStorage(String key) {
+        var req = GetObjectRequest.builder().bucket(bucket).key(suffixKey(key)).build();
+        return storage.getObjectAsBytes(req)
+                .map(
+                        res -> {
+                            try {
                                 return mapper.readValue(
-                                        res, new TypeReference<Map<String, AnalysisResult>>() {});
+                                        res.asByteArrayUnsafe(),
+                                        new TypeReference<Map<String, AnalysisResult>>() {});
                             } catch (IOException ioe) {
                                 throw new CompletionException(ioe);
                             }
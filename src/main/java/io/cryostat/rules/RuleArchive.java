@@ -0,0 +1,80 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import java.util.List;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Retention index entry for an archived recording copied out of a target by an {@link
+ * io.cryostat.rules.Rule}'s periodic archival. Entries are grouped by the rule's recording name and
+ * the source target's JVM ID, so that pruning the oldest archives for a (rule, target) pair does
+ * not require listing the archive bucket.
+ *
+ * @see io.cryostat.rules.ScheduledArchiveJob
+ */
+@Entity
+@Table(
+        indexes = {
+            @Index(columnList = "recordingName, jvmId"),
+            @Index(columnList = "jvmId, filename")
+        })
+public class RuleArchive extends PanacheEntity {
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String recordingName;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String jvmId;
+
+    @Column(nullable = false, updatable = false)
+    @NotBlank
+    public String filename;
+
+    public long archivedTime;
+
+    public static RuleArchive of(
+            String recordingName, String jvmId, String filename, long archivedTime) {
+        RuleArchive archive = new RuleArchive();
+        archive.recordingName = recordingName;
+        archive.jvmId = jvmId;
+        archive.filename = filename;
+        archive.archivedTime = archivedTime;
+        return archive;
+    }
+
+    /**
+     * @return the retained archives for the given rule and target JVM, oldest first
+     */
+    public static List<RuleArchive> listRetained(Rule rule, String jvmId) {
+        return list(
+                "recordingName = ?1 and jvmId = ?2 order by archivedTime, id",
+                rule.getRecordingName(),
+                jvmId);
+    }
+
+    public static long deleteByKey(String jvmId, String filename) {
+        return delete("jvmId = ?1 and filename = ?2", jvmId, filename);
+    }
+}
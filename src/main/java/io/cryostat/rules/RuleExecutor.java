@@ -28,10 +28,11 @@ import java.util.stream.Collectors;
 import org.openjdk.jmc.common.unit.QuantityConversionException;
 
 import io.cryostat.ConfigProperties;
-import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.libcryostat.templates.Template;
 import io.cryostat.libcryostat.templates.TemplateType;
 import io.cryostat.recordings.ActiveRecording;
+import io.cryostat.recordings.ActiveRecordings;
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
 import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.recordings.RecordingHelper.RecordingOptions;
 import io.cryostat.recordings.RecordingHelper.RecordingReplace;
@@ -75,7 +76,7 @@ public class RuleExecutor {
 
     @Inject Logger logger;
     @Inject RecordingHelper recordingHelper;
-    @Inject MatchExpressionEvaluator evaluator;
+    @Inject RuleTargetIndex index;
     @Inject Scheduler quartz;
 
     @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
@@ -161,6 +162,12 @@ public class RuleExecutor {
         }
     }
 
+    @ConsumeEvent(value = ActiveRecordings.ARCHIVED_RECORDING_DELETED, blocking = true)
+    @Transactional
+    void onMessage(ArchivedRecording recording) {
+        RuleArchive.deleteByKey(recording.jvmId(), recording.name());
+    }
+
     @ConsumeEvent(value = Rule.RULE_ADDRESS, blocking = true)
     @Transactional
     public void handleRuleModification(RuleEvent event) {
@@ -173,6 +180,7 @@ public class RuleExecutor {
                 break;
             case DELETED:
                 cancelTasksForRule(rule);
+                index.remove(rule);
                 break;
             default:
                 break;
@@ -183,10 +191,7 @@ public class RuleExecutor {
     @Transactional
     public void handleRuleRecordingCleanup(Rule rule) {
         cancelTasksForRule(rule);
-        var targets =
-                evaluator.getMatchedTargets(rule.matchExpression).stream()
-                        .collect(Collectors.toList());
-        for (var target : targets) {
+        for (var target : index.getMatchedTargets(rule)) {
             recordingHelper
                     .getActiveRecording(
                             target, r -> Objects.equals(r.name, rule.getRecordingName()))
@@ -207,7 +212,7 @@ public class RuleExecutor {
     private void cancelTasksForRule(Rule rule) {
         if (rule.isArchiver()) {
             List<String> targets =
-                    evaluator.getMatchedTargets(rule.matchExpression).stream()
+                    index.getMatchedTargets(rule).stream()
                             .map(t -> t.jvmId)
                             .collect(Collectors.toList());
             for (var jk : jobs) {
@@ -16,19 +16,23 @@
 package io.cryostat.rules;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 import io.cryostat.ConfigProperties;
-import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.rules.Rule.RuleEvent;
@@ -49,7 +53,6 @@ import jakarta.transaction.Transactional;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
-import org.projectnessie.cel.tools.ScriptException;
 import org.quartz.SchedulerException;
 
 /**
@@ -66,62 +69,46 @@ import org.quartz.SchedulerException;
 public class RuleService {
 
     @Inject Logger logger;
-    @Inject MatchExpressionEvaluator evaluator;
     @Inject RecordingHelper recordingHelper;
+    @Inject RuleTargetIndex index;
     @Inject EventBus bus;
 
     @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
     Duration connectionFailedTimeout;
 
+    @ConfigProperty(name = ConfigProperties.RULES_ACTIVATION_CONCURRENCY)
+    int activationConcurrency;
+
     private final BlockingQueue<ActivationAttempt> activations =
             new PriorityBlockingQueue<>(255, Comparator.comparing(t -> t.attempts.get()));
     private final ExecutorService activator = Executors.newSingleThreadExecutor();
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    // attempts waiting for an in-flight activation on the same target to complete, keyed by target
+    // ID. A target with an entry here is busy, even if its queue of waiting attempts is empty.
+    private final Map<Long, Deque<ActivationAttempt>> lanes = new HashMap<>();
+    private Semaphore permits;
 
     void onStart(@Observes StartupEvent ev) {
         logger.trace("RuleService started");
+        permits = new Semaphore(Math.max(1, activationConcurrency));
         activator.submit(
                 () -> {
                     while (!activator.isShutdown()) {
-                        ActivationAttempt attempt = null;
                         try {
-                            attempt = activations.take();
-                            logger.tracev(
-                                    "Attempting to activate rule \"{0}\" for target {1} -"
-                                            + " attempt #{2}",
-                                    attempt.rule.name, attempt.target.connectUrl, attempt.attempts);
-                            bus.requestAndAwait(RuleExecutor.class.getName(), attempt);
+                            ActivationAttempt attempt = activations.take();
+                            synchronized (lanes) {
+                                Deque<ActivationAttempt> lane = lanes.get(attempt.target.id);
+                                if (lane != null) {
+                                    lane.add(attempt);
+                                    continue;
+                                }
+                                lanes.put(attempt.target.id, new ArrayDeque<>());
+                            }
+                            dispatch(attempt);
                         } catch (InterruptedException ie) {
                             logger.trace(ie);
                             break;
                         } catch (Exception e) {
-                            if (attempt != null) {
-                                final ActivationAttempt fAttempt = attempt;
-                                int count = attempt.incrementAndGet();
-                                int delay = (int) Math.pow(2, count);
-                                TimeUnit unit = TimeUnit.SECONDS;
-                                int limit = 5;
-                                if (count < limit) {
-                                    logger.debugv(
-                                            "Rule \"{0}\" activation attempt #{1} for target"
-                                                    + " {2} failed, rescheduling in {3}{4} ...",
-                                            attempt.rule.name,
-                                            count - 1,
-                                            attempt.target.connectUrl,
-                                            delay,
-                                            unit);
-                                    Infrastructure.getDefaultWorkerPool()
-                                            .schedule(() -> activations.add(fAttempt), delay, unit);
-                                } else {
-                                    logger.errorv(
-                                            "Rule \"{0}\" activation attempt #{1} failed for"
-                                                    + " target {2} - limit ({3}) reached! Will not"
-                                                    + " retry...",
-                                            attempt.rule.name,
-                                            count,
-                                            attempt.target.connectUrl,
-                                            limit);
-                                }
-                            }
                             logger.error(e);
                         }
                     }
@@ -135,8 +122,71 @@ public class RuleService {
     }
 
     void onStop(@Observes ShutdownEvent evt) throws SchedulerException {
-        activator.shutdown();
+        activator.shutdownNow();
+        workers.shutdownNow();
         activations.clear();
+        synchronized (lanes) {
+            lanes.clear();
+        }
+    }
+
+    private void dispatch(ActivationAttempt attempt) throws InterruptedException {
+        permits.acquire();
+        try {
+            workers.submit(() -> activate(attempt));
+        } catch (RejectedExecutionException ree) {
+            permits.release();
+            throw ree;
+        }
+    }
+
+    private void activate(ActivationAttempt attempt) {
+        try {
+            logger.tracev(
+                    "Attempting to activate rule \"{0}\" for target {1} - attempt #{2}",
+                    attempt.rule.name, attempt.target.connectUrl, attempt.attempts);
+            bus.requestAndAwait(RuleExecutor.class.getName(), attempt);
+        } catch (Exception e) {
+            retry(attempt);
+            logger.error(e);
+        } finally {
+            permits.release();
+        }
+        ActivationAttempt next;
+        synchronized (lanes) {
+            Deque<ActivationAttempt> lane = lanes.get(attempt.target.id);
+            next = lane == null ? null : lane.poll();
+            if (next == null) {
+                lanes.remove(attempt.target.id);
+            }
+        }
+        if (next != null) {
+            try {
+                dispatch(next);
+            } catch (InterruptedException | RejectedExecutionException e) {
+                logger.trace(e);
+            }
+        }
+    }
+
+    private void retry(ActivationAttempt attempt) {
+        int count = attempt.incrementAndGet();
+        int delay = (int) Math.pow(2, count);
+        TimeUnit unit = TimeUnit.SECONDS;
+        int limit = 5;
+        if (count < limit) {
+            logger.debugv(
+                    "Rule \"{0}\" activation attempt #{1} for target {2} failed, rescheduling in"
+                            + " {3}{4} ...",
+                    attempt.rule.name, count - 1, attempt.target.connectUrl, delay, unit);
+            Infrastructure.getDefaultWorkerPool()
+                    .schedule(() -> activations.add(attempt), delay, unit);
+        } else {
+            logger.errorv(
+                    "Rule \"{0}\" activation attempt #{1} failed for target {2} - limit ({3})"
+                            + " reached! Will not retry...",
+                    attempt.rule.name, count, attempt.target.connectUrl, limit);
+        }
     }
 
     @ConsumeEvent(value = Target.TARGET_JVM_DISCOVERY, blocking = true)
@@ -145,12 +195,14 @@ public class RuleService {
             case MODIFIED:
             // fall-through
             case FOUND:
+                List<Rule> rules = index.update(event.serviceRef());
                 if (StringUtils.isBlank(event.serviceRef().jvmId)) {
                     break;
                 }
-                applyRulesToTarget(event.serviceRef());
+                applyRulesToTarget(event.serviceRef(), rules);
                 break;
             case LOST:
+                index.remove(event.serviceRef());
                 resetActivations(event.serviceRef());
                 break;
             default:
@@ -178,10 +230,7 @@ public class RuleService {
     @ConsumeEvent(value = Rule.RULE_ADDRESS + "?clean", blocking = true)
     @Transactional
     public void handleRuleRecordingCleanup(Rule rule) {
-        var targets =
-                evaluator.getMatchedTargets(rule.matchExpression).stream()
-                        .collect(Collectors.toList());
-        for (var target : targets) {
+        for (var target : index.getMatchedTargets(rule)) {
             recordingHelper
                     .getActiveRecording(
                             target, r -> Objects.equals(r.name, rule.getRecordingName()))
@@ -200,43 +249,34 @@ public class RuleService {
     }
 
     private void resetActivations(Rule rule) {
-        Iterator<ActivationAttempt> it = activations.iterator();
-        while (it.hasNext()) {
-            ActivationAttempt attempt = it.next();
-            if (attempt.rule.equals(rule)) {
-                it.remove();
-            }
+        activations.removeIf(attempt -> attempt.rule.equals(rule));
+        synchronized (lanes) {
+            lanes.values().forEach(lane -> lane.removeIf(attempt -> attempt.rule.equals(rule)));
         }
     }
 
     private void resetActivations(Target target) {
-        Iterator<ActivationAttempt> it = activations.iterator();
-        while (it.hasNext()) {
-            ActivationAttempt attempt = it.next();
-            if (attempt.target.equals(target)) {
-                it.remove();
+        activations.removeIf(attempt -> attempt.target.equals(target));
+        synchronized (lanes) {
+            Deque<ActivationAttempt> lane = lanes.get(target.id);
+            if (lane != null) {
+                lane.clear();
             }
         }
     }
 
-    void applyRulesToTarget(Target target) {
+    void applyRulesToTarget(Target target, List<Rule> matchedRules) {
         resetActivations(target);
-        for (var rule : Rule.<Rule>find("enabled", true).list()) {
-            try {
-                if (!evaluator.applies(rule.matchExpression, target)) {
-                    continue;
-                }
+        for (var rule : matchedRules) {
+            if (rule.enabled) {
                 activations.add(new ActivationAttempt(rule, target));
-            } catch (ScriptException se) {
-                logger.error(se);
             }
         }
     }
 
     void applyRuleToMatchingTargets(Rule rule) {
         resetActivations(rule);
-        var targets = evaluator.getMatchedTargets(rule.matchExpression);
-        for (var target : targets) {
+        for (var target : index.getMatchedTargets(rule)) {
             activations.add(new ActivationAttempt(rule, target));
         }
     }
@@ -0,0 +1,210 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.cryostat.expressions.MatchExpression;
+import io.cryostat.expressions.MatchExpressionEvaluator;
+import io.cryostat.rules.Rule.RuleEvent;
+import io.cryostat.targets.Target;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.vertx.ConsumeEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.projectnessie.cel.tools.ScriptException;
+
+/**
+ * Maintains the table of which {@link io.cryostat.targets.Target}s each {@link
+ * io.cryostat.rules.Rule}'s match expression applies to. The table is updated incrementally: a
+ * target appearing or changing is evaluated against each rule, and a rule being created or having
+ * its match expression changed is evaluated against each target, so that discovery churn does not
+ * require re-evaluating every rule against every target. A rule's row is built on first lookup.
+ *
+ * <p>The rules' match expressions are loaded once and then kept current from rule events, so that
+ * discovery events do not query every rule. Rows are concurrent sets which target changes update in
+ * place. A row is published as soon as it is built, and the target changes made while it was being
+ * built are then replayed onto it from a bounded log, so that discovery churn does not prevent rows
+ * from being kept. Database queries are made outside of any lock.
+ */
+@ApplicationScoped
+class RuleTargetIndex {
+
+    static final int CHANGE_LOG_SIZE = 4096;
+
+    @Inject Logger logger;
+    @Inject MatchExpressionEvaluator evaluator;
+
+    // rule ID -> match expression
+    private final Map<Long, MatchExpression> expressions = new ConcurrentHashMap<>();
+    private volatile boolean expressionsLoaded;
+    // rule ID -> matched target IDs, along with the match expression they were evaluated against
+    private final Map<Long, Row> rules = new ConcurrentHashMap<>();
+    // incremented by every target change
+    private final AtomicLong generation = new AtomicLong();
+    // the most recent target changes by generation, replayed onto rows built concurrently with them
+    private final ConcurrentSkipListMap<Long, Change> changes = new ConcurrentSkipListMap<>();
+
+    @ConsumeEvent(value = Rule.RULE_ADDRESS, blocking = true)
+    void onMessage(RuleEvent event) {
+        Rule rule = event.rule();
+        switch (event.category()) {
+            case CREATED:
+            // fall-through
+            case UPDATED:
+                expressions.put(rule.id, rule.matchExpression);
+                break;
+            case DELETED:
+                expressions.remove(rule.id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Evaluate every rule against the given target and update the rows of the rules already in the
+     * table.
+     *
+     * @return all rules with a match expression applying to the target
+     */
+    List<Rule> update(Target target) {
+        loadExpressions();
+        Set<Long> matchedIds = new HashSet<>();
+        for (var e : expressions.entrySet()) {
+            if (applies(e.getValue(), target)) {
+                matchedIds.add(e.getKey());
+            }
+        }
+        record(new Change(target, false));
+        rules.forEach((ruleId, row) -> row.apply(target.id, matchedIds.contains(ruleId)));
+        if (matchedIds.isEmpty()) {
+            return List.of();
+        }
+        return QuarkusTransaction.joiningExisting()
+                .call(() -> Rule.<Rule>list("id in ?1", matchedIds));
+    }
+
+    /** Drop the given target from every rule's row. */
+    void remove(Target target) {
+        record(new Change(target, true));
+        rules.values().forEach(row -> row.apply(target.id, false));
+    }
+
+    /**
+     * @return the targets the given rule's match expression applies to, with at most one target
+     *     per JVM ID
+     */
+    List<Target> getMatchedTargets(Rule rule) {
+        Row row = rules.get(rule.id);
+        if (row == null || !Objects.equals(row.script, rule.matchExpression.script)) {
+            row = build(rule);
+        }
+        Set<Long> targetIds = Set.copyOf(row.targetIds);
+        if (targetIds.isEmpty()) {
+            return List.of();
+        }
+        Set<String> jvmIds = new HashSet<>();
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                Target.<Target>list("id in ?1", targetIds).stream()
+                                        .filter(t -> jvmIds.add(t.jvmId))
+                                        .toList());
+    }
+
+    /** Drop the given rule's row, so that it is rebuilt if the rule is looked up again. */
+    void remove(Rule rule) {
+        rules.remove(rule.id);
+    }
+
+    private Row build(Rule rule) {
+        long observed = generation.get();
+        List<Target> targets =
+                QuarkusTransaction.joiningExisting().call(() -> Target.<Target>listAll());
+        Row row = new Row(rule.matchExpression.script, ConcurrentHashMap.newKeySet());
+        for (Target target : targets) {
+            if (applies(rule.matchExpression, target)) {
+                row.targetIds.add(target.id);
+            }
+        }
+        // publish the row first, so that changes from here on are applied to it directly, then
+        // replay the changes which may have been missed while it was being built
+        rules.put(rule.id, row);
+        synchronized (row) {
+            Map.Entry<Long, Change> oldest = changes.firstEntry();
+            if (oldest != null && oldest.getKey() > observed + 1) {
+                // more changes were made than the log retains, so the row only answers this
+                // lookup and is rebuilt by the next one
+                rules.remove(rule.id, row);
+                return row;
+            }
+            for (Change change : changes.tailMap(observed, false).values()) {
+                row.apply(
+                        change.target().id,
+                        !change.removed() && applies(rule.matchExpression, change.target()));
+            }
+        }
+        return row;
+    }
+
+    private void record(Change change) {
+        long gen = generation.incrementAndGet();
+        changes.put(gen, change);
+        changes.headMap(gen - CHANGE_LOG_SIZE).clear();
+    }
+
+    private void loadExpressions() {
+        if (expressionsLoaded) {
+            return;
+        }
+        List<Rule> all = QuarkusTransaction.joiningExisting().call(() -> Rule.<Rule>listAll());
+        all.forEach(r -> expressions.putIfAbsent(r.id, r.matchExpression));
+        expressionsLoaded = true;
+    }
+
+    private boolean applies(MatchExpression expression, Target target) {
+        try {
+            return evaluator.applies(expression, target);
+        } catch (ScriptException e) {
+            logger.error("Error while processing expression: " + expression, e);
+            return false;
+        }
+    }
+
+    private record Change(Target target, boolean removed) {}
+
+    private record Row(String script, Set<Long> targetIds) {
+        // synchronized with the replay of changes onto a newly built row, so that a change applied
+        // directly is never overwritten by the replay of an older change to the same target
+        synchronized void apply(Long targetId, boolean matched) {
+            if (matched) {
+                targetIds.add(targetId);
+            } else {
+                targetIds.remove(targetId);
+            }
+        }
+    }
+}
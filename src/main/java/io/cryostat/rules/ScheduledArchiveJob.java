@@ -15,25 +15,25 @@
  */
 package io.cryostat.rules;
 
-import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import io.cryostat.ConfigProperties;
 import io.cryostat.recordings.ActiveRecording;
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
 import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.targets.Target;
 
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 /**
  * Perform recording archival by pulling data stream from a target and copying it into a file in S3
@@ -53,9 +53,6 @@ class ScheduledArchiveJob implements Job {
     @Inject RecordingHelper recordingHelper;
     @Inject Logger logger;
 
-    @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
-    String archiveBucket;
-
     @Override
     @Transactional
     public void execute(JobExecutionContext ctx) throws JobExecutionException {
@@ -74,47 +71,63 @@ class ScheduledArchiveJob implements Job {
                             target.connectUrl, recordingId));
         }
 
-        Queue<String> previousRecordings = new ArrayDeque<>(rule.preservedArchives);
-
-        initPreviousRecordings(target, rule, previousRecordings);
-        while (previousRecordings.size() >= rule.preservedArchives) {
-            pruneArchive(target, previousRecordings, previousRecordings.remove());
+        List<RuleArchive> retained = RuleArchive.listRetained(rule, target.jvmId);
+        if (retained.isEmpty()) {
+            // nothing indexed yet for this rule and target. Seed the index from any archives the
+            // rule already left in storage, for example from before the index existed
+            indexArchives(rule, target);
+            retained = RuleArchive.listRetained(rule, target.jvmId);
+        }
+        Queue<RuleArchive> previousRecordings = new ArrayDeque<>(retained);
+        while (!previousRecordings.isEmpty()
+                && previousRecordings.size() >= rule.preservedArchives) {
+            pruneArchive(previousRecordings.remove());
         }
 
         try {
-            previousRecordings.add(recordingHelper.archiveRecording(recording).name());
+            ArchivedRecording archived = recordingHelper.archiveRecording(recording);
+            RuleArchive.of(
+                            rule.getRecordingName(),
+                            archived.jvmId(),
+                            archived.name(),
+                            archived.archivedTime())
+                    .persist();
         } catch (Exception e) {
             throw new JobExecutionException(e);
         }
     }
 
-    void initPreviousRecordings(Target target, Rule rule, Queue<String> previousRecordings) {
-        recordingHelper.listArchivedRecordingObjects().stream()
+    void indexArchives(Rule rule, Target target) {
+        recordingHelper.listArchivedRecordingObjects(target.jvmId).stream()
+                .filter(item -> item.key().strip().startsWith(target.jvmId + "/"))
                 .sorted((a, b) -> a.lastModified().compareTo(b.lastModified()))
                 .forEach(
                         item -> {
-                            String path = item.key().strip();
-                            String[] parts = path.split("/");
-                            String jvmId = parts[0];
-                            if (jvmId.equals(target.jvmId)) {
-                                String filename = parts[1];
-                                Matcher m = RECORDING_FILENAME_PATTERN.matcher(filename);
-                                if (m.matches()) {
-                                    String recordingName = m.group(2);
-                                    if (Objects.equals(recordingName, rule.getRecordingName())) {
-                                        previousRecordings.add(filename);
-                                    }
-                                }
+                            String filename = item.key().strip().split("/")[1];
+                            Matcher m = RECORDING_FILENAME_PATTERN.matcher(filename);
+                            if (m.matches()
+                                    && Objects.equals(m.group(2), rule.getRecordingName())) {
+                                RuleArchive.of(
+                                                rule.getRecordingName(),
+                                                target.jvmId,
+                                                filename,
+                                                item.lastModified().getEpochSecond())
+                                        .persist();
                             }
                         });
     }
 
-    void pruneArchive(Target target, Queue<String> previousRecordings, String filename) {
+    void pruneArchive(RuleArchive archive) {
+        // the index row is removed by RuleExecutor when the deletion event is published, so that
+        // there is a single path removing rows for deleted archives. If the deletion fails the row
+        // is kept and the archive is pruned again on the next run
         try {
-            recordingHelper.deleteArchivedRecording(target.jvmId, filename);
-        } catch (IOException e) {
+            recordingHelper.deleteArchivedRecording(archive.jvmId, archive.filename);
+        } catch (NoSuchKeyException e) {
+            // already gone from storage, so no deletion event will follow
+            RuleArchive.deleteByKey(archive.jvmId, archive.filename);
+        } catch (Exception e) {
             logger.error(e);
         }
-        previousRecordings.remove(filename);
     }
 }
@@ -26,9 +26,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.discovery.NodeType.BaseNodeType;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.util.URIUtil;
 import io.cryostat.ws.MessagingServer;
@@ -150,12 +150,28 @@ public class Target extends PanacheEntity {
         return find("jvmId", jvmId).firstResultOptional();
     }
 
+    /**
+     * Find all Targets which belong to the named discovery Realm, ie. whose discovery nodes are
+     * descendants of that Realm's node in the discovery tree. The tree is walked by a recursive
+     * query within the database so that the cost is proportional to the size of the Realm rather
+     * than the number of Targets overall.
+     */
+    @SuppressWarnings("unchecked")
     public static List<Target> findByRealm(String realm) {
-        List<Target> targets = findAll().list();
-
-        return targets.stream()
-                .filter((t) -> realm.equals(t.annotations.cryostat().get("REALM")))
-                .collect(Collectors.toList());
+        return getEntityManager()
+                .createNativeQuery(
+                        """
+                        with recursive subtree(id) as (
+                            select id from DiscoveryNode where nodeType = :nodeType and name = :realm
+                            union all
+                            select c.id from DiscoveryNode c join subtree s on c.parentNode = s.id
+                        )
+                        select t.* from Target t where t.discoveryNode in (select id from subtree)
+                        """,
+                        Target.class)
+                .setParameter("nodeType", BaseNodeType.REALM.getKind())
+                .setParameter("realm", realm)
+                .getResultList();
     }
 
     public ActiveRecording getRecordingById(long remoteId) {
@@ -0,0 +1,170 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary;
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary.ClassHistogramEntry;
+import io.cryostat.diagnostic.Diagnostics.HeapDumpSummary.LargeObject;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HeapDumpParserTest {
+
+    static final int ID_SIZE = 8;
+
+    @TempDir Path dir;
+
+    @Test
+    void testSummarize() throws IOException {
+        ByteArrayOutputStream heap = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(heap);
+        // ROOT_STICKY_CLASS
+        h.writeByte(0x05);
+        h.writeLong(0x100);
+        // CLASS_DUMP for Foo, with one constant, one static and two instance fields
+        h.writeByte(0x20);
+        h.writeLong(0x100);
+        h.writeInt(0);
+        for (int i = 0; i < 6; i++) {
+            h.writeLong(0);
+        }
+        h.writeInt(12);
+        h.writeShort(1);
+        h.writeShort(0);
+        h.writeByte(10);
+        h.writeInt(42);
+        h.writeShort(1);
+        h.writeLong(0x1);
+        h.writeByte(2);
+        h.writeLong(0);
+        h.writeShort(2);
+        h.writeLong(0x1);
+        h.writeByte(10);
+        h.writeLong(0x1);
+        h.writeByte(11);
+        // three Foo instances with 12 bytes of fields: 16 header + 12 -> 32 aligned
+        for (int i = 0; i < 3; i++) {
+            h.writeByte(0x21);
+            h.writeLong(0x1000 + i);
+            h.writeInt(0);
+            h.writeLong(0x100);
+            h.writeInt(12);
+            h.write(new byte[12]);
+        }
+        // Foo[] of 4 elements: 16 header + 4 length + 32 -> 56
+        h.writeByte(0x22);
+        h.writeLong(0x2000);
+        h.writeInt(0);
+        h.writeInt(4);
+        h.writeLong(0x200);
+        h.write(new byte[4 * ID_SIZE]);
+        // byte[] of 1000 elements: 16 header + 4 length + 1000 -> 1024
+        h.writeByte(0x23);
+        h.writeLong(0x3000);
+        h.writeInt(0);
+        h.writeInt(1000);
+        h.writeByte(8);
+        h.write(new byte[1000]);
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(file);
+        out.write("JAVA PROFILE 1.0.2\0".getBytes(StandardCharsets.US_ASCII));
+        out.writeInt(ID_SIZE);
+        out.writeLong(0);
+        utf8(out, 0x1, "value");
+        utf8(out, 0x10, "com/example/Foo");
+        utf8(out, 0x20, "[Lcom/example/Foo;");
+        loadClass(out, 0x100, 0x10);
+        loadClass(out, 0x200, 0x20);
+        record(out, 0x1C, heap.toByteArray());
+        record(out, 0x2C, new byte[0]);
+
+        Path hprof = dir.resolve("test.hprof");
+        Files.write(hprof, file.toByteArray());
+        HeapDumpSummary summary = HeapDumpParser.summarize(hprof);
+
+        MatcherAssert.assertThat(summary.objectCount(), Matchers.equalTo(5L));
+        MatcherAssert.assertThat(summary.shallowSize(), Matchers.equalTo(3 * 32L + 56 + 1024));
+        MatcherAssert.assertThat(summary.classCount(), Matchers.equalTo(3));
+        MatcherAssert.assertThat(
+                summary.histogram(),
+                Matchers.contains(
+                        new ClassHistogramEntry("byte[]", 1, 1024),
+                        new ClassHistogramEntry("com.example.Foo", 3, 96),
+                        new ClassHistogramEntry("com.example.Foo[]", 1, 56)));
+        MatcherAssert.assertThat(summary.largestObjects(), Matchers.hasSize(5));
+        MatcherAssert.assertThat(
+                summary.largestObjects().subList(0, 3),
+                Matchers.contains(
+                        new LargeObject("0x3000", "byte[]", 1024),
+                        new LargeObject("0x2000", "com.example.Foo[]", 56),
+                        new LargeObject("0x1000", "com.example.Foo", 32)));
+    }
+
+    @Test
+    void testRejectsNonHprof() throws IOException {
+        Path file = dir.resolve("test.txt");
+        Files.writeString(file, "not a heap dump");
+        Assertions.assertThrows(IOException.class, () -> HeapDumpParser.summarize(file));
+    }
+
+    @Test
+    void testClassName() {
+        MatcherAssert.assertThat(
+                HeapDumpParser.className("java/lang/String"), Matchers.equalTo("java.lang.String"));
+        MatcherAssert.assertThat(
+                HeapDumpParser.className("[[Ljava/lang/String;"),
+                Matchers.equalTo("java.lang.String[][]"));
+        MatcherAssert.assertThat(HeapDumpParser.className("[J"), Matchers.equalTo("long[]"));
+    }
+
+    static void utf8(DataOutputStream out, long id, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream b = new DataOutputStream(body);
+        b.writeLong(id);
+        b.write(bytes);
+        record(out, 0x01, body.toByteArray());
+    }
+
+    static void loadClass(DataOutputStream out, long classId, long nameId) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream b = new DataOutputStream(body);
+        b.writeInt(1);
+        b.writeLong(classId);
+        b.writeInt(0);
+        b.writeLong(nameId);
+        record(out, 0x02, body.toByteArray());
+    }
+
+    static void record(DataOutputStream out, int tag, byte[] body) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(0);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+}
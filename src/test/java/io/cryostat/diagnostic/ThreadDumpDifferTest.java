@@ -0,0 +1,147 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.util.List;
+
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff.PersistentContention;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpDiff.ThreadStack;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+public class ThreadDumpDifferTest {
+
+    static final String FIRST =
+            """
+            "main" #1 prio=5 os_prio=0 tid=0x01 nid=1 waiting for monitor entry  [0x02]
+               java.lang.Thread.State: BLOCKED (on object monitor)
+            \tat Foo.bar(Foo.java:10)
+            \t- waiting to lock <0x01> (a java.lang.Object)
+
+            "holder" #2 prio=5 os_prio=0 tid=0x03 nid=2 waiting on condition  [0x04]
+               java.lang.Thread.State: TIMED_WAITING (sleeping)
+            \tat Foo.hold(Foo.java:20)
+            \t- locked <0x01> (a java.lang.Object)
+
+            "worker" #3 prio=5 os_prio=0 tid=0x05 nid=3 runnable  [0x06]
+               java.lang.Thread.State: RUNNABLE
+            \tat Foo.work(Foo.java:30)
+
+            "old" #4 prio=5 os_prio=0 tid=0x07 nid=4 runnable  [0x08]
+               java.lang.Thread.State: RUNNABLE
+            \tat Foo.work(Foo.java:30)
+
+            "VM Thread" os_prio=0 tid=0x09 nid=5 runnable
+
+            """;
+
+    static final String SECOND =
+            """
+            "main" #1 prio=5 os_prio=0 tid=0x01 nid=1 waiting for monitor entry  [0x02]
+               java.lang.Thread.State: BLOCKED (on object monitor)
+            \tat Foo.bar(Foo.java:10)
+            \t- waiting to lock <0x01> (a java.lang.Object)
+
+            "holder" #2 prio=5 os_prio=0 tid=0x03 nid=2 waiting on condition  [0x04]
+               java.lang.Thread.State: TIMED_WAITING (sleeping)
+            \tat Foo.hold(Foo.java:20)
+            \t- locked <0x01> (a java.lang.Object)
+
+            "worker" #3 prio=5 os_prio=0 tid=0x05 nid=3 runnable  [0x06]
+               java.lang.Thread.State: RUNNABLE
+            \tat Foo.work(Foo.java:31)
+
+            "other" #5 prio=5 os_prio=0 tid=0x0a nid=6 waiting for monitor entry  [0x0b]
+               java.lang.Thread.State: BLOCKED (on object monitor)
+            \tat Foo.bar(Foo.java:10)
+            \t- waiting to lock <0x01> (a java.lang.Object)
+
+            "VM Thread" os_prio=0 tid=0x09 nid=5 runnable
+
+            """;
+
+    @Test
+    void testDiff() {
+        ThreadDumpDiff diff = diff(FIRST, SECOND);
+
+        MatcherAssert.assertThat(diff.jvmId(), Matchers.equalTo("jvm"));
+        MatcherAssert.assertThat(diff.threadDumpIds(), Matchers.contains("a", "b"));
+        MatcherAssert.assertThat(
+                diff.unchangedThreads(),
+                Matchers.contains(
+                        new ThreadStack(
+                                "holder", "TIMED_WAITING", List.of("Foo.hold(Foo.java:20)")),
+                        new ThreadStack("main", "BLOCKED", List.of("Foo.bar(Foo.java:10)"))));
+        MatcherAssert.assertThat(
+                diff.persistentContention(),
+                Matchers.contains(
+                        new PersistentContention(
+                                "0x01", "java.lang.Object", "holder", List.of(1, 2))));
+        MatcherAssert.assertThat(diff.newThreads(), Matchers.contains("other"));
+        MatcherAssert.assertThat(diff.disappearedThreads(), Matchers.contains("old"));
+    }
+
+    @Test
+    void testReusedNameIsNotUnchanged() {
+        String reused = FIRST.replace("\"holder\" #2", "\"holder\" #9");
+        ThreadDumpDiff diff = diff(FIRST, reused);
+
+        MatcherAssert.assertThat(
+                diff.unchangedThreads().stream().map(ThreadStack::name).toList(),
+                Matchers.contains("main", "old", "worker"));
+        MatcherAssert.assertThat(diff.newThreads(), Matchers.contains("holder"));
+        MatcherAssert.assertThat(diff.disappearedThreads(), Matchers.contains("holder"));
+    }
+
+    @Test
+    void testContentionMustPersistInEveryDump() {
+        String uncontended =
+                SECOND.replace("\t- waiting to lock <0x01> (a java.lang.Object)\n", "");
+        ThreadDumpDiff diff = diff(FIRST, uncontended, SECOND);
+
+        MatcherAssert.assertThat(diff.persistentContention(), Matchers.empty());
+    }
+
+    @Test
+    void testContentionFollowsMovedMonitor() {
+        ThreadDumpDiff diff = diff(FIRST, SECOND.replace("<0x01>", "<0x0c>"));
+
+        MatcherAssert.assertThat(
+                diff.persistentContention(),
+                Matchers.contains(
+                        new PersistentContention(
+                                "0x0c", "java.lang.Object", "holder", List.of(1, 2))));
+    }
+
+    @Test
+    void testContentionWithDifferentOwnerIsNotPersistent() {
+        String locked = "\t- locked <0x01> (a java.lang.Object)\n";
+        String work = "\tat Foo.work(Foo.java:31)\n";
+        String handedOver = SECOND.replace(locked, "").replace(work, work + locked);
+        ThreadDumpDiff diff = diff(FIRST, handedOver);
+
+        MatcherAssert.assertThat(diff.persistentContention(), Matchers.empty());
+    }
+
+    private static ThreadDumpDiff diff(String... dumps) {
+        List<String> ids = List.of("a", "b", "c").subList(0, dumps.length);
+        return ThreadDumpDiffer.diff(
+                "jvm", ids, List.of(dumps).stream().map(ThreadDumpParser::parse).toList());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.util.List;
+
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary.BlockedMonitor;
+import io.cryostat.diagnostic.Diagnostics.ThreadDumpSummary.ThreadStateCount;
+import io.cryostat.diagnostic.ThreadDumpParser.Monitor;
+import io.cryostat.diagnostic.ThreadDumpParser.ThreadEntry;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+public class ThreadDumpParserTest {
+
+    static final String DUMP =
+            """
+            2024-01-01 12:00:00
+            Full thread dump OpenJDK 64-Bit Server VM (21+35 mixed mode, sharing):
+
+            Threads class SMR info:
+            _java_thread_list=0x00007f0000000000, length=4, elements={
+            0x00007f0000000001
+            }
+
+            "main" #1 [1234] prio=5 os_prio=0 tid=0x01 nid=1234 waiting for monitor entry  [0x02]
+               java.lang.Thread.State: BLOCKED (on object monitor)
+            \tat Foo.bar(Foo.java:10)
+            \t- waiting to lock <0x00000000c0012345> (a java.lang.Object)
+            \tat Foo.main(Foo.java:5)
+
+            "worker-1" #20 prio=5 os_prio=0 tid=0x03 nid=99 waiting for monitor entry  [0x04]
+               java.lang.Thread.State: BLOCKED (on object monitor)
+            \tat Foo.bar(Foo.java:10)
+            \t- waiting to lock <0x00000000c0012345> (a java.lang.Object)
+            \tat Foo.main(Foo.java:5)
+
+            "holder" #21 prio=5 os_prio=0 tid=0x05 nid=100 waiting on condition  [0x06]
+               java.lang.Thread.State: TIMED_WAITING (sleeping)
+            \tat java.lang.Thread.sleep(java.base@21/Native Method)
+            \tat Foo.hold(Foo.java:20)
+            \t- locked <0x00000000c0012345> (a java.lang.Object)
+
+            "VM Thread" os_prio=0 tid=0x07 nid=101 runnable
+
+            JNI global refs: 10, weak refs: 0
+            """;
+
+    @Test
+    void testParse() {
+        List<ThreadEntry> threads = ThreadDumpParser.parse(DUMP);
+        MatcherAssert.assertThat(
+                threads.stream().map(ThreadEntry::name).toList(),
+                Matchers.contains("main", "worker-1", "holder", "VM Thread"));
+        MatcherAssert.assertThat(
+                threads.stream().map(ThreadEntry::id).toList(),
+                Matchers.contains("1", "20", "21", null));
+
+        ThreadEntry main = threads.get(0);
+        MatcherAssert.assertThat(main.state(), Matchers.equalTo("BLOCKED"));
+        MatcherAssert.assertThat(
+                main.frames(), Matchers.contains("Foo.bar(Foo.java:10)", "Foo.main(Foo.java:5)"));
+        MatcherAssert.assertThat(
+                main.blockedOn(),
+                Matchers.equalTo(new Monitor("0x00000000c0012345", "java.lang.Object")));
+
+        ThreadEntry holder = threads.get(2);
+        MatcherAssert.assertThat(holder.state(), Matchers.equalTo("TIMED_WAITING"));
+        MatcherAssert.assertThat(holder.blockedOn(), Matchers.nullValue());
+        MatcherAssert.assertThat(
+                holder.held(),
+                Matchers.contains(new Monitor("0x00000000c0012345", "java.lang.Object")));
+
+        MatcherAssert.assertThat(
+                threads.get(3).state(), Matchers.equalTo(ThreadDumpParser.UNKNOWN_STATE));
+    }
+
+    @Test
+    void testSummarize() {
+        ThreadDumpSummary summary = ThreadDumpParser.summarize(DUMP);
+        MatcherAssert.assertThat(summary.threadCount(), Matchers.equalTo(4));
+        MatcherAssert.assertThat(summary.uniqueStacks(), Matchers.equalTo(3));
+        MatcherAssert.assertThat(
+                summary.threadStates(),
+                Matchers.contains(
+                        new ThreadStateCount("BLOCKED", 2),
+                        new ThreadStateCount("TIMED_WAITING", 1),
+                        new ThreadStateCount(ThreadDumpParser.UNKNOWN_STATE, 1)));
+        MatcherAssert.assertThat(
+                summary.blockedMonitors(),
+                Matchers.contains(
+                        new BlockedMonitor(
+                                "0x00000000c0012345", "java.lang.Object", "holder", 2)));
+    }
+
+    @Test
+    void testStackDigestIgnoresThreadNamesAndOrder() {
+        String renamed =
+                DUMP.replace("\"main\"", "\"renamed\"")
+                        .replace("\"worker-1\"", "\"main\"")
+                        .replace("\"renamed\"", "\"worker-1\"");
+        MatcherAssert.assertThat(
+                ThreadDumpParser.summarize(renamed).stackDigest(),
+                Matchers.equalTo(ThreadDumpParser.summarize(DUMP).stackDigest()));
+        MatcherAssert.assertThat(
+                ThreadDumpParser.summarize(DUMP.replace("Foo.hold", "Foo.wait")).stackDigest(),
+                Matchers.not(Matchers.equalTo(ThreadDumpParser.summarize(DUMP).stackDigest())));
+    }
+
+    @Test
+    void testEmpty() {
+        ThreadDumpSummary summary = ThreadDumpParser.summarize("");
+        MatcherAssert.assertThat(summary.threadCount(), Matchers.equalTo(0));
+        MatcherAssert.assertThat(summary.threadStates(), Matchers.empty());
+        MatcherAssert.assertThat(summary.blockedMonitors(), Matchers.empty());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import io.cryostat.AbstractTransactionalTestBase;
+import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.discovery.NodeType;
+import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.Annotations;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class DiscoveryNodeQueryTest extends AbstractTransactionalTestBase {
+
+    long prodId;
+    long devId;
+
+    @BeforeEach
+    void setupTree() {
+        QuarkusTransaction.requiringNew()
+                .run(
+                        () -> {
+                            DiscoveryNode universe = DiscoveryNode.getUniverse();
+                            DiscoveryNode realm =
+                                    DiscoveryNode.environment(
+                                            "Query Test Realm", NodeType.BaseNodeType.REALM);
+                            realm.parent = universe;
+                            universe.children.add(realm);
+                            prodId =
+                                    createTarget(
+                                            realm,
+                                            "service:jmx:rmi:///jndi/rmi://prod:9091/jmxrmi",
+                                            Map.of("env", "prod", "canary", "true"));
+                            devId =
+                                    createTarget(
+                                            realm,
+                                            "service:jmx:rmi:///jndi/rmi://dev:9091/jmxrmi",
+                                            Map.of("env", "dev"));
+                            realm.persist();
+                            universe.persist();
+                        });
+    }
+
+    private static long createTarget(
+            DiscoveryNode realm, String connectUrl, Map<String, String> annotations) {
+        Target target = new Target();
+        target.connectUrl = URI.create(connectUrl);
+        target.alias = connectUrl;
+        target.annotations = new Annotations(null, annotations);
+        DiscoveryNode node = DiscoveryNode.target(target, NodeType.BaseNodeType.JVM);
+        target.discoveryNode = node;
+        node.parent = realm;
+        realm.children.add(node);
+        target.persist();
+        node.persist();
+        return target.id;
+    }
+
+    private static List<Long> subtreeTargetIds(DiscoveryNodeFilter filter) {
+        return QuarkusTransaction.requiringNew()
+                .call(
+                        () ->
+                                DiscoveryNodeQuery.of(filter).subtreeTargets().stream()
+                                        .map(t -> t.id)
+                                        .toList());
+    }
+
+    @Test
+    void testNotEqualsAnnotationSelectsOnlyNonMatchingTarget() {
+        DiscoveryNodeFilter filter = new DiscoveryNodeFilter();
+        filter.annotations = List.of("env!=prod");
+        MatcherAssert.assertThat(subtreeTargetIds(filter), Matchers.contains(devId));
+    }
+
+    @Test
+    void testDoesNotExistAnnotationSelectsOnlyNonMatchingTarget() {
+        DiscoveryNodeFilter filter = new DiscoveryNodeFilter();
+        filter.annotations = List.of("!canary");
+        MatcherAssert.assertThat(subtreeTargetIds(filter), Matchers.contains(devId));
+    }
+
+    @Test
+    void testEmptyAnnotationsSelectsOnlyTargets() {
+        DiscoveryNodeFilter filter = new DiscoveryNodeFilter();
+        filter.annotations = List.of();
+        MatcherAssert.assertThat(
+                subtreeTargetIds(filter), Matchers.containsInAnyOrder(prodId, devId));
+    }
+
+    @Test
+    void testNodeTypeWithNegativeAnnotationDoesNotExpandRealm() {
+        DiscoveryNodeFilter filter = new DiscoveryNodeFilter();
+        filter.nodeTypes = List.of(NodeType.BaseNodeType.REALM.getKind());
+        filter.annotations = List.of("env!=prod");
+        MatcherAssert.assertThat(subtreeTargetIds(filter), Matchers.empty());
+    }
+}
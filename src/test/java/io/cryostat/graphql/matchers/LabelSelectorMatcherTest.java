@@ -15,11 +15,15 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -124,4 +128,37 @@ class LabelSelectorMatcherTest {
         LabelSelectorMatcher matcher = LabelSelectorMatcher.parse(expr);
         MatcherAssert.assertThat(expr, matcher.test(TEST_LABELS), Matchers.is(pass));
     }
+
+    @ParameterizedTest
+    @CsvSource(
+            value = {
+                "foo=bar | (v(:p0) = :p1)",
+                "foo==bar | (v(:p0) = :p1)",
+                "foo!=bar | (v(:p0) is distinct from :p1)",
+                "foo in (bar, baz) | (v(:p0) in (:p1))",
+                "foo notin (bar, baz) | ((v(:p0) is null or v(:p0) not in (:p1)))",
+                "foo | (v(:p0) is not null)",
+                "!foo | (v(:p0) is null)",
+            },
+            delimiter = '|')
+    void testToSql(String expr, String sql) {
+        Map<String, Object> params = new HashMap<>();
+        LabelSelectorMatcher matcher = LabelSelectorMatcher.parse(expr);
+        MatcherAssert.assertThat(
+                expr,
+                matcher.toSql(k -> "v(" + k + ")", params),
+                Matchers.equalTo(Optional.of(sql)));
+        MatcherAssert.assertThat(params, Matchers.hasEntry("p0", "foo"));
+    }
+
+    @Test
+    void testToSqlBindsValues() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("p0", "existing");
+        LabelSelectorMatcher.parse("env in (stage, qa)").toSql(k -> k, params);
+        MatcherAssert.assertThat(params, Matchers.hasEntry("p0", "existing"));
+        MatcherAssert.assertThat(params, Matchers.hasEntry("p1", "env"));
+        MatcherAssert.assertThat(
+                (List<?>) params.get("p2"), Matchers.containsInAnyOrder("stage", "qa"));
+    }
 }
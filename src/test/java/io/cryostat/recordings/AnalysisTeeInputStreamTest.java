@@ -0,0 +1,89 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AnalysisTeeInputStreamTest {
+
+    static final int PIPE_SIZE = 1024;
+
+    @Test
+    void testCopiesToBranch() throws Exception {
+        byte[] data = data(64 * PIPE_SIZE);
+        byte[] read;
+        CompletableFuture<byte[]> branch;
+        try (var tee = new AnalysisTeeInputStream(new ByteArrayInputStream(data), PIPE_SIZE)) {
+            branch = readAsync(tee.branch());
+            read = tee.readAllBytes();
+        }
+        MatcherAssert.assertThat(read, Matchers.equalTo(data));
+        MatcherAssert.assertThat(branch.get(), Matchers.equalTo(data));
+    }
+
+    @Test
+    void testBranchFailsWhenClosedEarly() throws Exception {
+        byte[] data = data(64 * PIPE_SIZE);
+        CompletableFuture<byte[]> branch;
+        try (var tee = new AnalysisTeeInputStream(new ByteArrayInputStream(data), PIPE_SIZE)) {
+            branch = readAsync(tee.branch());
+            tee.readNBytes(8 * PIPE_SIZE);
+        }
+        var ex = Assertions.assertThrows(ExecutionException.class, branch::get);
+        MatcherAssert.assertThat(ex.getCause(), Matchers.instanceOf(IOException.class));
+    }
+
+    @Test
+    void testClosedBranchDoesNotFailSource() throws IOException {
+        byte[] data = data(64 * PIPE_SIZE);
+        byte[] read;
+        try (var tee = new AnalysisTeeInputStream(new ByteArrayInputStream(data), PIPE_SIZE)) {
+            tee.branch().close();
+            read = tee.readAllBytes();
+        }
+        MatcherAssert.assertThat(read, Matchers.equalTo(data));
+    }
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static CompletableFuture<byte[]> readAsync(InputStream stream) {
+        var future = new CompletableFuture<byte[]>();
+        new Thread(
+                        () -> {
+                            try (stream) {
+                                future.complete(stream.readAllBytes());
+                            } catch (IOException e) {
+                                future.completeExceptionally(e);
+                            }
+                        })
+                .start();
+        return future;
+    }
+}
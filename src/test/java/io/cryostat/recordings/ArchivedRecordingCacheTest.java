@@ -0,0 +1,273 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ArchivedRecordingCacheTest {
+
+    static final int KIB = 1024;
+
+    @TempDir Path dir;
+
+    ArchivedRecordingCache cache;
+    AtomicInteger fetches;
+
+    @BeforeEach
+    void setup() {
+        cache = new ArchivedRecordingCache();
+        cache.enabled = true;
+        cache.dir = dir;
+        cache.maxSizeMib = 1;
+        cache.waitTimeout = Duration.ofSeconds(5);
+        cache.logger = Logger.getLogger(ArchivedRecordingCacheTest.class);
+        fetches = new AtomicInteger();
+    }
+
+    @Test
+    void testRepeatedReadsFetchOnce() throws IOException {
+        byte[] content = content(100 * KIB, 1);
+        MatcherAssert.assertThat(read("a", "1", content), Matchers.equalTo(content));
+        MatcherAssert.assertThat(read("a", "1", content), Matchers.equalTo(content));
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void testChangedETagFetchesAgain() throws IOException {
+        read("a", "1", content(100 * KIB, 1));
+        byte[] replaced = content(100 * KIB, 2);
+        MatcherAssert.assertThat(read("a", "2", replaced), Matchers.equalTo(replaced));
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws IOException {
+        byte[] a = content(400 * KIB, 1);
+        byte[] b = content(400 * KIB, 2);
+        byte[] c = content(400 * KIB, 3);
+        read("a", "1", a);
+        read("b", "1", b);
+        read("a", "1", a);
+        read("c", "1", c);
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(3));
+        try (var files = Files.list(dir)) {
+            MatcherAssert.assertThat(files.count(), Matchers.equalTo(2L));
+        }
+
+        read("a", "1", a);
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(3));
+        read("b", "1", b);
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(4));
+    }
+
+    @Test
+    void testLargeObjectsAreNotCached() throws IOException {
+        byte[] content = content(2 * 1024 * KIB, 1);
+        MatcherAssert.assertThat(read("a", "1", content), Matchers.equalTo(content));
+        MatcherAssert.assertThat(read("a", "1", content), Matchers.equalTo(content));
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(2));
+        try (var files = Files.list(dir)) {
+            MatcherAssert.assertThat(files.count(), Matchers.equalTo(0L));
+        }
+    }
+
+    @Test
+    void testConcurrentReadersShareFetch() throws Exception {
+        byte[] content = content(100 * KIB, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<InputStream> loader =
+                () -> {
+                    fetches.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return new ByteArrayInputStream(content);
+                };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    try (var in =
+                                            cache.open(
+                                                    "bucket", "a", "1", content.length, loader)) {
+                                        return in.readAllBytes();
+                                    }
+                                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<byte[]> result : results) {
+                MatcherAssert.assertThat(
+                        result.get(5, TimeUnit.SECONDS), Matchers.equalTo(content));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void testFirstReaderIsStreamedBeforeFetchCompletes() throws IOException {
+        byte[] content = content(100 * KIB, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream rest =
+                new InputStream() {
+                    InputStream delegate =
+                            new ByteArrayInputStream(content, KIB, content.length - KIB);
+
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            if (!release.await(5, TimeUnit.SECONDS)) {
+                                throw new IOException("not released");
+                            }
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return delegate.read();
+                    }
+                };
+        try (var in =
+                cache.open(
+                        "bucket",
+                        "a",
+                        "1",
+                        content.length,
+                        () ->
+                                new SequenceInputStream(
+                                        new ByteArrayInputStream(content, 0, KIB), rest))) {
+            MatcherAssert.assertThat(
+                    in.readNBytes(KIB), Matchers.equalTo(Arrays.copyOf(content, KIB)));
+            release.countDown();
+            in.readAllBytes();
+        }
+        MatcherAssert.assertThat(read("a", "1", content), Matchers.equalTo(content));
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void testEarlyCloseIsNotCached() throws IOException {
+        byte[] content = content(100 * KIB, 1);
+        try (var in =
+                cache.open(
+                        "bucket",
+                        "a",
+                        "1",
+                        content.length,
+                        () -> {
+                            fetches.incrementAndGet();
+                            return new ByteArrayInputStream(content);
+                        })) {
+            in.readNBytes(KIB);
+        }
+        try (var files = Files.list(dir)) {
+            MatcherAssert.assertThat(files.count(), Matchers.equalTo(0L));
+        }
+        MatcherAssert.assertThat(read("a", "1", content), Matchers.equalTo(content));
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void testWaitingReaderFallsBackWhenFirstReaderStalls() throws IOException {
+        cache.waitTimeout = Duration.ofMillis(100);
+        byte[] content = content(100 * KIB, 1);
+        Supplier<InputStream> loader =
+                () -> {
+                    fetches.incrementAndGet();
+                    return new ByteArrayInputStream(content);
+                };
+        try (var first = cache.open("bucket", "a", "1", content.length, loader)) {
+            // the first reader stops reading, but does not close its stream
+            first.readNBytes(KIB);
+            try (var second = cache.open("bucket", "a", "1", content.length, loader)) {
+                MatcherAssert.assertThat(second.readAllBytes(), Matchers.equalTo(content));
+            }
+        }
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void testOpenIfCachedDoesNotFetch() throws IOException {
+        byte[] content = content(100 * KIB, 1);
+        MatcherAssert.assertThat(cache.openIfCached("bucket", "a", "1"), Matchers.nullValue());
+        read("a", "1", content);
+        try (var in = cache.openIfCached("bucket", "a", "1")) {
+            MatcherAssert.assertThat(in.readAllBytes(), Matchers.equalTo(content));
+        }
+        MatcherAssert.assertThat(cache.openIfCached("bucket", "a", "2"), Matchers.nullValue());
+        MatcherAssert.assertThat(fetches.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void testStartupOnlyRemovesCacheFiles() throws IOException {
+        read("a", "1", content(100 * KIB, 1));
+        Files.createTempFile(dir, "fetch-", ".tmp");
+        Path other = Files.writeString(dir.resolve("other.jfr"), "keep");
+        cache.onStart(null);
+        try (var files = Files.list(dir)) {
+            MatcherAssert.assertThat(files.toList(), Matchers.contains(other));
+        }
+    }
+
+    private byte[] read(String key, String eTag, byte[] content) throws IOException {
+        try (var in =
+                cache.open(
+                        "bucket",
+                        key,
+                        eTag,
+                        content.length,
+                        () -> {
+                            fetches.incrementAndGet();
+                            return new ByteArrayInputStream(content);
+                        })) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] content(int size, int seed) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) seed);
+        return content;
+    }
+}
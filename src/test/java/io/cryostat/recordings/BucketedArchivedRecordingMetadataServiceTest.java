@@ -0,0 +1,330 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.cryostat.StorageBuckets;
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+public class BucketedArchivedRecordingMetadataServiceTest {
+
+    static final String BUCKET = "metadata";
+    static final String PREFIX = "archivedrecordings";
+    static final String JVM_ID = "jvm";
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    Map<String, byte[]> objects;
+    AtomicReference<Runnable> onDeltaRead;
+    boolean failDeletes;
+    S3Client storage;
+    StorageBuckets buckets;
+
+    @BeforeEach
+    void setup() {
+        objects = new ConcurrentSkipListMap<>();
+        onDeltaRead = new AtomicReference<>();
+        failDeletes = false;
+
+        storage = mock(S3Client.class);
+        when(storage.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenAnswer(
+                        inv -> {
+                            PutObjectRequest req = inv.getArgument(0);
+                            RequestBody body = inv.getArgument(1);
+                            try (InputStream in = body.contentStreamProvider().newStream()) {
+                                objects.put(req.key(), in.readAllBytes());
+                            }
+                            return PutObjectResponse.builder().build();
+                        });
+        when(storage.getObject(any(GetObjectRequest.class)))
+                .thenAnswer(
+                        inv -> {
+                            GetObjectRequest req = inv.getArgument(0);
+                            if (isDelta(req.key())) {
+                                Runnable hook = onDeltaRead.getAndSet(null);
+                                if (hook != null) {
+                                    hook.run();
+                                }
+                            }
+                            byte[] content = objects.get(req.key());
+                            if (content == null) {
+                                throw NoSuchKeyException.builder().build();
+                            }
+                            return new ResponseInputStream<>(
+                                    GetObjectResponse.builder().build(),
+                                    AbortableInputStream.create(
+                                            new ByteArrayInputStream(content)));
+                        });
+        when(storage.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenAnswer(
+                        inv -> {
+                            ListObjectsV2Request req = inv.getArgument(0);
+                            return ListObjectsV2Response.builder()
+                                    .contents(
+                                            objects.keySet().stream()
+                                                    .filter(k -> k.startsWith(req.prefix()))
+                                                    .map(k -> S3Object.builder().key(k).build())
+                                                    .toList())
+                                    .isTruncated(false)
+                                    .build();
+                        });
+        when(storage.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenAnswer(
+                        inv ->
+                                new ListObjectsV2Iterable(
+                                        storage, (ListObjectsV2Request) inv.getArgument(0)));
+
+        buckets = mock(StorageBuckets.class);
+        when(buckets.deleteObjects(anyString(), anyCollection()))
+                .thenAnswer(
+                        inv -> {
+                            if (failDeletes) {
+                                return List.of();
+                            }
+                            Collection<String> keys = inv.getArgument(1);
+                            keys.forEach(objects::remove);
+                            return new ArrayList<>(keys);
+                        });
+    }
+
+    BucketedArchivedRecordingMetadataService service() {
+        var service = new BucketedArchivedRecordingMetadataService();
+        service.storage = storage;
+        service.storageBuckets = buckets;
+        service.logger = Logger.getLogger(BucketedArchivedRecordingMetadataServiceTest.class);
+        service.bucket = BUCKET;
+        service.prefix = PREFIX;
+        service.compactionThreshold = Integer.MAX_VALUE;
+        service.executor = r -> {};
+        return service;
+    }
+
+    @Test
+    void testCreateIsSingleWrite() throws Exception {
+        var service = service();
+        service.create(JVM_ID, "a.jfr", metadata("a"));
+
+        verify(storage, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        MatcherAssert.assertThat(
+                service.read(JVM_ID, "a.jfr"), Matchers.equalTo(Optional.of(metadata("a"))));
+        MatcherAssert.assertThat(
+                service().read(JVM_ID, "a.jfr"), Matchers.equalTo(Optional.of(metadata("a"))));
+    }
+
+    @Test
+    void testUpdatesAndDeletesApplyInOrder() throws Exception {
+        var service = service();
+        service.create(JVM_ID, "a.jfr", metadata("a"));
+        service.create(JVM_ID, "b.jfr", metadata("b"));
+        service.update(JVM_ID, "a.jfr", metadata("a2"));
+        service.delete(JVM_ID, "b.jfr");
+
+        for (var s : List.of(service, service())) {
+            MatcherAssert.assertThat(
+                    s.read(JVM_ID, "a.jfr"), Matchers.equalTo(Optional.of(metadata("a2"))));
+            MatcherAssert.assertThat(s.read(JVM_ID, "b.jfr"), Matchers.equalTo(Optional.empty()));
+            MatcherAssert.assertThat(
+                    s.readAll(JVM_ID), Matchers.equalTo(Map.of("a.jfr", metadata("a2"))));
+        }
+    }
+
+    @Test
+    void testCachedShardIsReadWithoutRequests() throws Exception {
+        var service = service();
+        service.create(JVM_ID, "a.jfr", metadata("a"));
+        service.read(JVM_ID, "a.jfr");
+        clearInvocations(storage);
+
+        MatcherAssert.assertThat(
+                service.read(JVM_ID, "a.jfr"), Matchers.equalTo(Optional.of(metadata("a"))));
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    void testCompactionFoldsDeltasIntoManifests() throws Exception {
+        var service = service();
+        for (int i = 0; i < 40; i++) {
+            service.create(JVM_ID, i + ".jfr", metadata("v" + i));
+        }
+        service.delete(JVM_ID, "0.jfr");
+        service.update(JVM_ID, "1.jfr", metadata("updated"));
+
+        service.compact(JVM_ID);
+
+        MatcherAssert.assertThat(
+                objects.keySet().stream().filter(this::isDelta).toList(), Matchers.empty());
+        var all = service().readAll(JVM_ID);
+        MatcherAssert.assertThat(all.size(), Matchers.equalTo(39));
+        MatcherAssert.assertThat(all.get("1.jfr"), Matchers.equalTo(metadata("updated")));
+        MatcherAssert.assertThat(all.get("39.jfr"), Matchers.equalTo(metadata("v39")));
+        MatcherAssert.assertThat(all.containsKey("0.jfr"), Matchers.equalTo(false));
+        MatcherAssert.assertThat(
+                service().read(JVM_ID, "0.jfr"), Matchers.equalTo(Optional.empty()));
+    }
+
+    @Test
+    void testCompactionDropsDeletionMarkers() throws Exception {
+        var service = service();
+        service.create(JVM_ID, "a.jfr", metadata("a"));
+        service.delete(JVM_ID, "a.jfr");
+
+        service.compact(JVM_ID);
+
+        String manifest =
+                objects.keySet().stream().filter(k -> !isDelta(k)).findFirst().orElseThrow();
+        MatcherAssert.assertThat(new String(objects.get(manifest)), Matchers.equalTo("{}"));
+    }
+
+    @Test
+    void testLegacyObjectsAreReadAndMigrated() throws Exception {
+        objects.put(legacyKey("old.jfr"), mapper.writeValueAsBytes(metadata("old")));
+
+        MatcherAssert.assertThat(
+                service().read(JVM_ID, "old.jfr"), Matchers.equalTo(Optional.of(metadata("old"))));
+        MatcherAssert.assertThat(
+                service().readAll(JVM_ID), Matchers.equalTo(Map.of("old.jfr", metadata("old"))));
+
+        service().compact(JVM_ID);
+
+        MatcherAssert.assertThat(
+                objects.containsKey(legacyKey("old.jfr")), Matchers.equalTo(false));
+        MatcherAssert.assertThat(
+                service().read(JVM_ID, "old.jfr"), Matchers.equalTo(Optional.of(metadata("old"))));
+    }
+
+    @Test
+    void testDeletedLegacyObjectIsNotResurrectedIfRemovalFails() throws Exception {
+        objects.put(legacyKey("old.jfr"), mapper.writeValueAsBytes(metadata("old")));
+        var service = service();
+        service.delete(JVM_ID, "old.jfr");
+
+        failDeletes = true;
+        service.compact(JVM_ID);
+
+        MatcherAssert.assertThat(
+                objects.containsKey(legacyKey("old.jfr")), Matchers.equalTo(true));
+        MatcherAssert.assertThat(
+                service().read(JVM_ID, "old.jfr"), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(service().readAll(JVM_ID), Matchers.equalTo(Map.of()));
+    }
+
+    @Test
+    void testShardIsReloadedWhenCompactedWhileReading() throws Exception {
+        var writer = service();
+        writer.create(JVM_ID, "a.jfr", metadata("a"));
+        writer.compact(JVM_ID);
+        writer.update(JVM_ID, "a.jfr", metadata("a2"));
+        writer.create(JVM_ID, "b.jfr", metadata("b"));
+
+        // another instance compacts the index after the reader has listed the shard, but before it
+        // reads the deltas
+        onDeltaRead.set(() -> service().compact(JVM_ID));
+
+        var reader = service();
+        MatcherAssert.assertThat(
+                reader.read(JVM_ID, "a.jfr"), Matchers.equalTo(Optional.of(metadata("a2"))));
+        MatcherAssert.assertThat(
+                reader.readAll(JVM_ID),
+                Matchers.equalTo(Map.of("a.jfr", metadata("a2"), "b.jfr", metadata("b"))));
+    }
+
+    @Test
+    void testWriteAfterListingIsNotHiddenByCachedShard() throws Exception {
+        var service = service();
+        service.create(JVM_ID, "a.jfr", metadata("a"));
+        service.create(JVM_ID, "b.jfr", metadata("b"));
+        String first;
+        String second;
+        if (BucketedArchivedRecordingMetadataService.shard("a.jfr")
+                < BucketedArchivedRecordingMetadataService.shard("b.jfr")) {
+            first = "a.jfr";
+            second = "b.jfr";
+        } else {
+            first = "b.jfr";
+            second = "a.jfr";
+        }
+
+        // the later shard is written to after readAll has listed the index, while it is still
+        // folding the earlier shard, and before that later shard has been cached
+        onDeltaRead.set(
+                () -> {
+                    try {
+                        service.update(JVM_ID, second, metadata("updated"));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+        MatcherAssert.assertThat(
+                service.readAll(JVM_ID),
+                Matchers.equalTo(
+                        Map.of(
+                                first,
+                                metadata(first.substring(0, 1)),
+                                second,
+                                metadata("updated"))));
+        MatcherAssert.assertThat(
+                service.read(JVM_ID, second), Matchers.equalTo(Optional.of(metadata("updated"))));
+    }
+
+    boolean isDelta(String key) {
+        return key.contains("/" + BucketedArchivedRecordingMetadataService.INDEX_DIR + "/")
+                && !key.endsWith(BucketedArchivedRecordingMetadataService.MANIFEST_NAME);
+    }
+
+    static String legacyKey(String filename) {
+        return String.format("%s/%s/%s", PREFIX, JVM_ID, filename);
+    }
+
+    static Metadata metadata(String value) {
+        return new Metadata(Map.of("key", value));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.cryostat.recordings.ArchivedRecordings.RecordingStatistics;
+
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JfrStatisticsInputStreamTest {
+
+    static final String EVENT_NAME = "io.cryostat.recordings.TestEvent";
+
+    @TempDir Path dir;
+
+    @Name(EVENT_NAME)
+    static class TestEvent extends Event {}
+
+    @Test
+    void testStatistics() throws IOException {
+        Path file = dir.resolve("test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TestEvent.class);
+            recording.enable("jdk.JVMInformation");
+            recording.start();
+            for (int i = 0; i < 100; i++) {
+                new TestEvent().commit();
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, Long> expected = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            expected.merge(event.getEventType().getName(), 1L, Long::sum);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordingStatistics stats;
+        try (var stream = new JfrStatisticsInputStream(new ByteArrayInputStream(bytes))) {
+            stream.transferTo(out);
+            stats = stream.statistics().orElseThrow();
+        }
+
+        MatcherAssert.assertThat(out.toByteArray(), Matchers.equalTo(bytes));
+        MatcherAssert.assertThat(stats.eventCounts(), Matchers.equalTo(expected));
+        MatcherAssert.assertThat(stats.eventCounts().get(EVENT_NAME), Matchers.equalTo(100L));
+        MatcherAssert.assertThat(
+                stats.eventCount(),
+                Matchers.equalTo(expected.values().stream().mapToLong(Long::longValue).sum()));
+        MatcherAssert.assertThat(stats.chunkCount(), Matchers.greaterThanOrEqualTo(1L));
+        MatcherAssert.assertThat(stats.uncompressedSize(), Matchers.equalTo((long) bytes.length));
+        MatcherAssert.assertThat(
+                stats.endTime(), Matchers.greaterThanOrEqualTo(stats.startTime()));
+        MatcherAssert.assertThat(stats.startTime(), Matchers.greaterThan(0L));
+    }
+
+    @Test
+    void testNotJfr() throws IOException {
+        byte[] bytes = "this is not a flight recording".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (var stream = new JfrStatisticsInputStream(new ByteArrayInputStream(bytes))) {
+            stream.transferTo(out);
+            MatcherAssert.assertThat(stream.statistics().isPresent(), Matchers.equalTo(false));
+        }
+        MatcherAssert.assertThat(out.toByteArray(), Matchers.equalTo(bytes));
+    }
+}
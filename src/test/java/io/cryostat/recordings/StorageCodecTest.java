@@ -0,0 +1,100 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+public class StorageCodecTest {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    @Test
+    void testGzipRoundTrip() throws IOException {
+        byte[] data = "hello, world".repeat(100).getBytes();
+        MatcherAssert.assertThat(gunzip(gzip(data)), Matchers.equalTo(data));
+    }
+
+    @Test
+    void testGzipEmptyInput() throws IOException {
+        byte[] encoded = gzip(new byte[0]);
+        MatcherAssert.assertThat(encoded.length, Matchers.greaterThan(0));
+        MatcherAssert.assertThat(gunzip(encoded), Matchers.equalTo(new byte[0]));
+    }
+
+    @Test
+    void testGzipMultiBufferInput() throws IOException {
+        // incompressible data spanning several input and output buffers, ending mid-buffer
+        byte[] data = new byte[5 * BUFFER_SIZE + 17];
+        new Random(data.length).nextBytes(data);
+        MatcherAssert.assertThat(gunzip(gzip(data)), Matchers.equalTo(data));
+    }
+
+    @Test
+    void testGzipSmallReads() throws IOException {
+        byte[] data = new byte[3 * BUFFER_SIZE];
+        new Random(data.length).nextBytes(data);
+        Arrays.fill(data, BUFFER_SIZE, 2 * BUFFER_SIZE, (byte) 'x');
+        var out = new ByteArrayOutputStream();
+        try (var stream = StorageCodec.GZIP.encode(new ByteArrayInputStream(data))) {
+            byte[] buf = new byte[7];
+            int n;
+            while ((n = stream.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+        }
+        MatcherAssert.assertThat(gunzip(out.toByteArray()), Matchers.equalTo(data));
+    }
+
+    @Test
+    void testDecodeMatchesContentEncoding() throws IOException {
+        byte[] data = "hello, world".getBytes();
+        StorageCodec codec = StorageCodec.fromContentEncoding("gzip");
+        MatcherAssert.assertThat(codec, Matchers.is(StorageCodec.GZIP));
+        try (var stream = codec.decode(new ByteArrayInputStream(gzip(data)))) {
+            MatcherAssert.assertThat(stream.readAllBytes(), Matchers.equalTo(data));
+        }
+    }
+
+    @Test
+    void testUnknownContentEncodingIsNone() {
+        MatcherAssert.assertThat(
+                StorageCodec.fromContentEncoding(null), Matchers.is(StorageCodec.NONE));
+        MatcherAssert.assertThat(
+                StorageCodec.fromContentEncoding("br"), Matchers.is(StorageCodec.NONE));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        try (InputStream stream = StorageCodec.GZIP.encode(new ByteArrayInputStream(data))) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (var stream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return stream.readAllBytes();
+        }
+    }
+}